@@ -85,7 +85,8 @@ public class App {
             }
         };
 
-        var ccyPairTrader = new CcyPairTrader(App::now, Fees.PCT, fileSuffix);
+        var ccyPairTrader = new CcyPairTrader(App::now, Fees.PCT, fileSuffix,
+                TradingLoopConfig.fromSystemProperties());
         var mktDataSession = ccyPairTrader.mktDataSession;
         var execSession = ccyPairTrader.execSession;
         var placedOrders = new HashMap<String, Order>();
@@ -106,7 +107,9 @@ public class App {
                     PRINT_PNLS (17),
                     TEE_HEDGES (18),
                     PRINT_QUEUE_STATS (19),
-                    SET_QUEUES_HEALTHY (20)
+                    SET_QUEUES_HEALTHY (20),
+                    PRINT_ARCHIVED_ORDERS (21),
+                    SNAPSHOT_STATE (22)
                     """);
             String input = System.console().readLine();
             Log.ERROR.to(DstSet.STD_OUT, "\n");
@@ -216,7 +219,7 @@ public class App {
                                                 "Unrecognized send boolean option: " + sendStr);
                             };
                             if (send) {
-                                var ordrID = ClOrdrID.from(now);
+                                var ordrID = ClOrdrID.next();
                                 var order = new Order(ordrID, ccyPair, baseCcy, side, new OrderQty(qty), new Price(px), tif, transactTime);
                                 var result = ccyPairTrader.enqueueManualOrder(order);
                                 if (!result) {
@@ -243,7 +246,7 @@ public class App {
                                 break;
                             }
                             ClOrdID cxlReqID = switch (orderToCxl.id()) {
-                                case ClOrdrID ordrID -> new ClOrdrID(ordrID.id().getCxlReqID());
+                                case ClOrdrID ordrID -> ClOrdrID.next();
                                 case ClOrdID ordID -> new StrClOrdID(ordID.fieldVal() + "_cxl");
                             };
                             var sentTime = new TransactTime(now());
@@ -383,7 +386,7 @@ public class App {
                             var px = ccyPairTrader.sanitizePrice(rawPx, side, ccyPair);
                             var now = now();
                             var transactTime = new TransactTime(now);
-                            var ordrID = ClOrdrID.from(now);
+                            var ordrID = ClOrdrID.next();
                             var order = new Order(ordrID, ccyPair, baseCcy, side, qty, px, TimeInForce.IMMEDIATE_OR_CANCEL, transactTime);
                             Log.INFO.to(DstSet.APP_STD_OUT, "Send order " + order + "? (Y/n) ");
                             var sendStr = System.console().readLine();
@@ -408,6 +411,11 @@ public class App {
                     }
                     case "19", "PRINT_QUEUE_STATS" -> ccyPairTrader.printQueueStats();
                     case "20", "SET_QUEUES_HEALTHY" -> ccyPairTrader.setQueuesHealthy();
+                    case "21", "PRINT_ARCHIVED_ORDERS" -> {
+                        Log.INFO.to(DstSet.APP_STD_OUT, "Enter the ClOrdrID to find, or nothing for the latest orders:");
+                        ccyPairTrader.printArchivedOrders(System.console().readLine());
+                    }
+                    case "22", "SNAPSHOT_STATE" -> ccyPairTrader.requestSnapshot();
                     default -> Log.ERROR.to(DstSet.APP_STD_OUT, "Didn't recognize " + input);
                 }
             } catch (Exception e) {
@@ -22,19 +22,17 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.abissell.logutil.EventLog;
 import com.abissell.logutil.Log;
 import com.abissell.cempaka.data.CxOrders;
-import com.abissell.cempaka.data.CxdBookAnalysis;
+import com.abissell.cempaka.data.CxdBook;
 import com.abissell.cempaka.data.ExecLedger;
 import com.abissell.cempaka.data.ExecLedgers;
 import com.abissell.cempaka.data.MktDataBook;
 import com.abissell.cempaka.data.RiskLimit;
-import com.abissell.cempaka.data.SidePxQtyUpdate;
 import com.abissell.cempaka.data.TradingMode;
 import com.abissell.cempaka.fix.MsgQueue;
 import com.abissell.cempaka.util.DstSet;
@@ -50,6 +48,9 @@ final class CcyPairRiskLimits {
     private final AtomicReference<EnumSet<CcyPair>> circuitBreakers
         = new AtomicReference<>(EnumSet.noneOf(CcyPair.class));
 
+    // Pairs whose book missed an increment, until their next full refresh. Only used by the trading loop
+    private final EnumSet<CcyPair> staleMktData = EnumSet.noneOf(CcyPair.class);
+
     private final AtomicInteger magazine = new AtomicInteger(0);
 
     // TODO: Adjust limits on USDC/USDT according to their peg
@@ -197,16 +198,26 @@ final class CcyPairRiskLimits {
         return backoffInterval.getAndSet(Duration.ofSeconds(newDurationSecs));
     }
 
+    void markStale(CcyPair ccyPair) {
+        staleMktData.add(ccyPair);
+    }
+
+    void fullyRefreshed(CcyPair ccyPair) {
+        staleMktData.remove(ccyPair);
+    }
+
     void updatedMktData(MktDataBook book) {
         var ccyPair = (CcyPair) book.tradeable;
 
-        List<SidePxQtyUpdate> bids = book.get(Side.BUY), asks = book.get(Side.SELL);
+        var bids = book.bids();
+        var asks = book.asks();
         if (bids.isEmpty() || asks.isEmpty()) {
             tripCircuitBreaker(ccyPair);
+            return;
         }
 
-        var highestBid = bids.get(0).level().px().px();
-        var lowestAsk = asks.get(0).level().px().px();
+        var highestBid = bids.px(0);
+        var lowestAsk = asks.px(0);
         if (highestBid > (1.0d + badDataCrossRatio.get()) * lowestAsk) {
             tripCircuitBreaker(ccyPair);
         }
@@ -246,7 +257,7 @@ final class CcyPairRiskLimits {
         }
 
         var prevRejectedOrders = rejectedOrdersObserved.get(ccyPair);
-        var newRejectedOrders = ledger.rejectedOrders().size();
+        var newRejectedOrders = ledger.rejectedCount();
         if (newRejectedOrders > prevRejectedOrders) {
             rejectedOrdersObserved.put(ccyPair, newRejectedOrders);
             tripCircuitBreaker(ccyPair);
@@ -261,7 +272,7 @@ final class CcyPairRiskLimits {
         circuitBreakers.set(newBreakers);
     }
 
-    RiskLimit preTradeApproved(CcyPair ccyPair, CxdBookAnalysis cxdBook,
+    RiskLimit preTradeApproved(CcyPair ccyPair, CxdBook cxdBook,
             ExecLedgers<CcyPair> execLedgers, Collection<MsgQueue<?>> queues,
             LocalDateTime now, EventLog<DstSet> eventLog) {
         if (tradingMode.get() == TradingMode.HALTED) {
@@ -272,6 +283,10 @@ final class CcyPairRiskLimits {
             return RiskLimit.CIRCUIT_BREAKER;
         }
 
+        if (staleMktData.contains(ccyPair)) {
+            return RiskLimit.STALE_MKT_DATA;
+        }
+
         if (magazine.get() <= 0) {
             return RiskLimit.MAG_EMPTY;
         }
@@ -313,8 +328,8 @@ final class CcyPairRiskLimits {
             return RiskLimit.TRADE_THEO_VAL;
         }
 
-        var cxdBidPx = cxdBook.cxdBidLvls().get(0).px().px();
-        var cxdAskPx = cxdBook.cxdAskLvls().get(0).px().px();
+        var cxdBidPx = cxdBook.cxdPx(Side.BUY, 0);
+        var cxdAskPx = cxdBook.cxdPx(Side.SELL, 0);
         var crossRatio = (cxdBidPx - cxdAskPx) / (cxdAskPx);
         if (crossRatio > maxCrossRatio.get()) {
             return RiskLimit.CROSS_RATIO;
@@ -362,6 +377,62 @@ final class CcyPairRiskLimits {
         }
     }
 
+    /*
+     * Risk state kept in a StateSnapshot. The TradingMode is left out, so a
+     * restarted process stays HALTED until trading is resumed by hand.
+     */
+    /* value */ record State(
+            EnumSet<CcyPair> circuitBreakers,
+            int magazine, /* primitive */
+            EnumMap<CcyPair, LocalDateTime> lastEntryTimes,
+            EnumMap<CcyPair, Integer> rejectedOrdersObserved,
+            int usdEquivTradeLimit, /* primitive */
+            double numer1TradeLimit, /* primitive */
+            double numer2TradeLimit, /* primitive */
+            int usdEquivPosLimit, /* primitive */
+            double numer1PosLimit, /* primitive */
+            double numer2PosLimit, /* primitive */
+            int usdEquivMaxLoss, /* primitive */
+            double minTradeTheoValUsd, /* primitive */
+            double maxCrossRatio, /* primitive */
+            double badDataCrossRatio, /* primitive */
+            int maxConcurrentEntries, /* primitive */
+            int maxConcurrentEntriesPerPair, /* primitive */
+            Duration backoffInterval) {
+    }
+
+    // Only called from the trading loop, which owns lastEntryTimes and rejectedOrdersObserved
+    State state() {
+        return new State(EnumSet.copyOf(circuitBreakers.get()), magazine.get(),
+                new EnumMap<>(lastEntryTimes), new EnumMap<>(rejectedOrdersObserved),
+                usdEquivTradeLimit.get(), numer1TradeLimit.get(), numer2TradeLimit.get(),
+                usdEquivPosLimit.get(), numer1PosLimit.get(), numer2PosLimit.get(),
+                usdEquivMaxLoss.get(), minTradeTheoValUsd.get(), maxCrossRatio.get(),
+                badDataCrossRatio.get(), maxConcurrentEntries.get(),
+                maxConcurrentEntriesPerPair.get(), backoffInterval.get());
+    }
+
+    // Only called before the trading loop starts
+    void restore(State state) {
+        circuitBreakers.set(EnumSet.copyOf(state.circuitBreakers()));
+        magazine.set(state.magazine());
+        lastEntryTimes.putAll(state.lastEntryTimes());
+        rejectedOrdersObserved.putAll(state.rejectedOrdersObserved());
+        usdEquivTradeLimit.set(state.usdEquivTradeLimit());
+        numer1TradeLimit.set(state.numer1TradeLimit());
+        numer2TradeLimit.set(state.numer2TradeLimit());
+        usdEquivPosLimit.set(state.usdEquivPosLimit());
+        numer1PosLimit.set(state.numer1PosLimit());
+        numer2PosLimit.set(state.numer2PosLimit());
+        usdEquivMaxLoss.set(state.usdEquivMaxLoss());
+        minTradeTheoValUsd.set(state.minTradeTheoValUsd());
+        maxCrossRatio.set(state.maxCrossRatio());
+        badDataCrossRatio.set(state.badDataCrossRatio());
+        maxConcurrentEntries.set(state.maxConcurrentEntries());
+        maxConcurrentEntriesPerPair.set(state.maxConcurrentEntriesPerPair());
+        backoffInterval.set(state.backoffInterval());
+    }
+
     @Override
     public String toString() {
         return "CcyPairRiskLimits{tradingMode=" + tradingMode.get() + ", circuitBreakers=" + circuitBreakers.get() + ", magazine="
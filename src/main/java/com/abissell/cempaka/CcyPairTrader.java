@@ -17,7 +17,10 @@
  */
 package com.abissell.cempaka;
 
+import java.io.IOException;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -32,7 +35,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import com.abissell.javautil.io.IO;
@@ -46,34 +49,46 @@ import com.abissell.logutil.LogBuf;
 import com.abissell.logutil.OptBuf;
 import com.abissell.cempaka.data.Constraints;
 import com.abissell.cempaka.data.CxOrders;
-import com.abissell.cempaka.data.CxdBookAnalysis;
-import com.abissell.cempaka.data.CxdBookLvl;
+import com.abissell.cempaka.data.CxdBook;
+import com.abissell.cempaka.data.CxdBookBuf;
+import com.abissell.cempaka.data.ExecJournal;
 import com.abissell.cempaka.data.ExecLedger;
 import com.abissell.cempaka.data.ExecLedgers;
 import com.abissell.cempaka.data.Fees;
 import com.abissell.cempaka.data.FixErr;
 import com.abissell.cempaka.data.MktDataBook;
 import com.abissell.cempaka.data.MktDataBooks;
+import com.abissell.cempaka.data.OrderArchive;
 import com.abissell.cempaka.data.Pnl;
 import com.abissell.cempaka.data.QFJRes;
 import com.abissell.cempaka.data.RiskLimit;
 import com.abissell.cempaka.data.TradingMode;
+import com.abissell.cempaka.fix.ConflatingMailbox;
+import com.abissell.cempaka.fix.InboundJournal;
 import com.abissell.cempaka.fix.MsgQueue;
+import com.abissell.cempaka.fix.OutboundWriter;
 import com.abissell.cempaka.fix.QFJExecSession;
 import com.abissell.cempaka.fix.QFJMktDataSession;
+import com.abissell.cempaka.fix.SendResult;
+import com.abissell.cempaka.fix.ViewPool;
 import com.abissell.cempaka.util.CempakaLog;
+import com.abissell.cempaka.util.CpuAffinity;
+import com.abissell.cempaka.util.FixedPoint;
 import com.abissell.cempaka.util.DstSet;
+import com.abissell.cempaka.util.DroppedLogEvents;
 import com.abissell.cempaka.data.CcyPair;
 import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.ExecReportView;
 import com.abissell.fixbridge.ExecSessionBridge;
 import com.abissell.fixbridge.FixField;
 import com.abissell.fixbridge.FixFieldVal;
 import com.abissell.fixbridge.MDReqID;
+import com.abissell.fixbridge.MDUpdateType;
 import com.abissell.fixbridge.MarketDepth;
+import com.abissell.fixbridge.MdSnapshotView;
 import com.abissell.fixbridge.MinQty;
 import com.abissell.fixbridge.MktDataSessionBridge;
 import com.abissell.fixbridge.MktDataSubscriptionReq;
-import com.abissell.fixbridge.MsgType;
 import com.abissell.fixbridge.Order;
 import com.abissell.fixbridge.OrderQty;
 import com.abissell.fixbridge.ParsedFixMsg;
@@ -97,22 +112,40 @@ public final class CcyPairTrader {
     public final ExecSessionBridge<QFJRes, FixErr> execSession;
     private static final int EXEC_QUEUE_SIZE = 200;
     private final MsgQueue<ParsedFixMsg> execQueue = new MsgQueue<>(EXEC_QUEUE_SIZE);
+    private final MsgQueue<ExecReportView> execReportQueue = new MsgQueue<>(EXEC_QUEUE_SIZE);
+    private final ViewPool<ExecReportView> execReportPool = new ViewPool<>(EXEC_QUEUE_SIZE, ExecReportView::new);
     private final MsgQueue<Order> manualOrderQueue = new MsgQueue<>(10);
-    private final List<MsgQueue<?>> queueList = List.of(mktDataQueue, execQueue, manualOrderQueue);
+    // Results of sends made by the OutboundWriter, when sending asynchronously
+    private final MsgQueue<SendResult> sendResultQueue = new MsgQueue<>(EXEC_QUEUE_SIZE);
+    // Latest full refresh snapshot per CcyPair, when subscribed to full refreshes
+    private final ConflatingMailbox<MdSnapshotView> mktDataMailbox = new ConflatingMailbox<>(CcyPair.values().length);
+    private final ViewPool<MdSnapshotView> snapshotPool = new ViewPool<>(2 * CcyPair.values().length, MdSnapshotView::new);
+    // Reused for the snapshots still queued as a ParsedFixMsg alongside increments
+    private final MdSnapshotView scratchSnapshot = new MdSnapshotView();
+    private final List<MsgQueue<?>> queueList = List.of(mktDataQueue, execQueue, execReportQueue, manualOrderQueue, sendResultQueue);
 
     private final MktDataBooks<CcyPair> mktDataBooks;
     private final ExecLedgers<CcyPair> execLedgers;
+    // Appended to from the loop as orders reach a terminal status
+    private final Opt<OrderArchive> orderArchive;
     private final Fees fees;
     public final CcyPairRiskLimits riskLimits;
 
     private volatile EnumSet<CcyPair> mktDataSubscribedPairs = EnumSet.noneOf(CcyPair.class);
     private volatile EnumSet<CcyPair> activeTradingPairs = EnumSet.noneOf(CcyPair.class);
     private final CxdBookAnalyzer cxdBookAnalyzer;
-    private final CxdBookEntryLogger entryLogger = new CxdBookEntryLogger();
+    private final EnumMap<CcyPair, CxdBookBuf> cxdBookBufs = new EnumMap<>(CcyPair.class);
+    private final ParamsToTrade buyParams = new ParamsToTrade();
+    private final ParamsToTrade sellParams = new ParamsToTrade();
+    private final CxdBookEntryLogger entryLogger;
+    // Binary records of the ExecutionReports handled and entries sent, written from the loop
+    private final Opt<ExecJournal> execLog;
 
     private final Map<ClOrdrID, Order> dryRunOrders = new HashMap<>();
     private static final Duration DRY_RUN_EXPIRY = Duration.ofSeconds(10L);
 
+    private static final int ARCHIVED_ORDERS_TO_PRINT = 20;
+
     private static final Duration RISK_LIMIT_LOG_INTERVAL = Duration.ofSeconds(10L);
     private LocalDateTime lastRiskLimitLogTime;
 
@@ -120,33 +153,131 @@ public final class CcyPairTrader {
 
     private final LogBuf<DstSet> logBuf = LogBuf.create(DstSet.class);
 
-    private final ExecutorService loopRunner = Executors.newSingleThreadExecutor();
+    static final String LOOP_THREAD_NAME = "cempaka-trading-loop";
+    private final ExecutorService loopRunner = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, LOOP_THREAD_NAME));
+
+    // Snapshots are taken on the loop and written out by snapshotWriter
+    private static final long SNAPSHOT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10L);
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "cempaka-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean snapshotRequested = false;
+    private long lastSnapshotNanos;
+    private final TradingLoopConfig loopConfig;
+    private final Supplier<LocalDateTime> timestampSrc;
 
     public CcyPairTrader(Supplier<LocalDateTime> timestampSrc, Fees fees,
-            String fileSuffix) throws ConfigError {
-        this.mktDataSession = new QFJMktDataSession(new SessionSettings("marketdatasession" + fileSuffix), mktDataQueue, timestampSrc);
-        this.execSession = new QFJExecSession(new SessionSettings("executionsession" + fileSuffix), execQueue, timestampSrc);
+            String fileSuffix, TradingLoopConfig loopConfig) throws ConfigError {
+        var journalDir = loopConfig.journalDir();
+        Opt<InboundJournal> mktDataJournal = journalDir.isNone() ?
+            Opt.none() : Opt.of(new InboundJournal(journalDir.get(), QFJMktDataSession.JOURNAL_NAME));
+        Opt<InboundJournal> execJournal = journalDir.isNone() ?
+            Opt.none() : Opt.of(new InboundJournal(journalDir.get(), QFJExecSession.JOURNAL_NAME));
+        this.mktDataSession = new QFJMktDataSession(new SessionSettings("marketdatasession" + fileSuffix), mktDataQueue, mktDataMailbox, snapshotPool, mktDataJournal, loopConfig.mktDataTextLog(), timestampSrc);
+        Opt<OutboundWriter> outboundWriter = loopConfig.asyncSend() ?
+            Opt.of(new OutboundWriter(EXEC_QUEUE_SIZE, sendResultQueue,
+                        loopConfig.newWriterIdleStrategy(), loopConfig.writerCpu())) : Opt.none();
+        var qfjExecSession = new QFJExecSession(new SessionSettings("executionsession" + fileSuffix), execQueue, execReportQueue, execReportPool, outboundWriter, execJournal, timestampSrc);
+        this.execSession = qfjExecSession;
 
-        Function<ParsedFixMsg, CcyPair> tradeableExtractor =
-            msg -> (CcyPair) msg.msg().get(FixField.SYMBOL);
         this.mktDataBooks = new MktDataBooks<>(
                 new EnumMap<>(CcyPair.class),
-                tradeableExtractor,
-                EnumSet.allOf(CcyPair.class));
+                msg -> (CcyPair) msg.msg().get(FixField.SYMBOL),
+                EnumSet.allOf(CcyPair.class),
+                t -> loopConfig.fixedPoint() ? Opt.of(FixedPoint.MKT_DATA_DECIMAL_PTS) : Opt.none());
+        this.orderArchive = loopConfig.orderArchiveDir().isNone() ?
+            Opt.none() : Opt.of(new OrderArchive(loopConfig.orderArchiveDir().get()));
         this.execLedgers = new ExecLedgers<>(
                 new EnumMap<>(CcyPair.class),
-                tradeableExtractor,
+                execReport -> (CcyPair) execReport.symbol(),
                 EnumSet.allOf(CcyPair.class),
                 t -> Constraints.on(t.ccy1),
-                fees);
+                fees,
+                orderArchive);
         this.fees = fees;
         this.riskLimits = new CcyPairRiskLimits(timestampSrc.get());
         this.cxdBookAnalyzer = new CxdBookAnalyzer(fees);
+        this.execLog = journalDir.isNone() ? Opt.none() : Opt.of(new ExecJournal(journalDir.get()));
+        this.entryLogger = new CxdBookEntryLogger(execLog, loopConfig.execTextLog());
+        EnumSet.allOf(CcyPair.class).forEach(pair -> cxdBookBufs.put(pair, new CxdBookBuf()));
         this.lastRiskLimitLogTime = timestampSrc.get();
+        this.loopConfig = loopConfig;
+        this.timestampSrc = timestampSrc;
 
+        loopConfig.orderArchiveDir().ifPresent(this::advancePastArchivedIDs);
+        loopConfig.snapshotDir().ifPresent(this::loadSnapshot);
+        journalDir.ifPresent(dir -> restoreLedgers(qfjExecSession, dir));
         loopRunner.submit(this::loop);
     }
 
+    /*
+     * A session started in the same second of day as an earlier one today
+     * would hand out the same ClOrdrIDs, so the counter is moved past those
+     * archived, restored from the snapshot and seen in the journal.
+     */
+    private void advancePastArchivedIDs(Path archiveDir) {
+        var day = timestampSrc.get().toLocalDate();
+        if (!Files.exists(OrderArchive.fileFor(archiveDir, day))) {
+            return;
+        }
+        try (var reader = OrderArchive.Reader.open(archiveDir, day)) {
+            reader.forEach(archived -> ClOrdrID.advancePast(archived.id()));
+        } catch (IOException | RuntimeException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not read order archive for " + day + " to advance ClOrdrIDs: " + e);
+        }
+    }
+
+    // Starts the ledgers and risk limits from the last snapshot taken today, if any
+    private void loadSnapshot(Path snapshotDir) {
+        try {
+            var snapshot = StateSnapshot.read(snapshotDir);
+            if (snapshot.isNone()) {
+                return;
+            }
+            var takenTime = snapshot.get().takenTime();
+            if (!takenTime.toLocalDate().equals(timestampSrc.get().toLocalDate())) {
+                Log.WARN.to(DstSet.APP_STD_OUT, "Ignoring state snapshot taken at " + takenTime);
+                return;
+            }
+            execLedgers.restore(snapshot.get().ledgers());
+            riskLimits.restore(snapshot.get().risk());
+            for (var ledgerState : snapshot.get().ledgers().ledgers().values()) {
+                ledgerState.openOrders().forEach(open -> ClOrdrID.advancePast((ClOrdrID) open.order().id()));
+                ledgerState.multilegOrders().keySet().forEach(ClOrdrID::advancePast);
+            }
+            Log.WARN.to(DstSet.APP_STD_OUT, "Restored state snapshot taken at " + takenTime);
+        } catch (IOException | RuntimeException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not load state snapshot from " + snapshotDir + ": " + e);
+        }
+    }
+
+    /*
+     * Applies the ExecutionReports journaled today after those already in the
+     * ledgers, rather than asking for them to be resent after a restart.
+     */
+    private void restoreLedgers(QFJExecSession session, Path journalDir) {
+        var day = timestampSrc.get().toLocalDate();
+        var start = System.nanoTime();
+        try {
+            var count = session.replayJournal(journalDir, day, execReport -> {
+                if (execReport.clOrdID() instanceof ClOrdrID clOrdrID) {
+                    ClOrdrID.advancePast(clOrdrID);
+                }
+                try (var eventLog = new EventLog<>(logBuf)) {
+                    execLedgers.restore(execReport, eventLog);
+                }
+            });
+            EnumSet.allOf(CcyPair.class).forEach(pair -> riskLimits.updatedLedger(execLedgers.get(pair)));
+            Log.WARN.to(DstSet.APP_STD_OUT, "Restored ledgers from " + count + " journaled ExecutionReports in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms, pnls: " + execLedgers.getNonflatPnls());
+        } catch (IOException | RuntimeException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not restore ledgers from journal in " + journalDir + ": " + e);
+        }
+    }
+
     private DoubleRounder createDoubleRounder() {
         final var places = new HashSet<Integer>();
         Constraints.SPECD_CCYS.forEach(ccy -> {
@@ -194,10 +325,17 @@ public final class CcyPairTrader {
             } else {
                 minQty = Opt.none();
             }
+            Log.INFO.to(DstSet.APP_STD_OUT, "Enter the update type, 0 for full refresh or 1 for incremental refresh:\n");
+            var updateType = switch (Integer.parseInt(System.console().readLine())) {
+                case 0 -> MDUpdateType.FULL_REFRESH;
+                case 1 -> MDUpdateType.INCREMENTAL_REFRESH;
+                default -> throw new IllegalArgumentException("Unrecognized update type input");
+            };
             var request = new MktDataSubscriptionReq(
                     MD_REQ_ID,
                     SubscriptionRequestType.SUBSCRIBE,
                     new MarketDepth(levels),
+                    updateType,
                     minQty
             );
             var result = mktDataSession.subscribe(request, ccyPairs);
@@ -290,12 +428,21 @@ public final class CcyPairTrader {
     }
 
     private void loop() {
+        loopConfig.cpu().ifPresent(CpuAffinity::pinCurrentThread);
+        var idleStrategy = loopConfig.newIdleStrategy();
+        Log.INFO.to(DstSet.APP_STD_OUT, "Trading loop running with idle strategy " + idleStrategy);
         var msgs = new ArrayList<ParsedFixMsg>(8);
-        var mktDataMap = new EnumMap<CcyPair, ParsedFixMsg>(CcyPair.class);
+        var execReports = new ArrayList<ExecReportView>(8);
+        var snapshots = new ArrayList<MdSnapshotView>(8);
         var manualOrders = new ArrayList<Order>(8);
+        var sendResults = new ArrayList<SendResult>(8);
+        lastSnapshotNanos = System.nanoTime();
         while (true) {
             try {
-                executeLoop(msgs, mktDataMap, manualOrders);
+                idleStrategy.idle(executeLoop(msgs, execReports, snapshots, manualOrders, sendResults));
+                if (!loopConfig.snapshotDir().isNone()) {
+                    maybeSnapshot(loopConfig.snapshotDir().get());
+                }
             } catch (Throwable t) {
                 riskLimits.halt();
                 Log.ERROR.to(DstSet.APP_STD_OUT, "!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
@@ -311,34 +458,93 @@ public final class CcyPairTrader {
         }
     }
 
-    private void executeLoop(final List<ParsedFixMsg> msgs,
-            final EnumMap<CcyPair, ParsedFixMsg> mktDataMap,
-            final List<Order> manualOrders) {
-        var drained = execQueue.drainTo(msgs);
+    // Takes the snapshot between messages, so the ledgers and risk limits agree, and leaves the IO to snapshotWriter
+    private void maybeSnapshot(Path snapshotDir) {
+        long now = System.nanoTime();
+        if (!snapshotRequested && now - lastSnapshotNanos < SNAPSHOT_INTERVAL_NANOS) {
+            return;
+        }
+        var manual = snapshotRequested;
+        snapshotRequested = false;
+        lastSnapshotNanos = now;
+        var snapshot = new StateSnapshot(timestampSrc.get(), execLedgers.state(), riskLimits.state());
+        snapshotWriter.execute(() -> {
+            try {
+                snapshot.write(snapshotDir);
+                if (manual) {
+                    Log.INFO.to(DstSet.APP_STD_OUT, "Wrote state snapshot taken at " + snapshot.takenTime());
+                }
+            } catch (IOException e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Could not write state snapshot to " + snapshotDir + ": " + e);
+            }
+        });
+    }
+
+    void requestSnapshot() {
+        if (loopConfig.snapshotDir().isNone()) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "State snapshots are off");
+            return;
+        }
+        snapshotRequested = true;
+    }
+
+    // @return the number of messages and orders handled
+    // The lists are cleared even if handling throws, so a bad message is not handled again on the next pass
+    private int executeLoop(final List<ParsedFixMsg> msgs,
+            final List<ExecReportView> execReports,
+            final List<MdSnapshotView> snapshots,
+            final List<Order> manualOrders,
+            final List<SendResult> sendResults) {
+        try {
+            return drainAndHandle(msgs, execReports, snapshots, manualOrders, sendResults);
+        } finally {
+            msgs.clear();
+            execReports.clear();
+            snapshots.clear();
+            manualOrders.clear();
+            sendResults.clear();
+        }
+    }
+
+    private int drainAndHandle(final List<ParsedFixMsg> msgs,
+            final List<ExecReportView> execReports,
+            final List<MdSnapshotView> snapshots,
+            final List<Order> manualOrders,
+            final List<SendResult> sendResults) {
+        var drained = sendResultQueue.drainTo(sendResults);
+        drained += execReportQueue.drainTo(execReports);
+        drained += execQueue.drainTo(msgs);
         if (drained > 0) {
+            for (var sendResult : sendResults) {
+                onSendResult(sendResult);
+            }
+            for (var execReport : execReports) {
+                onExecutionReport(execReport);
+                execReportPool.release(execReport);
+            }
             for (var msg : msgs) {
                 switch (msg.msgType()) {
-                    case EXECUTION_REPORT -> onExecutionReport(msg);
                     case TRADING_SESSION_STATUS -> onExecTradingSessionStatus();
                     default -> Log.ERROR.to(DstSet.APP_STD_OUT, "Unsure how to handle msg in execQueue: " + msg);
                 }
             }
         } else {
             drained = mktDataQueue.drainTo(msgs);
+            drained += mktDataMailbox.drainTo(snapshots);
             if (drained > 0) {
-                if (drained > 1) {
-                    var coalesced = coalesceMktData(msgs, mktDataMap);
-                    msgs.clear();
-                    msgs.addAll(coalesced);
-                }
-
                 for (var msg : msgs) {
                     switch (msg.msgType()) {
-                        case MARKET_DATA_SNAPSHOT_FULL_REFRESH -> onMktDataSnapshotFullRefresh(msg);
+                        case MARKET_DATA_SNAPSHOT_FULL_REFRESH ->
+                            onMktDataSnapshotFullRefresh(scratchSnapshot.load(msg.msg(), msg.recvdTime()));
+                        case MARKET_DATA_INCREMENTAL_REFRESH -> onMktDataIncrementalRefresh(msg);
                         case TRADING_SESSION_STATUS -> onMktDataTradingSessionStatus();
                         default -> Log.ERROR.to(DstSet.APP_STD_OUT, "Unsure how to handle msg in mktDataQueue: " + msg);
                     }
                 }
+                for (var snapshot : snapshots) {
+                    onMktDataSnapshotFullRefresh(snapshot);
+                    snapshotPool.release(snapshot);
+                }
             } else {
                 drained = manualOrderQueue.drainTo(manualOrders);
                 if (drained > 0) {
@@ -346,45 +552,44 @@ public final class CcyPairTrader {
                 }
             }
         }
-
-        msgs.clear();
-        mktDataMap.clear();
-        manualOrders.clear();
+        return drained;
     }
 
-    private static final int COALESCED_LIST_LENGTH = CcyPair.values().length * 2;
-    // TODO: Should be possible to coalesce the list in place using removal by index
-    private List<ParsedFixMsg> coalesceMktData(List<ParsedFixMsg> msgs,
-            EnumMap<CcyPair, ParsedFixMsg> mktDataMap) {
-        if (!mktDataMap.isEmpty()) {
-            throw new IllegalStateException("mktDataMap should always be empty here!");
-        }
-
-        var coalesced = new ArrayList<ParsedFixMsg>(COALESCED_LIST_LENGTH);
-        for (var msg : msgs) {
-            if (msg.msgType() == MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH) {
-                var ccyPair = (CcyPair) msg.get(FixField.SYMBOL);
-                mktDataMap.put(ccyPair, msg);
-            } else {
-                coalesced.add(msg);
+    private void onMktDataSnapshotFullRefresh(MdSnapshotView snapshot) {
+        try (var eventLog = new EventLog<>(logBuf)) {
+            var updatedBook = mktDataBooks.updateBook(snapshot);
+            // A book ignores a PossDup snapshot, so it is still stale after one
+            if (!snapshot.isPossDup() && snapshot.has(FixField.CHECK_SUM)) {
+                riskLimits.fullyRefreshed((CcyPair) updatedBook.tradeable);
             }
+            riskLimits.updatedMktData(updatedBook);
+            var ccyPair = (CcyPair) updatedBook.tradeable;
+            var ledger = execLedgers.get(ccyPair);
+            trade(ccyPair, updatedBook, ledger, snapshot.recvdTime(), eventLog);
+            var buf = eventLog.to(DstSet.APP, Log.DEBUG)
+                    .add("----- MarketDataSnapshotFullRefresh -----\n");
+            buf.add(snapshot).add("\n");
+            buf.add("-----------------------------------------\n");
         }
-
-        mktDataMap.values().forEach(coalesced::add);
-        return coalesced;
     }
 
-    private void onMktDataSnapshotFullRefresh(ParsedFixMsg msg) {
+    private void onMktDataIncrementalRefresh(ParsedFixMsg msg) {
+        if (QFJMktDataSession.isFailedIncrement(msg)) {
+            var ccyPair = (CcyPair) msg.get(FixField.SYMBOL);
+            riskLimits.markStale(ccyPair);
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Missed an increment for " + ccyPair + ", not trading it until its next full refresh");
+            return;
+        }
         try (var eventLog = new EventLog<>(logBuf)) {
-            var updatedBook = mktDataBooks.updateBook(msg);
+            var updatedBook = mktDataBooks.applyIncrement(msg);
             riskLimits.updatedMktData(updatedBook);
             var ccyPair = (CcyPair) updatedBook.tradeable;
             var ledger = execLedgers.get(ccyPair);
             trade(ccyPair, updatedBook, ledger, msg.recvdTime(), eventLog);
             var buf = eventLog.to(DstSet.APP, Log.DEBUG)
-                    .add("----- MarketDataSnapshotFullRefresh -----\n");
+                    .add("----- MarketDataIncrementalRefresh -----\n");
             buf.add(msg.msg().values().iterator(), FixFieldVal::toLogline);
-            buf.add("-----------------------------------------\n");
+            buf.add("----------------------------------------\n");
         }
     }
 
@@ -394,16 +599,36 @@ public final class CcyPairTrader {
         Log.ERROR.to(DstSet.APP_STD_OUT, "MktDataSession called onTradingSessionStatus(), halting trading! Was in mode: " + prevMode);
     }
 
-    private void onExecutionReport(ParsedFixMsg msg) {
+    private void onExecutionReport(ExecReportView execReport) {
         try (var eventLog = new EventLog<>(logBuf)) {
-            var updatedLedger = execLedgers.handleExecReport(msg, eventLog);
+            var updatedLedger = execLedgers.handleExecReport(execReport, eventLog);
             riskLimits.updatedLedger(updatedLedger);
             var ccyPair = (CcyPair) updatedLedger.tradeable;
             var mktDataBook = mktDataBooks.get(ccyPair);
-            trade(ccyPair, mktDataBook, updatedLedger, msg.recvdTime(), eventLog);
-            var buf = eventLog.to(DstSet.APP_STD_OUT_EXEC, Log.INFO);
-            if (buf instanceof OptBuf.Buf) {
-                CempakaLog.logExecutionReport(msg.msg(), buf);
+            trade(ccyPair, mktDataBook, updatedLedger, execReport.recvdTime(), eventLog);
+            if (!execLog.isNone()) {
+                execLog.get().appendExecReport(execReport);
+            }
+            if (loopConfig.execTextLog()) {
+                var buf = eventLog.to(DstSet.APP_STD_OUT_EXEC, Log.INFO);
+                if (buf instanceof OptBuf.Buf) {
+                    CempakaLog.logExecutionReport(execReport, buf);
+                }
+            }
+        }
+    }
+
+    // Orders whose send failed will get no ExecutionReports, so are canceled in their ledgers
+    private void onSendResult(SendResult sendResult) {
+        if (sendResult.succeeded()) {
+            return;
+        }
+        Log.ERROR.to(DstSet.APP_STD_OUT, "Outbound writer failed to send orders " + sendResult.orders() + ", result: " + sendResult.result());
+        for (var order : sendResult.orders()) {
+            var id = (ClOrdrID) order.id();
+            var execLedger = execLedgers.get((CcyPair) order.tradeable());
+            if (execLedger.isFillable(id)) {
+                execLedger.forceCxlOrder(id, order, timestampSrc.get());
             }
         }
     }
@@ -445,8 +670,13 @@ public final class CcyPairTrader {
             ExecLedger execLedger, LocalDateTime now, EventLog<DstSet> eventLog) {
         final var constraints = Constraints.on(ccyPair.ccy1);
 
-        var cxdBook = cxdBookAnalyzer.analyze(mktDataBook, constraints.minSigQty());
-        if (cxdBook == CxdBookAnalysis.NOT_CXD) {
+        var cxdBook = cxdBookBufs.get(ccyPair);
+        // Exec reports and repeated snapshots leave the book unchanged, in
+        // which case the last analysis of it still holds
+        if (cxdBook.bookVersion() != mktDataBook.version()) {
+            cxdBookAnalyzer.analyze(mktDataBook, constraints.minSigQty(), cxdBook);
+        }
+        if (!cxdBook.isCxd()) {
             return;
         }
 
@@ -478,19 +708,37 @@ public final class CcyPairTrader {
         final var tradingMode = riskLimits.getTradingMode();
         final var entryBuf = eventLog.to(DstSet.EXEC, Log.INFO);
         boolean buySent;
+        Opt<Result<QFJRes, FixErr>> sellResult = Opt.none();
         switch (tradingMode) {
             case DO_IT_LIVE -> {
-                var buyResult = execSession.sendNewOrderSingle(riskAdjOrders.buy());
-                buySent = buyResult.map(QFJRes::success).orElse(false);
+                if (loopConfig.multileg()) {
+                    // One message carries both legs, so they share its result
+                    var result = execSession.sendNewOrderMultileg(riskAdjOrders.buy(), riskAdjOrders.sell());
+                    buySent = result.map(QFJRes::success).orElse(false);
+                    sellResult = Opt.of(result);
+                } else {
+                    // Both legs go to the session together, the sell only if the buy was sent
+                    var results = execSession.sendNewOrderSingles(riskAdjOrders.buy(), riskAdjOrders.sell());
+                    buySent = results.first().map(QFJRes::success).orElse(false);
+                    sellResult = results.second();
+                }
                 // Even if order send fails we apply backoff period and
                 // decrement the magazine
                 riskLimits.sentOrder(ccyPair, now);
                 if (buySent) {
                     entryLogger.logEntryOrder(riskAdjOrders.buy(), tradingMode, entryBuf);
-                    eventLog.to(DstSet.APP, Log.INFO)
-                        .add("------------ NewOrderSingle -------------\n")
-                        .add(riskAdjOrders.buy()).add("\n")
-                        .add("-----------------------------------------\n");
+                    if (loopConfig.multileg()) {
+                        eventLog.to(DstSet.APP, Log.INFO)
+                            .add("----------- NewOrderMultileg ------------\n")
+                            .add(riskAdjOrders.buy()).add("\n")
+                            .add(riskAdjOrders.sell()).add("\n")
+                            .add("-----------------------------------------\n");
+                    } else {
+                        eventLog.to(DstSet.APP, Log.INFO)
+                            .add("------------ NewOrderSingle -------------\n")
+                            .add(riskAdjOrders.buy()).add("\n")
+                            .add("-----------------------------------------\n");
+                    }
                 }
             }
             case DRY_RUN -> {
@@ -503,18 +751,24 @@ public final class CcyPairTrader {
         }
 
         if (buySent) {
-            execLedger.addPendingNewOrder(riskAdjOrders.buy());
+            // A multileg's legs are added to the ledger together, below
+            final boolean multilegSent = tradingMode == TradingMode.DO_IT_LIVE && loopConfig.multileg();
+            if (!multilegSent) {
+                execLedger.addPendingNewOrder(riskAdjOrders.buy());
+            }
 
             boolean sellSent;
             switch (tradingMode) {
                 case DO_IT_LIVE -> {
-                    var sellResult = execSession.sendNewOrderSingle(riskAdjOrders.sell());
-                    sellSent = sellResult.map(QFJRes::success).orElse(false);
+                    sellSent = sellResult.map(r -> r.map(QFJRes::success).orElse(false)).orElse(false);
                     // Even if order send fails we apply backoff period and
                     // decrement the magazine
                     riskLimits.sentOrder(ccyPair, now);
                     if (sellSent) {
                         entryLogger.logEntryOrder(riskAdjOrders.sell(), tradingMode, entryBuf);
+                    }
+                    // A multileg's banner already carried the sell
+                    if (sellSent && !multilegSent) {
                         eventLog.to(DstSet.APP, Log.INFO)
                             .add("------------ NewOrderSingle -------------\n")
                             .add(riskAdjOrders.sell()).add("\n")
@@ -531,7 +785,11 @@ public final class CcyPairTrader {
             }
 
             if (sellSent) {
-                execLedger.addPendingNewOrder(riskAdjOrders.sell());
+                if (multilegSent) {
+                    execLedger.addPendingMultilegOrder(riskAdjOrders.buy(), riskAdjOrders.sell());
+                } else {
+                    execLedger.addPendingNewOrder(riskAdjOrders.sell());
+                }
                 entryLogger.logEntry(riskAdjOrders, cxdBook, mktDataBook, fees, constraints.minSigQty(), entryBuf);
             } else {
                 Log.ERROR.to(DstSet.APP_STD_OUT, "SENT BUY ORDER WITHOUT MATCHING SELL!");
@@ -548,7 +806,7 @@ public final class CcyPairTrader {
             if (order.tradeable().equals(ccyPair)) {
                 LocalDateTime orderExp = order.sentTime().fieldVal().plus(DRY_RUN_EXPIRY);
                 if (now.isAfter(orderExp)) {
-                    execLedger.forceCxlOrder(id, order);
+                    execLedger.forceCxlOrder(id, order, now);
                     toRemove.add(id);
                 }
             }
@@ -556,30 +814,28 @@ public final class CcyPairTrader {
         dryRunOrders.keySet().removeAll(toRemove);
     }
 
-    private Opt<CxOrders> generateOrders(CcyPair ccyPair, CxdBookAnalysis cxdBook, LocalDateTime now, Constraints constraints) {
+    private Opt<CxOrders> generateOrders(CcyPair ccyPair, CxdBook cxdBook, LocalDateTime now, Constraints constraints) {
         final var qtyLimit = riskLimits.tradeQtyLimit(ccyPair);
         final var valLimit = riskLimits.usdEquivTradeLimit();
 
-        var buyParams = findParamsToTradeAgainst(cxdBook.cxdAskLvls(), qtyLimit,
-                valLimit);
-        var sellParams = findParamsToTradeAgainst(cxdBook.cxdBidLvls(), qtyLimit,
-                valLimit);
+        findParamsToTradeAgainst(cxdBook, Side.SELL, qtyLimit, valLimit, buyParams);
+        findParamsToTradeAgainst(cxdBook, Side.BUY, qtyLimit, valLimit, sellParams);
 
-        if (Math.abs(buyParams.qty() - sellParams.qty()) >= constraints.minSigQty()) {
+        if (Math.abs(buyParams.qty - sellParams.qty) >= constraints.minSigQty()) {
             Log.ERROR.to(DstSet.APP_STD_OUT, "Had qty mismatch! buyParams=" + buyParams + ", sellParams=" + sellParams + ", " +
                     "cxdBook=" + cxdBook);
             return Opt.none();
         }
 
-        var qty = sanitizeOrderQty(Math.min(buyParams.qty(), sellParams.qty()), constraints);
+        var qty = sanitizeOrderQty(Math.min(buyParams.qty, sellParams.qty), constraints);
         if (qty.qty() < constraints.minOrderQty()) {
             return Opt.none();
         }
 
-        var midPxs = getMidPxs(sellParams.worstPx(), buyParams.worstPx(), constraints);
+        var midPxs = getMidPxs(sellParams.worstPx, buyParams.worstPx, constraints);
         var transactTime = new TransactTime(now);
         var buyOrder = new Order(
-                ClOrdrID.from(now),
+                ClOrdrID.next(),
                 ccyPair,
                 ccyPair.ccy1,
                 Side.BUY,
@@ -589,7 +845,7 @@ public final class CcyPairTrader {
                 transactTime
         );
         var sellOrder = new Order(
-                ClOrdrID.from(now, 1),
+                ClOrdrID.next(),
                 ccyPair,
                 ccyPair.ccy1,
                 Side.SELL,
@@ -614,6 +870,9 @@ public final class CcyPairTrader {
             default -> throw new IllegalArgumentException("" + side);
         };
 
+        if (loopConfig.fixedPoint()) {
+            return new Price(FixedPoint.round(px, constraints.pxMaxDecimalPts(), roundingMode));
+        }
         return new Price(doubleRounder.round(px, constraints.pxMaxDecimalPts(), roundingMode));
     }
 
@@ -623,15 +882,22 @@ public final class CcyPairTrader {
     }
 
     private OrderQty sanitizeOrderQty(double qty, Constraints constraints) {
+        if (loopConfig.fixedPoint()) {
+            return new OrderQty(FixedPoint.round(qty, constraints.qtyMaxDecimalPts(), RoundingMode.DOWN));
+        }
         return new OrderQty(doubleRounder.round(qty, constraints.qtyMaxDecimalPts(), RoundingMode.DOWN));
     }
 
-    private ParamsToTrade findParamsToTradeAgainst(List<CxdBookLvl> lvls,
-            final double qtyLimit, final double valLimit) {
+    /*
+     * @param side The side of the crossed levels to trade against, so
+     * Side.SELL (the crossed asks) when finding params for the buy order
+     */
+    private void findParamsToTradeAgainst(CxdBook cxdBook, Side side,
+            final double qtyLimit, final double valLimit, ParamsToTrade params) {
         double qtyToTrade = 0.0d, valToTrade = 0.0d, worstPxToTrade = 0.0d;
-        for (var lvl : lvls) {
-            var lvlPx = lvl.px().px();
-            double qtyToAdd = findQtyToAdd(qtyToTrade, valToTrade, lvl.qty().qty(),
+        for (int i = 0; i < cxdBook.numCxdLvls(side); i++) {
+            var lvlPx = cxdBook.cxdPx(side, i);
+            double qtyToAdd = findQtyToAdd(qtyToTrade, valToTrade, cxdBook.cxdQty(side, i),
                     lvlPx, qtyLimit, valLimit);
             if (qtyToAdd > 0.0d) {
                 qtyToTrade += qtyToAdd;
@@ -642,11 +908,21 @@ public final class CcyPairTrader {
             }
         }
 
-        return new ParamsToTrade(qtyToTrade, valToTrade, worstPxToTrade);
+        params.qty = qtyToTrade;
+        params.val = valToTrade;
+        params.worstPx = worstPxToTrade;
     }
 
-    private /* primitive */ /* value */ record ParamsToTrade(
-            double qty, double val, double worstPx) { }
+    // Mutable so the trading thread can reuse one per side instead of
+    // allocating on every crossed book
+    private static final class ParamsToTrade {
+        private double qty, val, worstPx;
+
+        @Override
+        public String toString() {
+            return "ParamsToTrade[qty=" + qty + ", val=" + val + ", worstPx=" + worstPx + "]";
+        }
+    }
 
     // TODO: Make this more sophisticated
     private MidPxs getMidPxs(double bidPx, double askPx, Constraints constraints) {
@@ -697,14 +973,43 @@ public final class CcyPairTrader {
     }
 
     void printQueueStats() {
-        Log.WARN.to(DstSet.APP_STD_OUT, "mktDataQueue size=" + mktDataQueue.size() + ", remCapacity=" + mktDataQueue.remainingCapacity() + ", healthy=" + mktDataQueue.healthy);
+        Log.WARN.to(DstSet.APP_STD_OUT, "mktDataQueue size=" + mktDataQueue.size() + ", remCapacity=" + mktDataQueue.remainingCapacity() + ", healthy=" + mktDataQueue.healthy + ", dupSnapshotsDropped=" + mktDataQueue.droppedCount());
+        Log.WARN.to(DstSet.APP_STD_OUT, "mktDataMailbox pending=" + mktDataMailbox.pending() + ", conflated=" + mktDataMailbox.conflatedCount());
+        Log.WARN.to(DstSet.APP_STD_OUT, "snapshotPool allocated=" + snapshotPool.allocatedCount());
         Log.WARN.to(DstSet.APP_STD_OUT, "execQueue size=" + execQueue.size() + ", remCapacity=" + execQueue.remainingCapacity() + ", healthy=" + execQueue.healthy);
+        Log.WARN.to(DstSet.APP_STD_OUT, "execReportQueue size=" + execReportQueue.size() + ", remCapacity=" + execReportQueue.remainingCapacity() + ", healthy=" + execReportQueue.healthy + ", poolAllocated=" + execReportPool.allocatedCount());
         Log.WARN.to(DstSet.APP_STD_OUT, "manualOrderQueue size=" + manualOrderQueue.size() + ", remCapacity=" + manualOrderQueue.remainingCapacity() + ", healthy=" + manualOrderQueue.healthy);
+        Log.WARN.to(DstSet.APP_STD_OUT, "sendResultQueue size=" + sendResultQueue.size() + ", remCapacity=" + sendResultQueue.remainingCapacity() + ", healthy=" + sendResultQueue.healthy);
+        Log.WARN.to(DstSet.APP_STD_OUT, "async log events dropped=" + DroppedLogEvents.count());
+    }
+
+    // Prints the order with the given ClOrdrID from today's archive, or its last orders if blank
+    void printArchivedOrders(String idStr) {
+        if (loopConfig.orderArchiveDir().isNone()) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Order archiving is off");
+            return;
+        }
+        var day = timestampSrc.get().toLocalDate();
+        try (var reader = OrderArchive.Reader.open(loopConfig.orderArchiveDir().get(), day)) {
+            Log.INFO.to(DstSet.APP_STD_OUT, reader.count() + " orders archived on " + day);
+            if (idStr.isBlank()) {
+                for (int i = Math.max(0, reader.count() - ARCHIVED_ORDERS_TO_PRINT); i < reader.count(); i++) {
+                    Log.INFO.to(DstSet.APP_STD_OUT, reader.get(i));
+                }
+            } else {
+                var archived = reader.find(ClOrdrID.from(idStr.trim()));
+                Log.INFO.to(DstSet.APP_STD_OUT, archived.isNone() ? "No archived order " + idStr : archived.get());
+            }
+        } catch (IOException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not read order archive for " + day + ": " + e);
+        }
     }
 
     void setQueuesHealthy() {
         mktDataQueue.setHealthy();
         execQueue.setHealthy();
+        execReportQueue.setHealthy();
         manualOrderQueue.setHealthy();
+        sendResultQueue.setHealthy();
     }
 }
@@ -18,8 +18,6 @@
 package com.abissell.cempaka;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import com.abissell.cempaka.data.*;
 import com.abissell.fixbridge.OrderQty;
@@ -32,68 +30,85 @@ public final class CxdBookAnalyzer {
         this.fees = fees;
     }
 
+    // Allocates the result; the trading loop uses the CxdBookBuf overload
     public CxdBookAnalysis analyze(MktDataBook book, double minSigQty) {
-        var bids = book.get(Side.BUY);
-        if (bids.isEmpty()) {
+        var buf = new CxdBookBuf();
+        if (!analyze(book, minSigQty, buf)) {
             return CxdBookAnalysis.NOT_CXD;
         }
-        var asks = book.get(Side.SELL);
-        if (asks.isEmpty()) {
-            return CxdBookAnalysis.NOT_CXD;
+
+        int numBidLvls = buf.numCxdLvls(Side.BUY);
+        var crossedBids = new ArrayList<CxdBookLvl>(numBidLvls);
+        for (int i = 0; i < numBidLvls; i++) {
+            var update = book.bids().update(buf.cxdBookLvl(Side.BUY, i));
+            crossedBids.add(new CxdBookLvl(new OrderQty(buf.cxdQty(Side.BUY, i)), update));
+        }
+        int numAskLvls = buf.numCxdLvls(Side.SELL);
+        var crossedAsks = new ArrayList<CxdBookLvl>(numAskLvls);
+        for (int i = 0; i < numAskLvls; i++) {
+            var update = book.asks().update(buf.cxdBookLvl(Side.SELL, i));
+            crossedAsks.add(new CxdBookLvl(new OrderQty(buf.cxdQty(Side.SELL, i)), update));
+        }
+
+        return new CxdBookAnalysis(crossedBids, crossedAsks, buf.theoValUsd());
+    }
+
+    /*
+     * Writes the crossed levels of the book into buf, overwriting whatever
+     * it held before.
+     *
+     * @return true if the book was crossed
+     */
+    public boolean analyze(MktDataBook book, double minSigQty, CxdBookBuf buf) {
+        var bids = book.bids();
+        var asks = book.asks();
+        buf.reset(bids.size() + asks.size(), book.version());
+        if (bids.isEmpty() || asks.isEmpty()) {
+            return false;
         }
 
-        var lowestAskLvl = asks.get(0).level();
-        final int lowestCxdBidIdx = findIdxOfLowestCxdBid(bids, lowestAskLvl);
+        final int lowestCxdBidIdx = findIdxOfLowestCxdBid(bids, asks.px(0));
         if (lowestCxdBidIdx < 0) {
-            return CxdBookAnalysis.NOT_CXD;
+            return false;
         }
 
-        var crossedBids = new ArrayList<CxdBookLvl>(bids.size());
-        var crossedAsks = new ArrayList<CxdBookLvl>(asks.size());
         int bidIdx = lowestCxdBidIdx;
         int askIdx = 0;
         double bidVal = 0.0d, askVal = 0.0d;
         double askQtyConsumed = 0.0d;
         while (bidIdx >= 0) {
-            var bid = bids.get(bidIdx);
-            var bidLvl = bid.level();
-            var bidPx = bidLvl.px().px();
-            bidPx = fees.adjustedPx(Side.BUY, bidPx);
-            var bidQtyAvail = bidLvl.qty().qty();
+            var bidPx = fees.adjustedPx(Side.BUY, bids.px(bidIdx));
+            var bidQtyAvail = bids.qty(bidIdx);
 
             while (askIdx < asks.size()) {
-                var ask = asks.get(askIdx);
-                var askLvl = ask.level();
-                var askPx = askLvl.px().px();
-                askPx = fees.adjustedPx(Side.SELL, askPx);
+                var askPx = fees.adjustedPx(Side.SELL, asks.px(askIdx));
                 if (askPx >= bidPx) {
                     // bump to the next higher bid (if any)
                     bidIdx--;
                     break;
                 }
 
-                var askQty = askLvl.qty().qty() - askQtyConsumed;
+                // BookSide rejects non-positive qtys as they are ingested, so no level is checked here
+                var askQty = asks.qty(askIdx) - askQtyConsumed;
                 boolean consumedBid = false, consumedAsk = false;
                 if (bidQtyAvail >= askQty) {
-                    var qty = new OrderQty(askQty);
-                    crossedBids.add(new CxdBookLvl(qty, bid));
-                    bidVal += qty.qty() * bidPx;
-                    crossedAsks.add(new CxdBookLvl(qty, ask));
-                    askVal += qty.qty() * askPx;
+                    buf.addCxdBidLvl(bids.px(bidIdx), askQty, bidIdx);
+                    bidVal += askQty * bidPx;
+                    buf.addCxdAskLvl(asks.px(askIdx), askQty, askIdx);
+                    askVal += askQty * askPx;
                     consumedAsk = true;
                     bidQtyAvail -= askQty;
                     if (bidQtyAvail < minSigQty) {
                         consumedBid = true;
                     }
                 } else {
-                    var qty = new OrderQty(bidQtyAvail);
-                    crossedBids.add(new CxdBookLvl(qty, bid));
-                    bidVal += qty.qty() * bidPx;
-                    crossedAsks.add(new CxdBookLvl(qty, ask));
-                    askVal += qty.qty() * askPx;
+                    buf.addCxdBidLvl(bids.px(bidIdx), bidQtyAvail, bidIdx);
+                    bidVal += bidQtyAvail * bidPx;
+                    buf.addCxdAskLvl(asks.px(askIdx), bidQtyAvail, askIdx);
+                    askVal += bidQtyAvail * askPx;
                     consumedBid = true;
                     askQtyConsumed += bidQtyAvail;
-                    if (askLvl.qty().qty() - askQtyConsumed < minSigQty) {
+                    if (asks.qty(askIdx) - askQtyConsumed < minSigQty) {
                         consumedAsk = true;
                     }
                 }
@@ -114,16 +129,14 @@ public final class CxdBookAnalyzer {
             }
         }
 
-        Collections.reverse(crossedBids);
-        return new CxdBookAnalysis(crossedBids, crossedAsks, bidVal - askVal);
+        buf.finish(bidVal - askVal);
+        return buf.isCxd();
     }
 
-    private int findIdxOfLowestCxdBid(List<SidePxQtyUpdate> bids, SidePxQty lowestAskLvl) {
-        var lowestAskPx = lowestAskLvl.px().px();
+    private int findIdxOfLowestCxdBid(BookSide bids, double lowestAskPx) {
         int lowestCxdBidIdx = -1;
         for (int i = 0; i < bids.size(); i++) {
-            var bidUpdate = bids.get(i);
-            if (bidUpdate.level().px().px() > lowestAskPx) {
+            if (bids.px(i) > lowestAskPx) {
                 lowestCxdBidIdx = i;
             }
         }
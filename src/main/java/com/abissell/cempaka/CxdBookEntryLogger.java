@@ -18,10 +18,11 @@
 package com.abissell.cempaka;
 
 import com.abissell.javautil.io.ThreadLocalFormat;
+import com.abissell.javautil.rusty.Opt;
 import com.abissell.logutil.OptBuf;
 import com.abissell.cempaka.data.CxOrders;
-import com.abissell.cempaka.data.CxdBookAnalysis;
-import com.abissell.cempaka.data.CxdBookLvl;
+import com.abissell.cempaka.data.CxdBook;
+import com.abissell.cempaka.data.ExecJournal;
 import com.abissell.cempaka.data.Fees;
 import com.abissell.cempaka.data.MktDataBook;
 import com.abissell.cempaka.data.TradingMode;
@@ -30,16 +31,36 @@ import com.abissell.fixbridge.Side;
 
 final class CxdBookEntryLogger {
     private CumPnl cumPnl;
+    // When present, entries are also written to it as binary records
+    private final Opt<ExecJournal> journal;
+    // Whether entries are rendered as text to the buf passed in
+    private final boolean textLog;
 
     CxdBookEntryLogger() {
         this(CumPnl.NO_TRADES);
     }
 
     CxdBookEntryLogger(CumPnl cumPnl) {
+        this(cumPnl, Opt.none(), true);
+    }
+
+    CxdBookEntryLogger(Opt<ExecJournal> journal, boolean textLog) {
+        this(CumPnl.NO_TRADES, journal, textLog);
+    }
+
+    private CxdBookEntryLogger(CumPnl cumPnl, Opt<ExecJournal> journal, boolean textLog) {
         this.cumPnl = cumPnl;
+        this.journal = journal;
+        this.textLog = textLog;
     }
 
     OptBuf logEntryOrder(Order order, TradingMode tradingMode, OptBuf buf) {
+        if (!journal.isNone()) {
+            journal.get().appendEntryOrder(order, tradingMode);
+        }
+        if (!textLog) {
+            return buf;
+        }
         if (order.side() == Side.BUY) {
             buf.add("\n-------------------- ").add(tradingMode).add(" --------------------\n");
         }
@@ -56,57 +77,85 @@ final class CxdBookEntryLogger {
         }
     }
 
-    OptBuf logEntry(CxOrders orders, CxdBookAnalysis cxdBook, MktDataBook book,
+    OptBuf logEntry(CxOrders orders, CxdBook cxdBook, MktDataBook book,
             Fees fees, double minSigQty, OptBuf buf) {
-        var df = ThreadLocalFormat.with8SigDigits();
+        var df = textLog ? ThreadLocalFormat.with8SigDigits() : null;
         double toBuyQty = orders.buy().qty().qty();
         double botQty = 0.0d, botVal = 0.0d;
-        var asksBuf = new StringBuilder();
-        asksBuf.append("ASKS[");
-        for (CxdBookLvl lvl : cxdBook.cxdAskLvls()) {
-            if (orders.buy().px().px() < lvl.px().px()) {
+        var asksBuf = textLog ? new StringBuilder() : null;
+        if (textLog) {
+            asksBuf.append("ASKS[");
+        }
+        for (int i = 0; i < cxdBook.numCxdLvls(Side.SELL); i++) {
+            double lvlPx = cxdBook.cxdPx(Side.SELL, i);
+            if (orders.buy().px().px() < lvlPx) {
                 break;
             }
-            double qtyAvail = lvl.qty().qty();
+            double qtyAvail = cxdBook.cxdQty(Side.SELL, i);
             double qtyToUse = Math.min(qtyAvail, toBuyQty);
             botQty += qtyToUse;
-            double lvlPx = lvl.px().px();
             botVal += (qtyToUse * lvlPx);
             toBuyQty -= qtyToUse;
-            asksBuf.append(df.format(qtyToUse)).append(" @ ").append(df.format(lvlPx)).append(", ");
+            if (textLog) {
+                asksBuf.append(df.format(qtyToUse)).append(" @ ").append(df.format(lvlPx)).append(", ");
+            }
             if (toBuyQty < minSigQty) {
                 break;
             }
         }
-        asksBuf.append("]");
+        if (textLog) {
+            asksBuf.append("]");
+        }
 
         double toSellQty = orders.sell().qty().qty();
         double sldQty = 0.0d, sldVal = 0.0d;
-        var bidsBuf = new StringBuilder();
-        bidsBuf.append("BIDS[");
-        for (CxdBookLvl lvl : cxdBook.cxdBidLvls()) {
-            if (orders.sell().px().px() > lvl.px().px()) {
+        var bidsBuf = textLog ? new StringBuilder() : null;
+        if (textLog) {
+            bidsBuf.append("BIDS[");
+        }
+        for (int i = 0; i < cxdBook.numCxdLvls(Side.BUY); i++) {
+            double lvlPx = cxdBook.cxdPx(Side.BUY, i);
+            if (orders.sell().px().px() > lvlPx) {
                 break;
             }
-            double qtyAvail = lvl.qty().qty();
+            double qtyAvail = cxdBook.cxdQty(Side.BUY, i);
             double qtyToUse = Math.min(qtyAvail, toSellQty);
             sldQty += qtyToUse;
-            double lvlPx = lvl.px().px();
             sldVal += (qtyToUse * lvlPx);
             toSellQty -= qtyToUse;
-            bidsBuf.append(df.format(qtyToUse)).append(" @ ").append(df.format(lvlPx)).append(", ");
+            if (textLog) {
+                bidsBuf.append(df.format(qtyToUse)).append(" @ ").append(df.format(lvlPx)).append(", ");
+            }
             if (toSellQty < minSigQty) {
                 break;
             }
         }
-        bidsBuf.append("]");
+        if (textLog) {
+            bidsBuf.append("]");
+        }
 
         double feesChg = fees.feesChg(botQty + sldQty, botVal + sldVal);
         double grossPnl = sldVal - botVal;
         double netPnl = grossPnl - feesChg;
 
         cumPnl = cumPnl.withChg(netPnl, grossPnl, feesChg);
+        if (!journal.isNone()) {
+            journal.get().appendEntry(orders, netPnl, grossPnl, feesChg,
+                    cumPnl.net(), cumPnl.gross(), cumPnl.fees());
+        }
+        if (!textLog) {
+            return buf;
+        }
+
+        logTheoPnl(netPnl, grossPnl, feesChg, cumPnl, buf);
+        buf.add(bidsBuf).add('\n');
+        buf.add(asksBuf).add('\n');
+        buf.add(book.print(2)).add('\n');
+        buf.add("-------------------------------------------------\n");
+        return buf;
+    }
 
+    static OptBuf logTheoPnl(double netPnl, double grossPnl, double feesChg, CumPnl cumPnl, OptBuf buf) {
         final var df4 = ThreadLocalFormat.with4SigDigits();
 
         buf.add("THEO PNL: net=").add(df4.format(netPnl))
@@ -115,10 +164,6 @@ final class CxdBookEntryLogger {
         buf.add("CUM THEO PNL: net=").add(df4.format(cumPnl.net()))
             .add(", gross=").add(df4.format(cumPnl.gross()))
             .add(", fees=").add(df4.format(cumPnl.fees())).add('\n');
-        buf.add(bidsBuf).add('\n');
-        buf.add(asksBuf).add('\n');
-        buf.add(book.print(2)).add('\n');
-        buf.add("-------------------------------------------------\n");
         return buf;
     }
 }
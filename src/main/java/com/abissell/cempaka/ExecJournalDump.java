@@ -0,0 +1,85 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import com.abissell.logutil.OptBuf;
+import com.abissell.cempaka.data.ExecJournal;
+import com.abissell.cempaka.util.CempakaLog;
+import com.abissell.fixbridge.ExecReportView;
+
+/*
+ * Renders a day's ExecJournal in the format of the Exec log:
+ *
+ *   java -cp <classpath> com.abissell.cempaka.ExecJournalDump <dir> [yyyy-MM-dd]
+ *
+ * dir is the journal directory and the day defaults to today in UTC. The
+ * journal keeps each entry's theo pnl but not the levels it crossed or the
+ * book at the time, so those lines of the Exec log are left out.
+ */
+public final class ExecJournalDump {
+    private ExecJournalDump() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ExecJournalDump <dir> [yyyy-MM-dd]");
+            System.exit(2);
+        }
+        var dir = Path.of(args[0]);
+        var day = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now(ZoneOffset.UTC);
+        var out = new PrintStream(System.out, false);
+        try (var reader = ExecJournal.Reader.open(dir, day)) {
+            dump(reader, out);
+        }
+        out.flush();
+    }
+
+    static void dump(ExecJournal.Reader reader, PrintStream out) {
+        var view = new ExecReportView();
+        var renderer = new CxdBookEntryLogger();
+        for (int i = 0; i < reader.count(); i++) {
+            var sb = new StringBuilder();
+            var buf = new OptBuf.Buf(sb);
+            switch (reader.kind(i)) {
+                case ExecJournal.EXEC_REPORT -> {
+                    CempakaLog.logExecutionReport(reader.execReport(i, view), buf);
+                    out.println(sb);
+                }
+                // An entry's orders and pnl were one message in the Exec log
+                case ExecJournal.ENTRY_ORDER -> {
+                    renderer.logEntryOrder(reader.entryOrder(i), reader.entryOrderMode(i), buf);
+                    out.print(sb);
+                }
+                case ExecJournal.ENTRY -> {
+                    var entry = reader.entry(i);
+                    var cumPnl = new CxdBookEntryLogger.CumPnl(entry.cumNetPnl(), entry.cumGrossPnl(), entry.cumFees());
+                    CxdBookEntryLogger.logTheoPnl(entry.netPnl(), entry.grossPnl(), entry.fees(), cumPnl, buf);
+                    buf.add("-------------------------------------------------\n");
+                    out.println(sb);
+                }
+                default -> out.println("Unknown record kind " + reader.kind(i) + " at " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.data.Ccy;
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.cempaka.data.CxOrders;
+import com.abissell.cempaka.data.ExecLedger;
+import com.abissell.cempaka.data.ExecLedgers;
+import com.abissell.cempaka.data.Pnl;
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.cempaka.orderid.OrdrID;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+
+/*
+ * The ExecLedgers and CcyPairRiskLimits state, taken by the trading loop
+ * between messages so the two agree, and written to a binary file by
+ * another thread. The file is replaced whole with an atomic move, so the
+ * one on disk is always the latest complete snapshot.
+ */
+/* value */ record StateSnapshot(
+        LocalDateTime takenTime,
+        ExecLedgers.State<CcyPair> ledgers,
+        CcyPairRiskLimits.State risk) {
+    static final int MAGIC = 0x434D5353; // "CMSS"
+    static final int VERSION = 1;
+    static final String FILE_NAME = "state.snap";
+
+    void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        var tmp = dir.resolve(FILE_NAME + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeTime(out, takenTime);
+            writeLedgers(out);
+            writeRisk(out);
+        }
+        Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Opt<StateSnapshot> read(Path dir) throws IOException {
+        var file = dir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return Opt.none();
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " state snapshot: " + file);
+            }
+            var takenTime = readTime(in);
+            var ledgers = readLedgers(in);
+            var risk = readRisk(in);
+            return Opt.of(new StateSnapshot(takenTime, ledgers, risk));
+        }
+    }
+
+    private void writeLedgers(DataOutputStream out) throws IOException {
+        var lastApplied = ledgers.lastAppliedRecvdTime();
+        out.writeBoolean(!lastApplied.isNone());
+        if (!lastApplied.isNone()) {
+            writeTime(out, lastApplied.get());
+        }
+        out.writeInt(ledgers.lastAppliedMsgSeqNum());
+        out.writeInt(ledgers.ledgers().size());
+        for (var entry : ledgers.ledgers().entrySet()) {
+            var state = entry.getValue();
+            out.writeUTF(entry.getKey().symbol());
+            writePnl(out, state.pnl());
+            out.writeInt(state.rejectedCount());
+            out.writeInt(state.openOrders().size());
+            for (var open : state.openOrders()) {
+                writeOrder(out, open.order());
+                out.writeChar(open.status().fixChar);
+                out.writeBoolean(open.filled());
+                out.writeDouble(open.cumQty());
+                out.writeDouble(open.avgPx());
+            }
+            out.writeInt(state.multilegOrders().size());
+            for (var multileg : state.multilegOrders().entrySet()) {
+                out.writeLong(multileg.getKey().packed());
+                writeOrder(out, multileg.getValue().buy());
+                writeOrder(out, multileg.getValue().sell());
+            }
+        }
+    }
+
+    private static ExecLedgers.State<CcyPair> readLedgers(DataInputStream in) throws IOException {
+        Opt<LocalDateTime> lastApplied = in.readBoolean() ? Opt.of(readTime(in)) : Opt.none();
+        int lastAppliedMsgSeqNum = in.readInt();
+        int count = in.readInt();
+        var states = new HashMap<CcyPair, ExecLedger.State>();
+        for (int i = 0; i < count; i++) {
+            var ccyPair = CcyPair.from(in.readUTF());
+            var pnl = readPnl(in);
+            int rejectedCount = in.readInt();
+            int openCount = in.readInt();
+            var openOrders = new ArrayList<ExecLedger.OpenOrder>(openCount);
+            for (int j = 0; j < openCount; j++) {
+                openOrders.add(new ExecLedger.OpenOrder(readOrder(in), OrdStatus.fromFixChar(in.readChar()),
+                            in.readBoolean(), in.readDouble(), in.readDouble()));
+            }
+            int multilegCount = in.readInt();
+            var multilegOrders = new HashMap<ClOrdrID, CxOrders>();
+            for (int j = 0; j < multilegCount; j++) {
+                var id = new ClOrdrID(OrdrID.fromPacked(in.readLong()));
+                multilegOrders.put(id, new CxOrders(readOrder(in), readOrder(in)));
+            }
+            states.put(ccyPair, new ExecLedger.State(pnl, rejectedCount, openOrders, multilegOrders));
+        }
+        return new ExecLedgers.State<>(lastApplied, lastAppliedMsgSeqNum, states);
+    }
+
+    private void writeRisk(DataOutputStream out) throws IOException {
+        out.writeInt(risk.circuitBreakers().size());
+        for (var ccyPair : risk.circuitBreakers()) {
+            out.writeUTF(ccyPair.symbol());
+        }
+        out.writeInt(risk.magazine());
+        out.writeInt(risk.lastEntryTimes().size());
+        for (var entry : risk.lastEntryTimes().entrySet()) {
+            out.writeUTF(entry.getKey().symbol());
+            writeTime(out, entry.getValue());
+        }
+        out.writeInt(risk.rejectedOrdersObserved().size());
+        for (var entry : risk.rejectedOrdersObserved().entrySet()) {
+            out.writeUTF(entry.getKey().symbol());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(risk.usdEquivTradeLimit());
+        out.writeDouble(risk.numer1TradeLimit());
+        out.writeDouble(risk.numer2TradeLimit());
+        out.writeInt(risk.usdEquivPosLimit());
+        out.writeDouble(risk.numer1PosLimit());
+        out.writeDouble(risk.numer2PosLimit());
+        out.writeInt(risk.usdEquivMaxLoss());
+        out.writeDouble(risk.minTradeTheoValUsd());
+        out.writeDouble(risk.maxCrossRatio());
+        out.writeDouble(risk.badDataCrossRatio());
+        out.writeInt(risk.maxConcurrentEntries());
+        out.writeInt(risk.maxConcurrentEntriesPerPair());
+        out.writeLong(risk.backoffInterval().toMillis());
+    }
+
+    private static CcyPairRiskLimits.State readRisk(DataInputStream in) throws IOException {
+        var circuitBreakers = EnumSet.noneOf(CcyPair.class);
+        for (int i = in.readInt(); i > 0; i--) {
+            circuitBreakers.add(CcyPair.from(in.readUTF()));
+        }
+        int magazine = in.readInt();
+        var lastEntryTimes = new EnumMap<CcyPair, LocalDateTime>(CcyPair.class);
+        for (int i = in.readInt(); i > 0; i--) {
+            lastEntryTimes.put(CcyPair.from(in.readUTF()), readTime(in));
+        }
+        var rejectedOrdersObserved = new EnumMap<CcyPair, Integer>(CcyPair.class);
+        for (int i = in.readInt(); i > 0; i--) {
+            rejectedOrdersObserved.put(CcyPair.from(in.readUTF()), in.readInt());
+        }
+        return new CcyPairRiskLimits.State(circuitBreakers, magazine, lastEntryTimes, rejectedOrdersObserved,
+                in.readInt(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readInt(), Duration.ofMillis(in.readLong()));
+    }
+
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeLong(((ClOrdrID) order.id()).packed());
+        out.writeUTF(order.tradeable().symbol());
+        out.writeUTF(order.base().fieldVal());
+        out.writeChar(order.side().fixChar);
+        out.writeDouble(order.qty().qty());
+        out.writeDouble(order.px().px());
+        out.writeChar(order.timeInForce().fixChar);
+        writeTime(out, order.sentTime().time());
+    }
+
+    private static Order readOrder(DataInputStream in) throws IOException {
+        return new Order(new ClOrdrID(OrdrID.fromPacked(in.readLong())), CcyPair.from(in.readUTF()),
+                Ccy.fromFixStr(in.readUTF()), Side.fromFixChar(in.readChar()), new OrderQty(in.readDouble()),
+                new Price(in.readDouble()), TimeInForce.fromFixChar(in.readChar()), new TransactTime(readTime(in)));
+    }
+
+    private static void writePnl(DataOutputStream out, Pnl pnl) throws IOException {
+        out.writeDouble(pnl.netPnl());
+        out.writeDouble(pnl.highWatermark());
+        out.writeDouble(pnl.netQty());
+        out.writeDouble(pnl.grossPnl());
+        out.writeDouble(pnl.fees());
+        out.writeDouble(pnl.botQty());
+        out.writeDouble(pnl.botVal());
+        out.writeDouble(pnl.sldQty());
+        out.writeDouble(pnl.sldVal());
+    }
+
+    private static Pnl readPnl(DataInputStream in) throws IOException {
+        return new Pnl(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka;
+
+import java.nio.file.Path;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.util.IdleStrategy;
+
+/*
+ * How the trading loop thread waits for work and which CPU, if any, it is
+ * pinned to. Read from -Dcempaka.loop.idle=<spec> (see IdleStrategy.from)
+ * and -Dcempaka.loop.cpu=<n>.
+ *
+ * -Dcempaka.loop.fixedPoint=true has the loop keep book pxs and round order
+ * pxs and qtys as scaled longs (see FixedPoint) rather than doubles.
+ *
+ * -Dcempaka.loop.multileg=true has live entries sent as one NewOrderMultileg
+ * <35=AB> carrying both legs, for venues that accept it, rather than as two
+ * NewOrderSingles.
+ *
+ * -Dcempaka.loop.asyncSend=true has orders written to the execution session
+ * by a separate thread (see OutboundWriter), with a failed send's result
+ * coming back to the loop later, so the loop never waits on a socket write.
+ * That thread waits for work as -Dcempaka.writer.idle=<spec> says,
+ * "spin-yield-park" by default, and is pinned to -Dcempaka.writer.cpu=<n>
+ * if given.
+ *
+ * -Dcempaka.orderArchiveDir=<dir> is where orders are archived once filled,
+ * canceled or rejected (see OrderArchive), "archive" by default. A blank
+ * value turns archiving off.
+ *
+ * -Dcempaka.journalDir=<dir> is where the raw inbound messages of both
+ * sessions are journaled (see InboundJournal), "journal" by default, and
+ * where the ledgers' fills are restored from on startup. A blank value
+ * turns journaling off.
+ *
+ * ExecutionReports handled and entries sent are also written there as
+ * fixed-size binary records (see ExecJournal), and ExecJournalDump renders
+ * them as the Exec log would read. They are still formatted to the Exec
+ * log on the trading loop as well unless -Dcempaka.execTextLog=false,
+ * which, like mktDataTextLog below, is ignored when journaling is off.
+ *
+ * Every market data message is also rendered to the MktData log as text,
+ * as before journaling. Once the journal, which already holds the raw
+ * messages, and JournalDump, which prints them on demand, are relied on,
+ * -Dcempaka.mktDataTextLog=false stops that. It is ignored when journaling
+ * is off.
+ *
+ * -Dcempaka.snapshotDir=<dir> is where the ledgers and risk limits are
+ * snapshotted every SNAPSHOT_INTERVAL (see StateSnapshot), "snapshot" by
+ * default, and loaded from on startup. A blank value turns snapshots off.
+ */
+public record TradingLoopConfig(
+        String idleSpec, /* value */
+        Opt<Integer> cpu, /* value */
+        boolean fixedPoint, /* primitive */
+        boolean multileg, /* primitive */
+        boolean asyncSend, /* primitive */
+        String writerIdleSpec, /* value */
+        Opt<Integer> writerCpu, /* value */
+        Opt<Path> orderArchiveDir, /* value */
+        Opt<Path> journalDir, /* value */
+        boolean execTextLog, /* primitive */
+        boolean mktDataTextLog, /* primitive */
+        Opt<Path> snapshotDir /* value */) {
+    public static final String IDLE_PROPERTY = "cempaka.loop.idle";
+    public static final String CPU_PROPERTY = "cempaka.loop.cpu";
+    public static final String FIXED_POINT_PROPERTY = "cempaka.loop.fixedPoint";
+    public static final String MULTILEG_PROPERTY = "cempaka.loop.multileg";
+    public static final String ASYNC_SEND_PROPERTY = "cempaka.loop.asyncSend";
+    public static final String WRITER_IDLE_PROPERTY = "cempaka.writer.idle";
+    public static final String WRITER_CPU_PROPERTY = "cempaka.writer.cpu";
+    public static final String ORDER_ARCHIVE_DIR_PROPERTY = "cempaka.orderArchiveDir";
+    public static final String JOURNAL_DIR_PROPERTY = "cempaka.journalDir";
+    public static final String EXEC_TEXT_LOG_PROPERTY = "cempaka.execTextLog";
+    public static final String MKT_DATA_TEXT_LOG_PROPERTY = "cempaka.mktDataTextLog";
+    public static final String SNAPSHOT_DIR_PROPERTY = "cempaka.snapshotDir";
+    public static final String DEFAULT_IDLE_SPEC = "busy-spin";
+    public static final String DEFAULT_WRITER_IDLE_SPEC = "spin-yield-park";
+    public static final String DEFAULT_ORDER_ARCHIVE_DIR = "archive";
+    public static final String DEFAULT_JOURNAL_DIR = "journal";
+    public static final String DEFAULT_SNAPSHOT_DIR = "snapshot";
+
+    public TradingLoopConfig {
+        // Fail fast on a bad spec rather than when the loop thread starts
+        IdleStrategy.from(idleSpec);
+        IdleStrategy.from(writerIdleSpec);
+        if (!cpu.isNone() && cpu.get() < 0) {
+            throw new IllegalArgumentException("Invalid cpu: " + cpu.get());
+        }
+        if (!writerCpu.isNone() && writerCpu.get() < 0) {
+            throw new IllegalArgumentException("Invalid writerCpu: " + writerCpu.get());
+        }
+    }
+
+    public static TradingLoopConfig fromSystemProperties() {
+        var idleSpec = System.getProperty(IDLE_PROPERTY, DEFAULT_IDLE_SPEC);
+        var cpu = cpuProperty(CPU_PROPERTY);
+        var fixedPoint = Boolean.parseBoolean(System.getProperty(FIXED_POINT_PROPERTY, "false").trim());
+        var multileg = Boolean.parseBoolean(System.getProperty(MULTILEG_PROPERTY, "false").trim());
+        var asyncSend = Boolean.parseBoolean(System.getProperty(ASYNC_SEND_PROPERTY, "false").trim());
+        var writerIdleSpec = System.getProperty(WRITER_IDLE_PROPERTY, DEFAULT_WRITER_IDLE_SPEC);
+        var writerCpu = cpuProperty(WRITER_CPU_PROPERTY);
+        var orderArchiveDir = dirProperty(ORDER_ARCHIVE_DIR_PROPERTY, DEFAULT_ORDER_ARCHIVE_DIR);
+        var journalDir = dirProperty(JOURNAL_DIR_PROPERTY, DEFAULT_JOURNAL_DIR);
+        var execTextLog = journalDir.isNone()
+            || Boolean.parseBoolean(System.getProperty(EXEC_TEXT_LOG_PROPERTY, "true").trim());
+        var mktDataTextLog = journalDir.isNone()
+            || Boolean.parseBoolean(System.getProperty(MKT_DATA_TEXT_LOG_PROPERTY, "true").trim());
+        var snapshotDir = dirProperty(SNAPSHOT_DIR_PROPERTY, DEFAULT_SNAPSHOT_DIR);
+        return new TradingLoopConfig(idleSpec, cpu, fixedPoint, multileg, asyncSend, writerIdleSpec, writerCpu,
+                orderArchiveDir, journalDir, execTextLog, mktDataTextLog, snapshotDir);
+    }
+
+    private static Opt<Integer> cpuProperty(String property) {
+        var cpuProp = System.getProperty(property);
+        return cpuProp == null || cpuProp.isBlank() ?
+            Opt.none() : Opt.of(Integer.parseInt(cpuProp.trim()));
+    }
+
+    private static Opt<Path> dirProperty(String property, String defaultDir) {
+        var dirProp = System.getProperty(property, defaultDir);
+        return dirProp.isBlank() ? Opt.none() : Opt.of(Path.of(dirProp.trim()));
+    }
+
+    // Each loop thread gets its own instance, since strategies are stateful
+    public IdleStrategy newIdleStrategy() {
+        return IdleStrategy.from(idleSpec);
+    }
+
+    public IdleStrategy newWriterIdleStrategy() {
+        return IdleStrategy.from(writerIdleSpec);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import com.abissell.cempaka.util.FixedPoint;
+import com.abissell.cempaka.util.UtcNanos;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+
+/*
+ * One side of a MktDataBook, stored as parallel primitive arrays and kept in
+ * the same order SidePxQtyUpdate.compareTo() would sort it: best px first,
+ * then larger qty, then more recent sending and received times. Times are
+ * UTC epoch nanos.
+ *
+ * Full snapshots are staged into a second set of arrays which is swapped in
+ * on commit, so the side can tell whether the snapshot changed any px or qty.
+ *
+ * In fixed-point mode each level also carries its px scaled to a long, and
+ * pxs are ordered and matched on that, so pxs equal as decimals always land
+ * on the same level. The double px kept alongside is the one nearest the
+ * scaled value.
+ *
+ * Readers outside this package only get the read-only accessors.
+ */
+public final class BookSide {
+    private static final int INITIAL_CAPACITY = 64;
+    static final int DOUBLE_PXS = -1;
+
+    public final Side side;
+    // DOUBLE_PXS, or the decimal pts pxs are scaled by in fixed-point mode
+    private final int pxDecimalPts;
+    private Levels live = new Levels();
+    private Levels staged = new Levels();
+
+    BookSide(Side side) {
+        this(side, DOUBLE_PXS);
+    }
+
+    BookSide(Side side, int pxDecimalPts) {
+        if (side != Side.BUY && side != Side.SELL) {
+            throw new IllegalArgumentException("Cannot create a BookSide for " + side);
+        }
+        if (pxDecimalPts != DOUBLE_PXS) {
+            // Fail fast on an invalid scale
+            FixedPoint.toScaled(0.0d, pxDecimalPts, RoundingMode.UNNECESSARY);
+        }
+        this.side = side;
+        this.pxDecimalPts = pxDecimalPts;
+    }
+
+    public boolean isFixedPoint() {
+        return pxDecimalPts != DOUBLE_PXS;
+    }
+
+    public int size() {
+        return live.size;
+    }
+
+    public boolean isEmpty() {
+        return live.size == 0;
+    }
+
+    public double px(int lvl) {
+        return live.pxs[lvl];
+    }
+
+    public double qty(int lvl) {
+        return live.qtys[lvl];
+    }
+
+    public long sendingTime(int lvl) {
+        return live.sendingTimes[lvl];
+    }
+
+    public long recvdTime(int lvl) {
+        return live.recvdTimes[lvl];
+    }
+
+    // Allocates, so keep it off the trading path
+    public SidePxQtyUpdate update(int lvl) {
+        return new SidePxQtyUpdate(
+                new SidePxQty(side, new Price(live.pxs[lvl]), new OrderQty(live.qtys[lvl])),
+                UtcNanos.toLocalDateTime(live.sendingTimes[lvl]),
+                UtcNanos.toLocalDateTime(live.recvdTimes[lvl])
+            );
+    }
+
+    void beginStaging() {
+        staged.size = 0;
+    }
+
+    void stage(double px, double qty, long sendingTime, long recvdTime) {
+        insert(staged, px, pxKey(px), qty, sendingTime, recvdTime);
+    }
+
+    /*
+     * Swaps the staged levels in as the live ones.
+     *
+     * @return true if any px or qty differs from the levels replaced
+     */
+    boolean commitStaged() {
+        boolean changed = staged.size != live.size
+            || (isFixedPoint() ?
+                    !Arrays.equals(staged.pxKeys, 0, staged.size, live.pxKeys, 0, live.size)
+                    : !Arrays.equals(staged.pxs, 0, staged.size, live.pxs, 0, live.size))
+            || !Arrays.equals(staged.qtys, 0, staged.size, live.qtys, 0, live.size);
+        var prevLive = live;
+        live = staged;
+        staged = prevLive;
+        return changed;
+    }
+
+    void insert(double px, double qty, long sendingTime, long recvdTime) {
+        insert(live, px, pxKey(px), qty, sendingTime, recvdTime);
+    }
+
+    // @return true if the qty changed
+    boolean set(int lvl, double qty, long sendingTime, long recvdTime) {
+        if (qty <= 0.0d) {
+            throw new IllegalArgumentException("non-positive qty! " + qty);
+        }
+        boolean changed = Double.compare(live.qtys[lvl], qty) != 0;
+        live.qtys[lvl] = qty;
+        live.sendingTimes[lvl] = sendingTime;
+        live.recvdTimes[lvl] = recvdTime;
+        return changed;
+    }
+
+    void remove(int lvl) {
+        int toShift = live.size - lvl - 1;
+        if (toShift > 0) {
+            System.arraycopy(live.pxs, lvl + 1, live.pxs, lvl, toShift);
+            System.arraycopy(live.pxKeys, lvl + 1, live.pxKeys, lvl, toShift);
+            System.arraycopy(live.qtys, lvl + 1, live.qtys, lvl, toShift);
+            System.arraycopy(live.sendingTimes, lvl + 1, live.sendingTimes, lvl, toShift);
+            System.arraycopy(live.recvdTimes, lvl + 1, live.recvdTimes, lvl, toShift);
+        }
+        live.size--;
+    }
+
+    /*
+     * Binary search on px alone. Returns the level if found, otherwise
+     * (-(insertion point) - 1) as in Arrays.binarySearch().
+     */
+    int find(double px) {
+        long pxKey = pxKey(px);
+        int lo = 0, hi = live.size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePx(live, mid, px, pxKey);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // Scaled px in fixed-point mode, otherwise unused
+    private long pxKey(double px) {
+        return isFixedPoint() ? FixedPoint.toScaled(px, pxDecimalPts, RoundingMode.HALF_EVEN) : 0L;
+    }
+
+    private void insert(Levels levels, double px, long pxKey, double qty, long sendingTime, long recvdTime) {
+        if (qty <= 0.0d) {
+            throw new IllegalArgumentException("non-positive qty! " + qty);
+        }
+        if (isFixedPoint()) {
+            px = FixedPoint.toDouble(pxKey, pxDecimalPts);
+        }
+
+        levels.ensureCapacity(levels.size + 1);
+        // Updates usually arrive best level first, so scan back from the end
+        int idx = levels.size;
+        while (idx > 0 && compare(levels, idx - 1, px, pxKey, qty, sendingTime, recvdTime) > 0) {
+            idx--;
+        }
+
+        int toShift = levels.size - idx;
+        if (toShift > 0) {
+            System.arraycopy(levels.pxs, idx, levels.pxs, idx + 1, toShift);
+            System.arraycopy(levels.pxKeys, idx, levels.pxKeys, idx + 1, toShift);
+            System.arraycopy(levels.qtys, idx, levels.qtys, idx + 1, toShift);
+            System.arraycopy(levels.sendingTimes, idx, levels.sendingTimes, idx + 1, toShift);
+            System.arraycopy(levels.recvdTimes, idx, levels.recvdTimes, idx + 1, toShift);
+        }
+        levels.pxs[idx] = px;
+        levels.pxKeys[idx] = pxKey;
+        levels.qtys[idx] = qty;
+        levels.sendingTimes[idx] = sendingTime;
+        levels.recvdTimes[idx] = recvdTime;
+        levels.size++;
+    }
+
+    private int comparePx(Levels levels, int lvl, double px, long pxKey) {
+        int cmp = isFixedPoint() ?
+            Long.compare(levels.pxKeys[lvl], pxKey) : Double.compare(levels.pxs[lvl], px);
+        return switch (side) {
+            case BUY -> -1 * cmp;
+            case SELL -> cmp;
+            default -> throw new IllegalStateException("" + side);
+        };
+    }
+
+    private int compare(Levels levels, int lvl, double px, long pxKey, double qty, long sendingTime, long recvdTime) {
+        int pxCompare = comparePx(levels, lvl, px, pxKey);
+        if (pxCompare != 0) {
+            return pxCompare;
+        }
+
+        int qtyCompare = -1 * Double.compare(levels.qtys[lvl], qty);
+        if (qtyCompare != 0) {
+            return qtyCompare;
+        }
+
+        int sendingTimeCompare = -1 * Long.compare(levels.sendingTimes[lvl], sendingTime);
+        if (sendingTimeCompare != 0) {
+            return sendingTimeCompare;
+        }
+
+        return -1 * Long.compare(levels.recvdTimes[lvl], recvdTime);
+    }
+
+    private static final class Levels {
+        private double[] pxs = new double[INITIAL_CAPACITY];
+        private long[] pxKeys = new long[INITIAL_CAPACITY];
+        private double[] qtys = new double[INITIAL_CAPACITY];
+        private long[] sendingTimes = new long[INITIAL_CAPACITY];
+        private long[] recvdTimes = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > pxs.length) {
+                int newCapacity = Math.max(capacity, pxs.length * 2);
+                pxs = Arrays.copyOf(pxs, newCapacity);
+                pxKeys = Arrays.copyOf(pxKeys, newCapacity);
+                qtys = Arrays.copyOf(qtys, newCapacity);
+                sendingTimes = Arrays.copyOf(sendingTimes, newCapacity);
+                recvdTimes = Arrays.copyOf(recvdTimes, newCapacity);
+            }
+        }
+    }
+}
@@ -17,14 +17,23 @@
  */
 package com.abissell.cempaka.data;
 
-import com.abissell.fixbridge.AvgPx;
-import com.abissell.fixbridge.CumQty;
+import com.abissell.fixbridge.Side;
 
-public /* primitive */ record Fill(
-        double cumQty,
-        double avgPx) {
+/*
+ * Read-only view of the crossed levels found in a MktDataBook. Side.BUY
+ * levels are the crossed bids, ordered highest px first, and Side.SELL
+ * levels are the crossed asks, ordered lowest px first.
+ */
+public interface CxdBook {
+    int numCxdLvls(Side side);
+
+    double cxdPx(Side side, int lvl);
+
+    double cxdQty(Side side, int lvl);
+
+    double theoValUsd();
 
-    public Fill(CumQty cumQty, AvgPx avgPx) {
-        this(cumQty.qty(), avgPx.px());
+    default boolean isCxd() {
+        return numCxdLvls(Side.BUY) > 0 && numCxdLvls(Side.SELL) > 0;
     }
 }
@@ -20,10 +20,12 @@ package com.abissell.cempaka.data;
 import java.util.Collections;
 import java.util.List;
 
+import com.abissell.fixbridge.Side;
+
 public /* value */ record CxdBookAnalysis(
         List<CxdBookLvl> cxdBidLvls,
         List<CxdBookLvl> cxdAskLvls,
-        double theoValUsd) {
+        double theoValUsd) implements CxdBook {
 
     public static final CxdBookAnalysis NOT_CXD =
         new CxdBookAnalysis(
@@ -31,4 +33,27 @@ public /* value */ record CxdBookAnalysis(
                 Collections.emptyList(),
                 0.0d
             );
+
+    private List<CxdBookLvl> cxdLvls(Side side) {
+        return switch (side) {
+            case BUY -> cxdBidLvls;
+            case SELL -> cxdAskLvls;
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    @Override
+    public int numCxdLvls(Side side) {
+        return cxdLvls(side).size();
+    }
+
+    @Override
+    public double cxdPx(Side side, int lvl) {
+        return cxdLvls(side).get(lvl).px().px();
+    }
+
+    @Override
+    public double cxdQty(Side side, int lvl) {
+        return cxdLvls(side).get(lvl).qty().qty();
+    }
 }
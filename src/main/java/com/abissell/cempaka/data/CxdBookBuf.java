@@ -0,0 +1,153 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.util.Arrays;
+
+import com.abissell.fixbridge.Side;
+
+/*
+ * Reusable, mutable CxdBook backed by primitive arrays, meant to be owned by
+ * a single pair on the trading thread and overwritten by each analysis.
+ * Alongside each crossed px and qty it keeps the index of the level in the
+ * BookSide it was matched against, and it remembers which MktDataBook
+ * version it was analyzed from so unchanged books need not be re-analyzed.
+ */
+public final class CxdBookBuf implements CxdBook {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] bidPxs = new double[INITIAL_CAPACITY];
+    private double[] bidQtys = new double[INITIAL_CAPACITY];
+    private int[] bidBookLvls = new int[INITIAL_CAPACITY];
+    private int numBidLvls;
+
+    private double[] askPxs = new double[INITIAL_CAPACITY];
+    private double[] askQtys = new double[INITIAL_CAPACITY];
+    private int[] askBookLvls = new int[INITIAL_CAPACITY];
+    private int numAskLvls;
+
+    private double theoValUsd;
+    private long bookVersion = -1L;
+
+    public void reset(int maxLvls, long bookVersion) {
+        if (maxLvls > bidPxs.length) {
+            int newCapacity = Math.max(maxLvls, bidPxs.length * 2);
+            bidPxs = Arrays.copyOf(bidPxs, newCapacity);
+            bidQtys = Arrays.copyOf(bidQtys, newCapacity);
+            bidBookLvls = Arrays.copyOf(bidBookLvls, newCapacity);
+            askPxs = Arrays.copyOf(askPxs, newCapacity);
+            askQtys = Arrays.copyOf(askQtys, newCapacity);
+            askBookLvls = Arrays.copyOf(askBookLvls, newCapacity);
+        }
+        numBidLvls = 0;
+        numAskLvls = 0;
+        theoValUsd = 0.0d;
+        this.bookVersion = bookVersion;
+    }
+
+    public long bookVersion() {
+        return bookVersion;
+    }
+
+    public void addCxdBidLvl(double px, double qty, int bookLvl) {
+        bidPxs[numBidLvls] = px;
+        bidQtys[numBidLvls] = qty;
+        bidBookLvls[numBidLvls] = bookLvl;
+        numBidLvls++;
+    }
+
+    public void addCxdAskLvl(double px, double qty, int bookLvl) {
+        askPxs[numAskLvls] = px;
+        askQtys[numAskLvls] = qty;
+        askBookLvls[numAskLvls] = bookLvl;
+        numAskLvls++;
+    }
+
+    // Bids are found from the lowest crossed level upwards, so flip them to
+    // highest px first in place
+    public void finish(double theoValUsd) {
+        for (int i = 0, j = numBidLvls - 1; i < j; i++, j--) {
+            double px = bidPxs[i];
+            bidPxs[i] = bidPxs[j];
+            bidPxs[j] = px;
+            double qty = bidQtys[i];
+            bidQtys[i] = bidQtys[j];
+            bidQtys[j] = qty;
+            int bookLvl = bidBookLvls[i];
+            bidBookLvls[i] = bidBookLvls[j];
+            bidBookLvls[j] = bookLvl;
+        }
+        this.theoValUsd = theoValUsd;
+    }
+
+    @Override
+    public int numCxdLvls(Side side) {
+        return switch (side) {
+            case BUY -> numBidLvls;
+            case SELL -> numAskLvls;
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    @Override
+    public double cxdPx(Side side, int lvl) {
+        return switch (side) {
+            case BUY -> bidPxs[lvl];
+            case SELL -> askPxs[lvl];
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    @Override
+    public double cxdQty(Side side, int lvl) {
+        return switch (side) {
+            case BUY -> bidQtys[lvl];
+            case SELL -> askQtys[lvl];
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    public int cxdBookLvl(Side side, int lvl) {
+        return switch (side) {
+            case BUY -> bidBookLvls[lvl];
+            case SELL -> askBookLvls[lvl];
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    @Override
+    public double theoValUsd() {
+        return theoValUsd;
+    }
+
+    @Override
+    public String toString() {
+        var buf = new StringBuilder();
+        buf.append("CxdBookBuf[bookVersion=").append(bookVersion)
+            .append(", theoValUsd=").append(theoValUsd).append(", cxdBidLvls=[");
+        for (int i = 0; i < numBidLvls; i++) {
+            buf.append(bidQtys[i]).append(" @ ").append(bidPxs[i]).append(", ");
+        }
+        buf.append("], cxdAskLvls=[");
+        for (int i = 0; i < numAskLvls; i++) {
+            buf.append(askQtys[i]).append(" @ ").append(askPxs[i]).append(", ");
+        }
+        buf.append("]]");
+        return buf.toString();
+    }
+}
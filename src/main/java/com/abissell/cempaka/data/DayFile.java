@@ -0,0 +1,273 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import com.abissell.logutil.Log;
+import com.abissell.cempaka.util.DstSet;
+
+/*
+ * One memory-mapped file per UTC day of fixed-size records, named
+ * <prefix>-yyyyMMdd.bin, as kept by OrderArchive and ExecJournal. The
+ * HEADER_SIZE header holds the magic, version and record size, the count
+ * of records written and the epoch day.
+ *
+ * A record is taken with nextRecord(), which opens the day's file if it is
+ * not the current one, and counted with committed() once it is written. On
+ * a restart the count in the header is continued from. The mapping grows
+ * by doubling when full, and writing back is left to the OS other than the
+ * force() when a day's file is closed.
+ *
+ * Not thread safe. A Reader may be opened on the same file from any thread.
+ */
+final class DayFile implements AutoCloseable {
+    static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 16;
+    private static final int EPOCH_DAY_OFFSET = 24;
+    private static final int INITIAL_RECORDS = 1 << 16;
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path dir;
+    private final Format format;
+    private LocalDate day;
+    private FileChannel channel;
+    private MappedByteBuffer buf;
+    private long count;
+
+    /*
+     * What the files of one kind are called and the header which marks
+     * them, e.g. "orders" files of "order archive" records.
+     */
+    /* value */ record Format(
+            String prefix,
+            String description,
+            int magic, /* primitive */
+            int version, /* primitive */
+            int recordSize /* primitive */) {
+
+        Path fileFor(Path dir, LocalDate day) {
+            return dir.resolve(prefix + "-" + FILE_DATE.format(day) + ".bin");
+        }
+
+        void checkHeader(ByteBuffer header, Path file) {
+            if (header.capacity() < HEADER_SIZE || header.getInt(0) != magic || header.getInt(4) != version
+                    || header.getInt(8) != recordSize) {
+                throw new IllegalStateException("Not a version " + version + " " + description + ": " + file);
+            }
+        }
+    }
+
+    DayFile(Path dir, Format format) {
+        this.dir = dir;
+        this.format = format;
+    }
+
+    // Records committed to the current day's file, including any from before a restart
+    long count() {
+        return count;
+    }
+
+    // The current day's mapping, or null before the first record. Replaced when the mapping grows.
+    MappedByteBuffer buf() {
+        return buf;
+    }
+
+    /*
+     * @return the position in buf() of a cleared record in the file for
+     * day, which is counted once committed() is called
+     */
+    int nextRecord(LocalDate recordDay) {
+        if (!recordDay.equals(day)) {
+            openDay(recordDay);
+        }
+        long offset = HEADER_SIZE + count * format.recordSize;
+        if (offset + format.recordSize > buf.capacity()) {
+            remap(2L * buf.capacity());
+        }
+        int pos = (int) offset;
+        for (int i = 0; i < format.recordSize; i += 8) {
+            buf.putLong(pos + i, 0L);
+        }
+        return pos;
+    }
+
+    void committed() {
+        count++;
+        buf.putLong(COUNT_OFFSET, count);
+    }
+
+    private void openDay(LocalDate newDay) {
+        close();
+        var file = format.fileFor(dir, newDay);
+        try {
+            Files.createDirectories(dir);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long existing = channel.size();
+            if (existing >= HEADER_SIZE) {
+                var header = channel.map(FileChannel.MapMode.READ_ONLY, 0L, HEADER_SIZE);
+                format.checkHeader(header, file);
+                count = header.getLong(COUNT_OFFSET);
+                remap(Math.max(existing, HEADER_SIZE + (count + INITIAL_RECORDS) * format.recordSize));
+                Log.INFO.to(DstSet.APP_STD_OUT, "Reopened " + format.description + " " + file
+                        + " with " + count + " records");
+            } else {
+                count = 0L;
+                remap(HEADER_SIZE + (long) INITIAL_RECORDS * format.recordSize);
+                buf.putInt(0, format.magic);
+                buf.putInt(4, format.version);
+                buf.putInt(8, format.recordSize);
+                buf.putLong(COUNT_OFFSET, 0L);
+                buf.putLong(EPOCH_DAY_OFFSET, newDay.toEpochDay());
+            }
+            day = newDay;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + format.description + " " + file, e);
+        }
+    }
+
+    private void remap(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Could not grow " + format.description + " for " + day
+                    + ", full at " + count + " records");
+        }
+        try {
+            buf = channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + format.description + " for " + day, e);
+        }
+    }
+
+    // Forces the current day's file to disk and closes it
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        if (buf != null) {
+            buf.force();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not close " + format.description + " for " + day + ": " + e);
+        }
+        channel = null;
+        buf = null;
+        day = null;
+    }
+
+    /*
+     * Truncated to len, and zero padded, so a field too long for its record
+     * is kept in part rather than stopping the trading loop
+     */
+    static void putAscii(ByteBuffer buf, int pos, int len, String s) {
+        int n = Math.min(len, s.length());
+        for (int i = 0; i < len; i++) {
+            buf.put(pos + i, i < n ? (byte) s.charAt(i) : 0);
+        }
+    }
+
+    static String getAscii(ByteBuffer buf, int pos, int len) {
+        var bytes = new byte[len];
+        buf.get(pos, bytes);
+        int end = 0;
+        while (end < len && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    /*
+     * Read-only view of one day's file. The count is read from the header on
+     * each call, so records committed after opening are seen up to the size
+     * mapped at open().
+     */
+    static final class Reader implements AutoCloseable {
+        private final Path file;
+        private final Format format;
+        private final FileChannel channel;
+        private final MappedByteBuffer buf;
+
+        private Reader(Path file, Format format, FileChannel channel, MappedByteBuffer buf) {
+            this.file = file;
+            this.format = format;
+            this.channel = channel;
+            this.buf = buf;
+        }
+
+        static Reader open(Path file, Format format) throws IOException {
+            var channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                var buf = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                format.checkHeader(buf, file);
+                return new Reader(file, format, channel, buf);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        Path file() {
+            return file;
+        }
+
+        ByteBuffer buf() {
+            return buf;
+        }
+
+        LocalDate day() {
+            return LocalDate.ofEpochDay(buf.getLong(EPOCH_DAY_OFFSET));
+        }
+
+        int count() {
+            long count = buf.getLong(COUNT_OFFSET);
+            long mapped = (buf.capacity() - HEADER_SIZE) / format.recordSize;
+            return (int) Math.min(count, mapped);
+        }
+
+        // @return the position in buf() of record i
+        int pos(int i) {
+            if (i < 0 || i >= count()) {
+                throw new IndexOutOfBoundsException(i);
+            }
+            return HEADER_SIZE + i * format.recordSize;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Could not close " + format.description + " reader on "
+                        + file + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+
+import com.abissell.logutil.Log;
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.cempaka.orderid.OrdrID;
+import com.abissell.cempaka.util.DstSet;
+import com.abissell.cempaka.util.UtcNanos;
+import com.abissell.fixbridge.AvgPx;
+import com.abissell.fixbridge.CumQty;
+import com.abissell.fixbridge.ExecID;
+import com.abissell.fixbridge.ExecReportView;
+import com.abissell.fixbridge.ExecType;
+import com.abissell.fixbridge.FixField;
+import com.abissell.fixbridge.FixFieldVal;
+import com.abissell.fixbridge.LastPx;
+import com.abissell.fixbridge.LastShares;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.OrigClOrdrID;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+
+/*
+ * Binary counterpart of the Exec log: the ExecutionReports handled and the
+ * entries sent, each as a fixed RECORD_SIZE record of the values the text
+ * log is rendered from, in a DayFile per UTC day named execlog-yyyyMMdd.bin.
+ * ExecJournalDump renders a day's file as the Exec log would have read.
+ *
+ * Appends store primitives straight into the mapping, so nothing is
+ * formatted or allocated on the trading loop. As in OrderArchive, the
+ * header's count is updated once a record is written and writing back is
+ * left to the OS until close().
+ *
+ * ExecIDs longer than EXEC_ID_LEN are truncated. A record that cannot be
+ * written is logged and skipped rather than stopping the loop.
+ *
+ * Not thread safe, appended to only from the trading loop.
+ */
+public final class ExecJournal implements AutoCloseable {
+    static final int MAGIC = 0x434D454A; // "CMEJ"
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 160;
+    private static final DayFile.Format FORMAT =
+            new DayFile.Format("execlog", "exec journal", MAGIC, VERSION, RECORD_SIZE);
+
+    public static final byte EXEC_REPORT = 1;
+    public static final byte ENTRY_ORDER = 2;
+    public static final byte ENTRY = 3;
+
+    // Record layout
+    private static final int KIND = 0;
+    private static final int SIDE = 1;
+    private static final int EXEC_TYPE = 2;
+    private static final int ORD_STATUS = 3;
+    private static final int TIF = 4;
+    private static final int MODE = 5;
+    private static final int FLAGS = 6;
+    private static final int ID = 8;
+    private static final int ID2 = 16;
+    private static final int TIME = 24;
+    private static final int RECVD_TIME = 32;
+    private static final int ORDER_QTY = 40;
+    private static final int PRICE = 48;
+    private static final int LAST_QTY = 56;
+    private static final int LAST_PX = 64;
+    private static final int CUM_QTY = 72;
+    private static final int AVG_PX = 80;
+    private static final int SYMBOL = 88;
+    private static final int SYMBOL_LEN = 16;
+    private static final int BASE = 104;
+    private static final int BASE_LEN = 8;
+    private static final int EXEC_ID = 112;
+    private static final int EXEC_ID_LEN = 48;
+
+    // ENTRY records keep the theo pnl in the ExecutionReport's doubles
+    private static final int NET_PNL = ORDER_QTY;
+    private static final int GROSS_PNL = PRICE;
+    private static final int FEES = LAST_QTY;
+    private static final int CUM_NET_PNL = LAST_PX;
+    private static final int CUM_GROSS_PNL = CUM_QTY;
+    private static final int CUM_FEES = AVG_PX;
+
+    // Which optional ExecutionReport fields were present
+    private static final byte HAS_ORD_STATUS = 1;
+    private static final byte HAS_TIF = 1 << 1;
+    private static final byte HAS_TRANSACT_TIME = 1 << 2;
+    private static final byte HAS_CUM_QTY = 1 << 3;
+    private static final byte HAS_AVG_PX = 1 << 4;
+    private static final byte HAS_ORIG_ID = 1 << 5;
+    private static final byte HAS_EXEC_ID = 1 << 6;
+
+    private final DayFile file;
+    // The current day's mapping, as of the last nextRecord()
+    private MappedByteBuffer buf;
+
+    public ExecJournal(Path dir) {
+        this.file = new DayFile(dir, FORMAT);
+    }
+
+    public static Path fileFor(Path dir, LocalDate day) {
+        return FORMAT.fileFor(dir, day);
+    }
+
+    public long count() {
+        return file.count();
+    }
+
+    public void appendExecReport(ExecReportView execReport) {
+        int pos = nextRecord(execReport.recvdTime());
+        if (pos < 0) {
+            return;
+        }
+        byte flags = 0;
+        buf.put(pos + KIND, EXEC_REPORT);
+        buf.put(pos + SIDE, (byte) execReport.side().fixChar);
+        buf.put(pos + EXEC_TYPE, (byte) execReport.execType().fixChar);
+        if (execReport.has(FixField.ORD_STATUS)) {
+            buf.put(pos + ORD_STATUS, (byte) execReport.ordStatus().fixChar);
+            flags |= HAS_ORD_STATUS;
+        }
+        if (execReport.has(FixField.TIME_IN_FORCE)) {
+            buf.put(pos + TIF, (byte) execReport.timeInForce().fixChar);
+            flags |= HAS_TIF;
+        }
+        buf.putLong(pos + ID, ((ClOrdrID) execReport.clOrdID()).packed());
+        if (execReport.has(FixField.ORIG_CL_ORD_ID)) {
+            buf.putLong(pos + ID2, ((OrigClOrdrID) execReport.origClOrdID()).id().packed());
+            flags |= HAS_ORIG_ID;
+        }
+        if (execReport.has(FixField.TRANSACT_TIME)) {
+            buf.putLong(pos + TIME, execReport.transactTime());
+            flags |= HAS_TRANSACT_TIME;
+        }
+        buf.putLong(pos + RECVD_TIME, UtcNanos.from(execReport.recvdTime()));
+        buf.putDouble(pos + ORDER_QTY, execReport.orderQty());
+        buf.putDouble(pos + PRICE, execReport.price());
+        buf.putDouble(pos + LAST_QTY, execReport.lastShares());
+        buf.putDouble(pos + LAST_PX, execReport.lastPx());
+        if (execReport.has(FixField.CUM_QTY)) {
+            buf.putDouble(pos + CUM_QTY, execReport.cumQty());
+            flags |= HAS_CUM_QTY;
+        }
+        if (execReport.has(FixField.AVG_PX)) {
+            buf.putDouble(pos + AVG_PX, execReport.avgPx());
+            flags |= HAS_AVG_PX;
+        }
+        DayFile.putAscii(buf, pos + SYMBOL, SYMBOL_LEN, execReport.symbol().symbol());
+        if (execReport.has(FixField.EXEC_ID)) {
+            DayFile.putAscii(buf, pos + EXEC_ID, EXEC_ID_LEN, execReport.execID());
+            flags |= HAS_EXEC_ID;
+        }
+        buf.put(pos + FLAGS, flags);
+        file.committed();
+    }
+
+    public void appendEntryOrder(Order order, TradingMode tradingMode) {
+        var sentTime = order.sentTime().time();
+        int pos = nextRecord(sentTime);
+        if (pos < 0) {
+            return;
+        }
+        buf.put(pos + KIND, ENTRY_ORDER);
+        buf.put(pos + SIDE, (byte) order.side().fixChar);
+        buf.put(pos + TIF, (byte) order.timeInForce().fixChar);
+        buf.put(pos + MODE, (byte) tradingMode.ordinal());
+        buf.putLong(pos + ID, ((ClOrdrID) order.id()).packed());
+        buf.putLong(pos + TIME, UtcNanos.from(sentTime));
+        buf.putLong(pos + RECVD_TIME, UtcNanos.from(sentTime));
+        buf.putDouble(pos + ORDER_QTY, order.qty().qty());
+        buf.putDouble(pos + PRICE, order.px().px());
+        DayFile.putAscii(buf, pos + SYMBOL, SYMBOL_LEN, order.tradeable().symbol());
+        DayFile.putAscii(buf, pos + BASE, BASE_LEN, order.base().fieldVal());
+        file.committed();
+    }
+
+    // The theo pnl of an entry's crossed orders, and the running total after it
+    public void appendEntry(CxOrders orders, double netPnl, double grossPnl, double fees,
+            double cumNetPnl, double cumGrossPnl, double cumFees) {
+        var sentTime = orders.buy().sentTime().time();
+        int pos = nextRecord(sentTime);
+        if (pos < 0) {
+            return;
+        }
+        buf.put(pos + KIND, ENTRY);
+        buf.putLong(pos + ID, ((ClOrdrID) orders.buy().id()).packed());
+        buf.putLong(pos + ID2, ((ClOrdrID) orders.sell().id()).packed());
+        buf.putLong(pos + TIME, UtcNanos.from(sentTime));
+        buf.putLong(pos + RECVD_TIME, UtcNanos.from(sentTime));
+        buf.putDouble(pos + NET_PNL, netPnl);
+        buf.putDouble(pos + GROSS_PNL, grossPnl);
+        buf.putDouble(pos + FEES, fees);
+        buf.putDouble(pos + CUM_NET_PNL, cumNetPnl);
+        buf.putDouble(pos + CUM_GROSS_PNL, cumGrossPnl);
+        buf.putDouble(pos + CUM_FEES, cumFees);
+        DayFile.putAscii(buf, pos + SYMBOL, SYMBOL_LEN, orders.buy().tradeable().symbol());
+        file.committed();
+    }
+
+    // @return the position of a cleared record for the day of time, or -1 if there is none
+    private int nextRecord(LocalDateTime time) {
+        try {
+            int pos = file.nextRecord(time.toLocalDate());
+            buf = file.buf();
+            return pos;
+        } catch (UncheckedIOException | IllegalStateException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not append to exec journal: " + e);
+            return -1;
+        }
+    }
+
+    // Forces the current day's file to disk and closes it
+    @Override
+    public void close() {
+        file.close();
+        buf = null;
+    }
+
+    public /* value */ record EntryPnl(
+            ClOrdrID buyId,
+            ClOrdrID sellId,
+            String symbol,
+            LocalDateTime sentTime,
+            double netPnl, /* primitive */
+            double grossPnl, /* primitive */
+            double fees, /* primitive */
+            double cumNetPnl, /* primitive */
+            double cumGrossPnl, /* primitive */
+            double cumFees /* primitive */) {
+    }
+
+    /*
+     * Read-only view of one day's file, for ExecJournalDump. The count is
+     * read from the header on each call, so records appended after opening
+     * are seen up to the size mapped at open().
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DayFile.Reader reader;
+        private final ByteBuffer buf;
+
+        private Reader(DayFile.Reader reader) {
+            this.reader = reader;
+            this.buf = reader.buf();
+        }
+
+        public static Reader open(Path dir, LocalDate day) throws IOException {
+            return open(fileFor(dir, day));
+        }
+
+        public static Reader open(Path file) throws IOException {
+            return new Reader(DayFile.Reader.open(file, FORMAT));
+        }
+
+        public LocalDate day() {
+            return reader.day();
+        }
+
+        public int count() {
+            return reader.count();
+        }
+
+        // One of EXEC_REPORT, ENTRY_ORDER or ENTRY
+        public byte kind(int i) {
+            return buf.get(reader.pos(i) + KIND);
+        }
+
+        // Loads an EXEC_REPORT record into the view, as if it had just been received
+        public ExecReportView execReport(int i, ExecReportView into) {
+            int pos = checkKind(i, EXEC_REPORT);
+            byte flags = buf.get(pos + FLAGS);
+            var fields = new EnumMap<FixField, FixFieldVal>(FixField.class);
+            fields.put(FixField.CL_ORD_ID, new ClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID))));
+            fields.put(FixField.SYMBOL, CcyPair.from(DayFile.getAscii(buf, pos + SYMBOL, SYMBOL_LEN)));
+            fields.put(FixField.SIDE, Side.fromFixChar((char) buf.get(pos + SIDE)));
+            fields.put(FixField.EXEC_TYPE, ExecType.fromFixChar((char) buf.get(pos + EXEC_TYPE)));
+            fields.put(FixField.ORDER_QTY, new OrderQty(buf.getDouble(pos + ORDER_QTY)));
+            fields.put(FixField.PRICE, new Price(buf.getDouble(pos + PRICE)));
+            fields.put(FixField.LAST_SHARES, new LastShares(buf.getDouble(pos + LAST_QTY)));
+            fields.put(FixField.LAST_PX, new LastPx(buf.getDouble(pos + LAST_PX)));
+            if ((flags & HAS_ORD_STATUS) != 0) {
+                fields.put(FixField.ORD_STATUS, OrdStatus.fromFixChar((char) buf.get(pos + ORD_STATUS)));
+            }
+            if ((flags & HAS_TIF) != 0) {
+                fields.put(FixField.TIME_IN_FORCE, TimeInForce.fromFixChar((char) buf.get(pos + TIF)));
+            }
+            if ((flags & HAS_ORIG_ID) != 0) {
+                fields.put(FixField.ORIG_CL_ORD_ID, new OrigClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID2))));
+            }
+            if ((flags & HAS_TRANSACT_TIME) != 0) {
+                fields.put(FixField.TRANSACT_TIME,
+                        new TransactTime(UtcNanos.toLocalDateTime(buf.getLong(pos + TIME))));
+            }
+            if ((flags & HAS_CUM_QTY) != 0) {
+                fields.put(FixField.CUM_QTY, new CumQty(buf.getDouble(pos + CUM_QTY)));
+            }
+            if ((flags & HAS_AVG_PX) != 0) {
+                fields.put(FixField.AVG_PX, new AvgPx(buf.getDouble(pos + AVG_PX)));
+            }
+            if ((flags & HAS_EXEC_ID) != 0) {
+                fields.put(FixField.EXEC_ID, new ExecID(DayFile.getAscii(buf, pos + EXEC_ID, EXEC_ID_LEN)));
+            }
+            return into.load(fields, UtcNanos.toLocalDateTime(buf.getLong(pos + RECVD_TIME)));
+        }
+
+        public Order entryOrder(int i) {
+            int pos = checkKind(i, ENTRY_ORDER);
+            return new Order(new ClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID))),
+                    CcyPair.from(DayFile.getAscii(buf, pos + SYMBOL, SYMBOL_LEN)),
+                    Ccy.fromFixStr(DayFile.getAscii(buf, pos + BASE, BASE_LEN)),
+                    Side.fromFixChar((char) buf.get(pos + SIDE)),
+                    new OrderQty(buf.getDouble(pos + ORDER_QTY)),
+                    new Price(buf.getDouble(pos + PRICE)),
+                    TimeInForce.fromFixChar((char) buf.get(pos + TIF)),
+                    new TransactTime(UtcNanos.toLocalDateTime(buf.getLong(pos + TIME))));
+        }
+
+        public TradingMode entryOrderMode(int i) {
+            return TradingMode.values()[buf.get(checkKind(i, ENTRY_ORDER) + MODE)];
+        }
+
+        public EntryPnl entry(int i) {
+            int pos = checkKind(i, ENTRY);
+            return new EntryPnl(
+                    new ClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID))),
+                    new ClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID2))),
+                    DayFile.getAscii(buf, pos + SYMBOL, SYMBOL_LEN),
+                    UtcNanos.toLocalDateTime(buf.getLong(pos + TIME)),
+                    buf.getDouble(pos + NET_PNL),
+                    buf.getDouble(pos + GROSS_PNL),
+                    buf.getDouble(pos + FEES),
+                    buf.getDouble(pos + CUM_NET_PNL),
+                    buf.getDouble(pos + CUM_GROSS_PNL),
+                    buf.getDouble(pos + CUM_FEES));
+        }
+
+        private int checkKind(int i, byte kind) {
+            int pos = reader.pos(i);
+            if (buf.get(pos + KIND) != kind) {
+                throw new IllegalArgumentException("Record " + i + " of " + reader.file() + " is of kind "
+                        + buf.get(pos + KIND) + ", not " + kind);
+            }
+            return pos;
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+}
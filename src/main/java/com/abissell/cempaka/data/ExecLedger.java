@@ -17,27 +17,26 @@
  */
 package com.abissell.cempaka.data;
 
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import com.abissell.javautil.rusty.Opt;
 import com.abissell.logutil.EventLog;
 import com.abissell.logutil.Log;
 import com.abissell.cempaka.util.DstSet;
-import com.abissell.fixbridge.AvgPx;
 import com.abissell.cempaka.orderid.ClOrdrID;
-import com.abissell.fixbridge.CumQty;
+import com.abissell.fixbridge.ExecReportView;
 import com.abissell.fixbridge.ExecType;
 import com.abissell.fixbridge.FixField;
-import com.abissell.fixbridge.LastPx;
-import com.abissell.fixbridge.LastShares;
-import com.abissell.fixbridge.MsgType;
+import com.abissell.fixbridge.MultiLegReportingType;
 import com.abissell.fixbridge.OrdStatus;
 import com.abissell.fixbridge.Order;
 import com.abissell.fixbridge.OrdrCxlReq;
 import com.abissell.fixbridge.OrigClOrdrID;
-import com.abissell.fixbridge.ParsedFixMsg;
 import com.abissell.fixbridge.Side;
 import com.abissell.fixbridge.Tradeable;
 
@@ -45,49 +44,60 @@ public final class ExecLedger {
     public final Tradeable tradeable;
     public final Constraints constraints;
     private final Fees fees;
-    private final Map<ClOrdrID, OrdWithStatus> ordersById = new HashMap<>(4096);
-    private final Set<ClOrdrID> fillableOrders = new HashSet<>(16);
-    private final Set<ClOrdrID> rejectedOrders = new HashSet<>(16);
+    private static final int ORDER_TABLE_CAPACITY = 4096;
+    private final OrderTable orders = new OrderTable(ORDER_TABLE_CAPACITY);
+    private int rejectedCount;
+    // Legs of open NewOrderMultilegs, by the multileg's ClOrdID
+    private final Map<ClOrdrID, CxOrders> multilegOrders = new HashMap<>(16);
+    // Where orders are recorded once filled, canceled or rejected
+    private final Opt<OrderArchive> archive;
     // volatile since may be read from other threads
     private volatile Pnl pnl = Pnl.NO_TRADES;
     private volatile Pnl cumReplayPnl = Pnl.NO_TRADES;
 
-    public ExecLedger(Tradeable tradeable, Constraints constraints, Fees fees) {
+    public ExecLedger(Tradeable tradeable, Constraints constraints, Fees fees, Opt<OrderArchive> archive) {
         this.tradeable = tradeable;
         this.constraints = constraints;
         this.fees = fees;
+        this.archive = archive;
     }
 
     public Pnl pnl() {
         return pnl;
     }
 
-    public Set<ClOrdrID> fillableOrders() {
-        return fillableOrders;
+    // Orders not yet filled, canceled or rejected
+    public int fillableCount() {
+        return orders.openCount();
     }
 
-    public Set<ClOrdrID> rejectedOrders() {
-        return rejectedOrders;
+    public boolean isFillable(ClOrdrID id) {
+        int slot = orders.find(id);
+        return slot != OrderTable.NO_SLOT && orders.isOpen(slot);
+    }
+
+    // Orders ever rejected
+    public int rejectedCount() {
+        return rejectedCount;
     }
 
     public void startNewReplay() {
         cumReplayPnl = Pnl.NO_TRADES;
     }
 
-    public void handleReplay(ParsedFixMsg execReport) {
-        final var execType = (ExecType) execReport.get(FixField.EXEC_TYPE);
-        final var side = (Side) execReport.get(FixField.SIDE);
+    public void handleReplay(ExecReportView execReport) {
+        final var execType = execReport.execType();
+        final var side = execReport.side();
         switch (execType) {
             case PARTIAL_FILL, FILL -> {
-                var qtyChg = (LastShares) execReport.get(FixField.LAST_SHARES);
-                var lastPx = (LastPx) execReport.get(FixField.LAST_PX);
-                var valChg = qtyChg.qty() * lastPx.px();
-                var feesChg = fees.feesChg(qtyChg.qty(), valChg);
+                var qtyChg = execReport.lastShares();
+                var valChg = qtyChg * execReport.lastPx();
+                var feesChg = fees.feesChg(qtyChg, valChg);
                 var prevPnl = cumReplayPnl;
-                cumReplayPnl = prevPnl.withChange(side, feesChg, qtyChg.qty(),
+                cumReplayPnl = prevPnl.withChange(side, feesChg, qtyChg,
                         valChg, constraints);
                 Log.INFO.to(DstSet.EXEC, "-------------------- REPLAYED FILL --------------------");
-                Log.INFO.to(DstSet.EXEC, execReport.msg());
+                Log.INFO.to(DstSet.EXEC, execReport);
                 Log.INFO.to(DstSet.EXEC, "\nREPLAY " + tradeable + ": " + cumReplayPnl);
                 Log.INFO.to(DstSet.EXEC, "-------------------------------------------------------\n");
             }
@@ -95,119 +105,288 @@ public final class ExecLedger {
         }
     }
 
-    public ExecType handleExecReport(ParsedFixMsg execReport, EventLog<DstSet> buf) {
-        final var execType = (ExecType) execReport.get(FixField.EXEC_TYPE);
+    /*
+     * Applies an ExecutionReport received before a restart, read back from
+     * the inbound journal. Reports on orders this ledger holds, restored from
+     * a StateSnapshot, are handled as they were live. For any other order,
+     * as outbound orders are not journaled, only a fill's change to the pnl
+     * is restored. Possible duplicates resend reports already seen.
+     */
+    public void restore(ExecReportView execReport, EventLog<DstSet> buf) {
+        if (execReport.isPossDup()) {
+            return;
+        }
+        if (holdsOrderFor(execReport)) {
+            handleExecReport(execReport, buf);
+            return;
+        }
+        if (execReport.has(FixField.MULTI_LEG_REPORTING_TYPE)
+                && execReport.multiLegReportingType() == MultiLegReportingType.MULTI_LEG_SECURITY) {
+            return;
+        }
+        switch (execReport.execType()) {
+            case PARTIAL_FILL, FILL -> {
+                var qtyChg = execReport.lastShares();
+                var valChg = qtyChg * execReport.lastPx();
+                var feesChg = fees.feesChg(qtyChg, valChg);
+                pnl = pnl.withChange(execReport.side(), feesChg, qtyChg, valChg, constraints);
+            }
+            default -> { }
+        }
+    }
+
+    private boolean holdsOrderFor(ExecReportView execReport) {
+        var clOrdrID = (ClOrdrID) execReport.clOrdID();
+        if (execReport.execType() == ExecType.CANCELED && execReport.has(FixField.ORIG_CL_ORD_ID)) {
+            clOrdrID = ClOrdrID.from((OrigClOrdrID) execReport.origClOrdID());
+        }
+        return orders.find(clOrdrID) != OrderTable.NO_SLOT || multilegOrders.containsKey(clOrdrID);
+    }
+
+    /*
+     * Ledger state kept in a StateSnapshot. Terminal orders are left out,
+     * since they are in the OrderArchive, and late reports on them are
+     * rare enough to be restored as fills only.
+     */
+    public /* value */ record State(
+            Pnl pnl,
+            int rejectedCount, /* primitive */
+            List<OpenOrder> openOrders,
+            // Legs of open NewOrderMultilegs, by the multileg's ClOrdID
+            Map<ClOrdrID, CxOrders> multilegOrders) {
+    }
+
+    public /* value */ record OpenOrder(
+            Order order,
+            OrdStatus status,
+            boolean filled, /* primitive */
+            double cumQty, /* primitive */
+            double avgPx /* primitive */) {
+    }
+
+    // Only called from the trading loop, between messages
+    public State state() {
+        var openOrders = new ArrayList<OpenOrder>(orders.openCount());
+        for (int slot = 0; slot < orders.capacity(); slot++) {
+            if (orders.isUsed(slot) && orders.isOpen(slot)) {
+                openOrders.add(new OpenOrder(orders.order(slot), orders.status(slot),
+                            orders.hasFill(slot), orders.cumQty(slot), orders.avgPx(slot)));
+            }
+        }
+        return new State(pnl, rejectedCount, openOrders, Map.copyOf(multilegOrders));
+    }
+
+    // Only called before the trading loop starts
+    public void restore(State state) {
+        pnl = state.pnl();
+        rejectedCount = state.rejectedCount();
+        for (var open : state.openOrders()) {
+            int slot = orders.add((ClOrdrID) open.order().id(), open.order());
+            if (open.filled()) {
+                orders.setFill(slot, open.status(), open.cumQty(), open.avgPx());
+            } else {
+                orders.setStatus(slot, open.status());
+            }
+        }
+        multilegOrders.putAll(state.multilegOrders());
+    }
+
+    public ExecType handleExecReport(ExecReportView execReport, EventLog<DstSet> buf) {
+        final var execType = execReport.execType();
 
         if (execReport.isPossDup()) {
             handleReplay(execReport);
             return execType;
         }
 
-        var fields = execReport.msg();
-
-        var msgType = (MsgType) fields.get(FixField.MSG_TYPE);
-        if (msgType != MsgType.EXECUTION_REPORT) {
-            throw new IllegalArgumentException("Do not know how to handle message of type " + msgType + ", msg: " + execReport);
+        var symbol = execReport.symbol();
+        if (!tradeable.equals(symbol)) {
+            throw new IllegalArgumentException("Passed execReport=" + execReport + " to incorrect OrderExecLedger for tradable=" + tradeable);
         }
 
-        var symbol = (Tradeable) execReport.get(FixField.SYMBOL);
-        if (!symbol.equals(tradeable)) {
-            throw new IllegalArgumentException("Passed execReport=" + execReport + " to incorrect OrderExecLedger for tradable=" + tradeable);
+        ClOrdrID clOrdrID = (ClOrdrID) execReport.clOrdID();
+        if (execType == ExecType.CANCELED && execReport.has(FixField.ORIG_CL_ORD_ID)) {
+            clOrdrID = ClOrdrID.from((OrigClOrdrID) execReport.origClOrdID());
         }
 
-        ClOrdrID clOrdrID = (ClOrdrID) execReport.get(FixField.CL_ORD_ID);
-        if (execType == ExecType.CANCELED) {
-            var origClOrdrID = (OrigClOrdrID) execReport.get(FixField.ORIG_CL_ORD_ID);
-            if (origClOrdrID != null) {
-                clOrdrID = ClOrdrID.from(origClOrdrID);
+        if (execReport.has(FixField.MULTI_LEG_REPORTING_TYPE)) {
+            var legs = multilegOrders.get(clOrdrID);
+            if (legs != null) {
+                var multilegID = clOrdrID;
+                switch (execReport.multiLegReportingType()) {
+                    case INDIVIDUAL_LEG_OF_MULTI_LEG_SECURITY -> apply(legID(legs, execReport), execType, execReport, buf);
+                    case MULTI_LEG_SECURITY -> {
+                        switch (execType) {
+                            case NEW, CANCELED, REJECTED -> {
+                                apply((ClOrdrID) legs.buy().id(), execType, execReport, buf);
+                                apply((ClOrdrID) legs.sell().id(), execType, execReport, buf);
+                            }
+                            default -> throw new IllegalStateException("Expected fills on the legs of multileg clOrdrID=" + multilegID + ", saw execReport " + execReport);
+                        }
+                    }
+                    default -> throw new IllegalStateException("Cannot handle execReport " + execReport + " on multileg clOrdrID=" + multilegID);
+                }
+                if (!isFillable((ClOrdrID) legs.buy().id()) && !isFillable((ClOrdrID) legs.sell().id())) {
+                    multilegOrders.remove(multilegID);
+                }
+                return execType;
             }
         }
-        var ordWithStatus = ordersById.get(clOrdrID);
-        if (ordWithStatus == null) {
-            throw new IllegalStateException("Couldn't find ordWithStatus for clOrdrID=" + clOrdrID);
+
+        apply(clOrdrID, execType, execReport, buf);
+        return execType;
+    }
+
+    // Leg reports carry the multileg's ClOrdID, and the Side of the leg filled
+    private static ClOrdrID legID(CxOrders legs, ExecReportView execReport) {
+        return switch (execReport.side()) {
+            case BUY -> (ClOrdrID) legs.buy().id();
+            case SELL -> (ClOrdrID) legs.sell().id();
+            default -> throw new IllegalStateException("Cannot match leg of execReport " + execReport + " to legs " + legs);
+        };
+    }
+
+    private void apply(ClOrdrID clOrdrID, ExecType execType, ExecReportView execReport, EventLog<DstSet> buf) {
+        int slot = orders.find(clOrdrID);
+        if (slot == OrderTable.NO_SLOT) {
+            applyLate(clOrdrID, execType, execReport, buf);
+            return;
         }
 
+        boolean wasOpen = orders.isOpen(slot);
         switch (execType) {
             case NEW -> {
                 // move the order out of PENDING_NEW to NEW
-                if (ordWithStatus.status() != OrdStatus.PENDING_NEW) {
-                    Log.WARN.to(DstSet.APP_STD_OUT, "For clOrdrID=" + clOrdrID + " saw unexpected change to " + ordWithStatus + " from execReport " + execReport);
+                if (orders.status(slot) != OrdStatus.PENDING_NEW) {
+                    Log.WARN.to(DstSet.APP_STD_OUT, "For clOrdrID=" + clOrdrID + " saw unexpected change from " + orders.status(slot) + " on " + orders.order(slot) + " from execReport " + execReport);
                 }
-                ordersById.put(clOrdrID, ordWithStatus.withNewStatus(OrdStatus.NEW));
+                orders.setStatus(slot, OrdStatus.NEW);
             }
             case PARTIAL_FILL, FILL -> {
-                CumQty newCumQty = (CumQty) execReport.get(FixField.CUM_QTY);
-                AvgPx newAvgPx = (AvgPx) execReport.get(FixField.AVG_PX);
-                var qtyChg = (LastShares) execReport.get(FixField.LAST_SHARES);
-                var lastPx = (LastPx) execReport.get(FixField.LAST_PX);
-                var valChg = qtyChg.qty() * lastPx.px();
+                var qtyChg = execReport.lastShares();
+                var valChg = qtyChg * execReport.lastPx();
                 var oldPnl = pnl;
-                var feesChg = fees.feesChg(qtyChg.qty(), valChg);
-                pnl = oldPnl.withChange(ordWithStatus.order().side(), feesChg,
-                        qtyChg.qty(), valChg, constraints);
-                OrdStatus newStatus;
-                switch (execType) {
-                    case PARTIAL_FILL -> newStatus = OrdStatus.PARTIALLY_FILLED;
-                    case FILL -> {
-                        newStatus = OrdStatus.FILLED;
-                        fillableOrders.remove(clOrdrID);
-                    }
-                    default -> throw new IllegalArgumentException("" + execType);
-                }
-                ordersById.put(clOrdrID, ordWithStatus.withNewStatusAndFill(newStatus, new Fill(newCumQty, newAvgPx)));
+                var feesChg = fees.feesChg(qtyChg, valChg);
+                pnl = oldPnl.withChange(orders.order(slot).side(), feesChg,
+                        qtyChg, valChg, constraints);
+                var newStatus = execType == ExecType.FILL ? OrdStatus.FILLED : OrdStatus.PARTIALLY_FILLED;
+                orders.setFill(slot, newStatus, execReport.cumQty(), execReport.avgPx());
                 buf.to(DstSet.APP_STD_OUT_EXEC, Log.WARN).add("\n").add(tradeable).add(" ").add(pnl);
             }
-            case CANCELED -> {
-                ordersById.put(clOrdrID, ordWithStatus.withNewStatus(OrdStatus.CANCELED));
-                fillableOrders.remove(clOrdrID);
-            }
+            case CANCELED -> orders.setStatus(slot, OrdStatus.CANCELED);
             case REJECTED -> {
-                ordersById.put(clOrdrID, ordWithStatus.withNewStatus(OrdStatus.REJECTED));
-                fillableOrders.remove(clOrdrID);
-                rejectedOrders.add(clOrdrID);
+                if (orders.status(slot) != OrdStatus.REJECTED) {
+                    rejectedCount++;
+                }
+                orders.setStatus(slot, OrdStatus.REJECTED);
             }
             default -> throw new IllegalStateException("Cannot handle execReport " + execReport);
         }
+        if (wasOpen && !orders.isOpen(slot)) {
+            archive(slot, execReport.recvdTime());
+        }
+    }
 
-        return execType;
+    /*
+     * Handles a report on an order no longer in the table, since its slot was
+     * reused once it was terminal. Its fills still change the pnl. The
+     * report is logged, with the order as archived if the archive has it,
+     * rather than thrown on, so a late cancel or restatement cannot halt the
+     * trading loop.
+     */
+    private void applyLate(ClOrdrID clOrdrID, ExecType execType, ExecReportView execReport, EventLog<DstSet> buf) {
+        Opt<OrderArchive.ArchivedOrder> archived = archive.isNone() ? Opt.none() : archive.get().find(clOrdrID);
+        switch (execType) {
+            case PARTIAL_FILL, FILL -> {
+                var qtyChg = execReport.lastShares();
+                var valChg = qtyChg * execReport.lastPx();
+                var feesChg = fees.feesChg(qtyChg, valChg);
+                var side = archived.isNone() ? execReport.side() : archived.get().side();
+                pnl = pnl.withChange(side, feesChg, qtyChg, valChg, constraints);
+                buf.to(DstSet.APP_STD_OUT_EXEC, Log.WARN).add("\n").add(tradeable).add(" ").add(pnl);
+            }
+            case REJECTED -> rejectedCount++;
+            default -> { }
+        }
+        if (archived.isNone()) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Late execReport for clOrdrID=" + clOrdrID + " not held or archived: " + execReport);
+        } else {
+            Log.WARN.to(DstSet.APP_STD_OUT, "Late execReport for archived order " + archived.get() + ": " + execReport);
+        }
     }
 
-    public Set<ClOrdrID> addPendingNewOrder(Order order) {
+    /*
+     * Records the order with its final fill, if any. An order stays in the
+     * table until its slot is reused, for any late reports on it. One which
+     * a later report reopens is archived again when it next terminates, and
+     * OrderArchive.find returns the latest record.
+     */
+    private void archive(int slot, LocalDateTime terminalTime) {
+        if (archive.isNone()) {
+            return;
+        }
+        try {
+            archive.get().append(orders.order(slot), orders.status(slot), orders.hasFill(slot),
+                    orders.cumQty(slot), orders.avgPx(slot), terminalTime);
+        } catch (UncheckedIOException | IllegalStateException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not archive order " + orders.order(slot) + ": " + e);
+        }
+    }
+
+    public void addPendingNewOrder(Order order) {
         var orderTradeable = order.tradeable();
         if (!orderTradeable.equals(tradeable)) {
             throw new IllegalArgumentException("For ExecLedger for tradeable=" + tradeable + " passed in order " + order);
         }
-        var clOrdrID = (ClOrdrID) order.id();
-        ordersById.put(clOrdrID, OrdWithStatus.forPendingNewOrder(order));
-        fillableOrders.add(clOrdrID);
-        return fillableOrders;
+        orders.add((ClOrdrID) order.id(), order);
+    }
+
+    /*
+     * Adds both legs of a NewOrderMultileg as pending, under the first's
+     * ClOrdID, which the multileg was sent with.
+     */
+    public void addPendingMultilegOrder(Order first, Order second) {
+        var legs = switch (first.side()) {
+            case BUY -> new CxOrders(first, second);
+            case SELL -> new CxOrders(second, first);
+            default -> throw new IllegalArgumentException("Cannot add multileg order with legs " + first + ", " + second);
+        };
+        if (legs.buy().side() != Side.BUY || legs.sell().side() != Side.SELL) {
+            throw new IllegalArgumentException("Multileg order legs must be a buy and a sell: " + first + ", " + second);
+        }
+        addPendingNewOrder(first);
+        addPendingNewOrder(second);
+        multilegOrders.put((ClOrdrID) first.id(), legs);
     }
 
-    public Set<ClOrdrID> handleOrdrCxlReq(OrdrCxlReq cxlReq) {
+    public void handleOrdrCxlReq(OrdrCxlReq cxlReq) {
         var origOrder = cxlReq.order();
         var orderTradeable = origOrder.tradeable();
         if (!orderTradeable.equals(tradeable)) {
             throw new IllegalArgumentException("For ExecLedger for tradeable=" + tradeable + " passed in cxl request on order " + origOrder);
         }
         var origClOrdrID = (ClOrdrID) cxlReq.order().id();
-        var ordWithStatus = ordersById.get(origClOrdrID);
-        ordersById.put(origClOrdrID, ordWithStatus.withNewStatus(OrdStatus.PENDING_CANCEL));
-        return fillableOrders;
+        int slot = orders.find(origClOrdrID);
+        if (slot == OrderTable.NO_SLOT) {
+            throw new IllegalStateException("Couldn't find order for clOrdrID=" + origClOrdrID);
+        }
+        orders.setStatus(slot, OrdStatus.PENDING_CANCEL);
     }
 
-    public Set<ClOrdrID> forceCxlOrder(ClOrdrID id, Order order) {
+    public void forceCxlOrder(ClOrdrID id, Order order, LocalDateTime now) {
         var orderTradeable = order.tradeable();
         if (!orderTradeable.equals(tradeable)) {
             throw new IllegalArgumentException("For ExecLedger for tradeable=" + tradeable + " passed in order " + order);
         }
 
-        var ordWithStatus = ordersById.get(id);
-        if (ordWithStatus == null) {
-            throw new IllegalStateException("Couldn't find ordWithStatus for clOrdrID=" + id);
+        int slot = orders.find(id);
+        if (slot == OrderTable.NO_SLOT) {
+            throw new IllegalStateException("Couldn't find order for clOrdrID=" + id);
+        }
+        boolean wasOpen = orders.isOpen(slot);
+        orders.setStatus(slot, OrdStatus.CANCELED);
+        if (wasOpen) {
+            archive(slot, now);
         }
-
-        ordersById.put(id, ordWithStatus.withNewStatus(OrdStatus.CANCELED));
-        fillableOrders.remove(id);
-        return fillableOrders;
     }
 }
@@ -17,6 +17,7 @@
  */
 package com.abissell.cempaka.data;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,36 +25,45 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import com.abissell.javautil.rusty.Opt;
 import com.abissell.logutil.EventLog;
 import com.abissell.logutil.Log;
 import com.abissell.cempaka.util.DstSet;
+import com.abissell.fixbridge.ExecReportView;
 import com.abissell.fixbridge.ExecType;
-import com.abissell.fixbridge.ParsedFixMsg;
 import com.abissell.fixbridge.Tradeable;
 
 public final class ExecLedgers<T extends Tradeable> {
     private final Map<T, ExecLedger> ledgers;
-    private final Function<ParsedFixMsg, T> tradeableExtractor;
+    private final Function<ExecReportView, T> tradeableExtractor;
+    // The last ExecutionReport applied, null if none
+    private LocalDateTime lastAppliedRecvdTime;
+    private int lastAppliedMsgSeqNum;
 
     public ExecLedgers(
             Map<T, ExecLedger> ledgersMap,
-            Function<ParsedFixMsg, T> tradeableExtractor,
+            Function<ExecReportView, T> tradeableExtractor,
             Collection<T> tradeables,
             Function<T, Constraints> constraints,
-            Fees fees) {
+            Fees fees,
+            Opt<OrderArchive> archive) {
         this.ledgers = ledgersMap;
         this.tradeableExtractor = tradeableExtractor;
-        tradeables.forEach(t -> ledgers.put(t, new ExecLedger(t, constraints.apply(t), fees)));
+        tradeables.forEach(t -> ledgers.put(t, new ExecLedger(t, constraints.apply(t), fees, archive)));
     }
 
     public ExecLedger get(T tradeable) {
         return ledgers.get(tradeable);
     }
 
-    public ExecLedger handleExecReport(ParsedFixMsg parsedMsg, EventLog<DstSet> buf) {
-        var tradeable = tradeableExtractor.apply(parsedMsg);
+    public ExecLedger handleExecReport(ExecReportView execReport, EventLog<DstSet> buf) {
+        var tradeable = tradeableExtractor.apply(execReport);
         var ledger = ledgers.get(tradeable);
-        var execType = ledger.handleExecReport(parsedMsg, buf);
+        if (ledger == null) {
+            throw new IllegalArgumentException("No ExecLedger for tradeable=" + tradeable + ", execReport=" + execReport);
+        }
+        var execType = ledger.handleExecReport(execReport, buf);
+        markApplied(execReport);
         if (execType == ExecType.PARTIAL_FILL || execType == ExecType.FILL) {
             ledgers.values().forEach(l -> {
                 if (!isNetFlat(l) && !l.tradeable.equals(tradeable)) {
@@ -65,6 +75,64 @@ public final class ExecLedgers<T extends Tradeable> {
         return ledger;
     }
 
+    /*
+     * Applies an ExecutionReport read back from the inbound journal, unless
+     * it was already applied before the StateSnapshot the ledgers were
+     * restored from.
+     */
+    public void restore(ExecReportView execReport, EventLog<DstSet> buf) {
+        if (!isAfterLastApplied(execReport)) {
+            return;
+        }
+        var tradeable = tradeableExtractor.apply(execReport);
+        var ledger = ledgers.get(tradeable);
+        if (ledger == null) {
+            throw new IllegalArgumentException("No ExecLedger for tradeable=" + tradeable + ", execReport=" + execReport);
+        }
+        ledger.restore(execReport, buf);
+        markApplied(execReport);
+    }
+
+    // Reports are applied in the order received, so are compared by receive time, then MsgSeqNum
+    private boolean isAfterLastApplied(ExecReportView execReport) {
+        if (lastAppliedRecvdTime == null) {
+            return true;
+        }
+        int cmp = execReport.recvdTime().compareTo(lastAppliedRecvdTime);
+        return cmp > 0 || (cmp == 0 && execReport.msgSeqNum() > lastAppliedMsgSeqNum);
+    }
+
+    private void markApplied(ExecReportView execReport) {
+        lastAppliedRecvdTime = execReport.recvdTime();
+        lastAppliedMsgSeqNum = execReport.msgSeqNum();
+    }
+
+    // Only called from the trading loop, between messages
+    public State<T> state() {
+        var states = new HashMap<T, ExecLedger.State>();
+        ledgers.forEach((t, ledger) -> states.put(t, ledger.state()));
+        return new State<>(Opt.ofNullable(lastAppliedRecvdTime), lastAppliedMsgSeqNum, states);
+    }
+
+    // Only called before the trading loop starts
+    public void restore(State<T> state) {
+        state.ledgers().forEach((t, ledgerState) -> {
+            var ledger = ledgers.get(t);
+            if (ledger == null) {
+                throw new IllegalArgumentException("No ExecLedger for tradeable=" + t + " to restore");
+            }
+            ledger.restore(ledgerState);
+        });
+        lastAppliedRecvdTime = state.lastAppliedRecvdTime().isNone() ? null : state.lastAppliedRecvdTime().get();
+        lastAppliedMsgSeqNum = state.lastAppliedMsgSeqNum();
+    }
+
+    public /* value */ record State<T extends Tradeable>(
+            Opt<LocalDateTime> lastAppliedRecvdTime,
+            int lastAppliedMsgSeqNum, /* primitive */
+            Map<T, ExecLedger.State> ledgers) {
+    }
+
     public Pnl sumPnls(Predicate<T> include) {
         double netPnl = 0.0d, highWatermark = 0.0d, netQty = 0.0d, grossPnl = 0.0d, fees = 0.0d,
         botQty = 0.0d, botVal = 0.0d, sldQty = 0.0d, sldVal = 0.0d;
@@ -87,13 +155,13 @@ public final class ExecLedgers<T extends Tradeable> {
     }
 
     public int fillableOrdersFor(T tradeable) {
-        return ledgers.get(tradeable).fillableOrders().size();
+        return ledgers.get(tradeable).fillableCount();
     }
 
     public int allFillableOrdersCount() {
         int count = 0;
         for (var ledger : ledgers.values()) {
-            count += ledger.fillableOrders().size();
+            count += ledger.fillableCount();
         }
         return count;
     }
@@ -17,48 +17,125 @@
  */
 package com.abissell.cempaka.data;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.EnumMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
 
+import com.abissell.javautil.io.ThreadLocalFormat;
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.util.UtcNanos;
 import com.abissell.fixbridge.FixField;
-import com.abissell.fixbridge.MDEntries;
+import com.abissell.fixbridge.MDIncEntries;
+import com.abissell.fixbridge.MdSnapshotView;
 import com.abissell.fixbridge.MsgType;
-import com.abissell.fixbridge.OrderQty;
 import com.abissell.fixbridge.ParsedFixMsg;
-import com.abissell.fixbridge.Price;
 import com.abissell.fixbridge.SendingTime;
 import com.abissell.fixbridge.Side;
 import com.abissell.fixbridge.Tradeable;
 
 public final class MktDataBook {
     public final Tradeable tradeable;
-    private final EnumMap<Side, List<SidePxQtyUpdate>> book;
+    private final BookSide bids;
+    private final BookSide asks;
+    private long version;
 
     public MktDataBook(Tradeable tradeable) {
+        this(tradeable, Opt.none());
+    }
+
+    // @param pxDecimalPts if present, keeps pxs as longs at this scale (see BookSide)
+    public MktDataBook(Tradeable tradeable, Opt<Integer> pxDecimalPts) {
         this.tradeable = tradeable;
-        this.book = new EnumMap<>(Side.class);
-        book.put(Side.BUY, Collections.emptyList());
-        book.put(Side.SELL, Collections.emptyList());
+        int decimalPts = pxDecimalPts.orElse(BookSide.DOUBLE_PXS);
+        this.bids = new BookSide(Side.BUY, decimalPts);
+        this.asks = new BookSide(Side.SELL, decimalPts);
+    }
+
+    public BookSide bids() {
+        return bids;
+    }
+
+    public BookSide asks() {
+        return asks;
+    }
+
+    // Bumped whenever a px or qty in the book changes
+    public long version() {
+        return version;
+    }
+
+    public BookSide get(Side side) {
+        return switch (side) {
+            case BUY -> bids;
+            case SELL -> asks;
+            default -> throw new IllegalArgumentException("" + side);
+        };
+    }
+
+    public void updateBook(MdSnapshotView snapshot) {
+        if (snapshot.isPossDup()) {
+            return;
+        }
+
+        var symbol = snapshot.symbol();
+        if (!tradeable.equals(symbol)) {
+            throw new IllegalArgumentException("Tried to update marketDataBook for " + tradeable + " with updates on symbol " + symbol);
+        }
+
+        var sendingTime = snapshot.sendingTime();
+        var recvdTime = UtcNanos.from(snapshot.recvdTime());
+
+        bids.beginStaging();
+        asks.beginStaging();
+        for (int i = 0; i < snapshot.numEntries(); i++) {
+            var bookSide = switch (snapshot.entryType(i)) {
+                case BID -> bids;
+                case OFFER -> asks;
+                default -> throw new IllegalArgumentException("" + snapshot.entryType(i));
+            };
+            bookSide.stage(snapshot.entryPx(i), snapshot.entrySize(i), sendingTime, recvdTime);
+        }
+        commitStaged();
     }
 
-    public List<SidePxQtyUpdate> get(Side side) {
-        return book.get(side);
+    public void updateBook(List<SidePxQtyUpdate> newBidUpdateList, List<SidePxQtyUpdate> newAskUpdateList) {
+        bids.beginStaging();
+        newBidUpdateList.forEach(update -> stage(bids, update));
+        asks.beginStaging();
+        newAskUpdateList.forEach(update -> stage(asks, update));
+        commitStaged();
     }
 
-    public EnumMap<Side, List<SidePxQtyUpdate>> updateBook(ParsedFixMsg parsedMsg) {
+    private void commitStaged() {
+        // Evaluate both so each side swaps in its staged levels
+        boolean bidsChanged = bids.commitStaged();
+        boolean asksChanged = asks.commitStaged();
+        if (bidsChanged || asksChanged) {
+            version++;
+        }
+    }
+
+    private static void stage(BookSide bookSide, SidePxQtyUpdate update) {
+        var level = update.level();
+        if (level.side() != bookSide.side) {
+            throw new IllegalArgumentException("Tried to insert " + update + " on " + bookSide.side + " side");
+        }
+        bookSide.stage(
+                level.px().px(),
+                level.qty().qty(),
+                UtcNanos.from(update.sendingTime()),
+                UtcNanos.from(update.recvdTime())
+            );
+    }
+
+    public void applyIncrement(ParsedFixMsg parsedMsg) {
         if (parsedMsg.isPossDup()) {
-            return book;
+            return;
         }
 
         var fields = parsedMsg.msg();
 
         var msgType = (MsgType) fields.get(FixField.MSG_TYPE);
-        if (msgType != MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH) {
+        if (msgType != MsgType.MARKET_DATA_INCREMENTAL_REFRESH) {
             throw new IllegalArgumentException("Do not know how to handle message of type " + msgType + ", msg: " + parsedMsg);
         }
 
@@ -67,70 +144,68 @@ public final class MktDataBook {
             throw new IllegalArgumentException("Tried to update marketDataBook for " + tradeable + " with updates on symbol " + symbol);
         }
 
-        var sendingTime = (SendingTime) fields.get(FixField.SENDING_TIME);
+        var sendingTime = UtcNanos.from(((SendingTime) fields.get(FixField.SENDING_TIME)).sendingTime());
+        var recvdTime = UtcNanos.from(parsedMsg.recvdTime());
+
+        var entries = ((MDIncEntries) fields.get(FixField.MD_INC_ENTRIES)).entries();
+        boolean changed = false;
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            var bookSide = switch (entry.type()) {
+                case BID -> bids;
+                case OFFER -> asks;
+                default -> throw new IllegalArgumentException("" + entry.type());
+            };
 
-        var mdEntries = (MDEntries) fields.get(FixField.MD_ENTRIES);
-        var newBidUpdateList = new ArrayList<SidePxQtyUpdate>();
-        var newAskUpdateList = new ArrayList<SidePxQtyUpdate>();
-        mdEntries.entries().forEach(entry -> {
-            ArrayList<SidePxQtyUpdate> newUpdateList;
-            Side newUpdateSide;
-            switch (entry.type()) {
-                case BID -> {
-                    newUpdateList = newBidUpdateList;
-                    newUpdateSide = Side.BUY;
+            var px = entry.px().px();
+            var size = entry.size().size();
+            int lvl = bookSide.find(px);
+            switch (entry.action()) {
+                case NEW, CHANGE -> {
+                    if (size <= 0.0d) {
+                        // some venues send a zero-size change instead of a delete
+                        if (lvl >= 0) {
+                            bookSide.remove(lvl);
+                            changed = true;
+                        }
+                    } else if (lvl >= 0) {
+                        changed |= bookSide.set(lvl, size, sendingTime, recvdTime);
+                    } else {
+                        bookSide.insert(px, size, sendingTime, recvdTime);
+                        changed = true;
+                    }
                 }
-                case OFFER -> {
-                    newUpdateList = newAskUpdateList;
-                    newUpdateSide = Side.SELL;
+                case DELETE -> {
+                    if (lvl >= 0) {
+                        bookSide.remove(lvl);
+                        changed = true;
+                    }
                 }
-                default -> throw new IllegalArgumentException("" + entry.type());
+                default -> throw new IllegalArgumentException("" + entry.action());
             }
+        }
 
-            // TODO: Could recycle SidePxQtys from earlier book entries if present
-            var newUpdate = new SidePxQtyUpdate(
-                    new SidePxQty(
-                        newUpdateSide,
-                        new Price(entry.px().px()),
-                        new OrderQty(entry.size().size())
-                    ),
-                    sendingTime.sendingTime(),
-                    parsedMsg.recvdTime()
-                );
-
-            newUpdateList.add(newUpdate);
-        });
-
-        return updateBook(newBidUpdateList, newAskUpdateList);
-    }
-
-    public EnumMap<Side, List<SidePxQtyUpdate>> updateBook(List<SidePxQtyUpdate> newBidUpdateList, List<SidePxQtyUpdate> newAskUpdateList) {
-        Collections.sort(newBidUpdateList);
-        book.put(Side.BUY, newBidUpdateList);
-        Collections.sort(newAskUpdateList);
-        book.put(Side.SELL, newAskUpdateList);
-        return book;
+        if (changed) {
+            version++;
+        }
     }
 
     public String print(int maxUncxdLvls) {
-        List<SidePxQtyUpdate> bidUpdates = book.getOrDefault(Side.BUY, Collections.emptyList());
-        List<SidePxQtyUpdate> askUpdates = book.getOrDefault(Side.SELL, Collections.emptyList());
-        Set<Price> pxs = new HashSet<>();
+        var df = ThreadLocalFormat.with8SigDigits();
         int maxBidQtyChars = 0, maxBidPxChars = 0, maxAskPxChars = 0, maxAskQtyChars = 0;
         double highestBidPx = Double.MIN_VALUE + 1.0d, lowestAskPx = Double.MAX_VALUE - 1.0d;
-        for (var u : bidUpdates) {
-            maxBidQtyChars = Math.max(maxBidQtyChars, u.level().qty().decimalString().length());
-            maxBidPxChars = Math.max(maxBidPxChars, u.level().px().decimalString().length());
-            var px = u.level().px();
-            pxs.add(px);
-            highestBidPx = Math.max(px.px(), highestBidPx);
+        var allPxs = new double[bids.size() + asks.size()];
+        for (int i = 0; i < bids.size(); i++) {
+            maxBidQtyChars = Math.max(maxBidQtyChars, df.format(bids.qty(i)).length());
+            maxBidPxChars = Math.max(maxBidPxChars, df.format(bids.px(i)).length());
+            allPxs[i] = bids.px(i);
+            highestBidPx = Math.max(bids.px(i), highestBidPx);
         }
-        for (var u : askUpdates) {
-            maxAskQtyChars = Math.max(maxAskQtyChars, u.level().qty().decimalString().length());
-            maxAskPxChars = Math.max(maxAskPxChars, u.level().px().decimalString().length());
-            var px = u.level().px();
-            pxs.add(px);
-            lowestAskPx = Math.min(px.px(), lowestAskPx);
+        for (int i = 0; i < asks.size(); i++) {
+            maxAskQtyChars = Math.max(maxAskQtyChars, df.format(asks.qty(i)).length());
+            maxAskPxChars = Math.max(maxAskPxChars, df.format(asks.px(i)).length());
+            allPxs[bids.size() + i] = asks.px(i);
+            lowestAskPx = Math.min(asks.px(i), lowestAskPx);
         }
 
         maxBidQtyChars = Math.max(maxBidQtyChars, 3);
@@ -138,16 +213,7 @@ public final class MktDataBook {
         maxAskPxChars = Math.max(maxAskPxChars, 3);
         maxAskQtyChars = Math.max(maxAskQtyChars, 3);
 
-        List<Price> sortedPxs = new ArrayList<>(pxs);
-        Collections.sort(sortedPxs, (px1, px2) -> {
-            if (px1.px() > px2.px()) {
-                return -1;
-            } else if (px1.px() == px2.px()) {
-                return 0;
-            } else {
-                return 1;
-            }
-        });
+        Arrays.sort(allPxs);
 
         var buf = new StringBuilder();
         buf.append("MKT_DATA_BOOK ").append(tradeable).append(":\n");
@@ -164,8 +230,8 @@ public final class MktDataBook {
 
         double highestAskToAppend = lowestAskPx;
         int uncxdAsksAppended = 0;
-        for (var askUpdate : askUpdates) {
-            var px = askUpdate.level().px().px();
+        for (int i = 0; i < asks.size(); i++) {
+            var px = asks.px(i);
             if (px > highestBidPx) {
                 uncxdAsksAppended++;
                 highestAskToAppend = px;
@@ -178,8 +244,8 @@ public final class MktDataBook {
 
         double lowestBidToAppend = highestBidPx;
         int uncxdBidsAppended = 0;
-        for (var bidUpdate : bidUpdates) {
-            var px = bidUpdate.level().px().px();
+        for (int i = 0; i < bids.size(); i++) {
+            var px = bids.px(i);
             if (px < lowestAskPx) {
                 uncxdBidsAppended++;
                 lowestBidToAppend = px;
@@ -190,30 +256,30 @@ public final class MktDataBook {
             }
         }
 
-        for (Price px : sortedPxs) {
-            Optional<SidePxQtyUpdate> bidUpdate = bidUpdates.stream()
-                .filter(u -> u.level().px().equals(px))
-                .findAny();
-            var appendBid = bidUpdate.isPresent() && bidUpdate.get().px().px() >= lowestBidToAppend;
+        // Walk the distinct pxs from highest to lowest
+        for (int i = allPxs.length - 1; i >= 0; i--) {
+            var px = allPxs[i];
+            if (i < allPxs.length - 1 && Double.compare(px, allPxs[i + 1]) == 0) {
+                continue;
+            }
+
+            int bidLvl = bids.find(px);
+            var appendBid = bidLvl >= 0 && px >= lowestBidToAppend;
             String bidSide;
             if (appendBid) {
-                var u = bidUpdate.get();
-                var qtyStr = String.format("%1$" + maxBidQtyChars + "s", u.level().qty().decimalString());
-                var pxStr = String.format("%1$" + maxBidPxChars + "s", u.level().px().decimalString());
+                var qtyStr = String.format("%1$" + maxBidQtyChars + "s", df.format(bids.qty(bidLvl)));
+                var pxStr = String.format("%1$" + maxBidPxChars + "s", df.format(px));
                 bidSide = "[ " + qtyStr + " @ " + pxStr + " ]";
             } else {
                 bidSide = String.format("%1$" + bidSectionWidth + "s", "");
             }
 
-            Optional<SidePxQtyUpdate> askUpdate = askUpdates.stream()
-                .filter(u -> u.level().px().equals(px))
-                .findAny();
-            var appendAsk = askUpdate.isPresent() && askUpdate.get().px().px() <= highestAskToAppend;
+            int askLvl = asks.find(px);
+            var appendAsk = askLvl >= 0 && px <= highestAskToAppend;
             String askSide;
             if (appendAsk) {
-                var u = askUpdate.get();
-                var pxStr = String.format("%1$" + maxAskPxChars + "s", u.level().px().decimalString());
-                var qtyStr = String.format("%1$" + maxAskQtyChars + "s", u.level().qty().decimalString());
+                var pxStr = String.format("%1$" + maxAskPxChars + "s", df.format(px));
+                var qtyStr = String.format("%1$" + maxAskQtyChars + "s", df.format(asks.qty(askLvl)));
                 askSide = "[ " + pxStr + " @ " + qtyStr + " ]";
             } else {
                 askSide = String.format("%1$" + askSectionWidth + "s", "");
@@ -232,14 +298,12 @@ public final class MktDataBook {
     public String toString() {
         var buf = new StringBuilder();
         buf.append("MKT_DATA_BOOK ").append(tradeable).append(":");
-        List<SidePxQtyUpdate> bidUpdates = book.getOrDefault(Side.BUY, Collections.emptyList());
-        List<SidePxQtyUpdate> askUpdates = book.getOrDefault(Side.SELL, Collections.emptyList());
-        for (var update : bidUpdates) {
-            buf.append("[ ").append(update.level().qty().qty()).append(" @ ").append(update.level().px().px()).append(" ] ");
+        for (int i = 0; i < bids.size(); i++) {
+            buf.append("[ ").append(bids.qty(i)).append(" @ ").append(bids.px(i)).append(" ] ");
         }
         buf.append("<-> ");
-        for (var update : askUpdates) {
-            buf.append("[ ").append(update.level().px().px()).append(" @ ").append(update.level().qty().qty()).append(" ] ");
+        for (int i = 0; i < asks.size(); i++) {
+            buf.append("[ ").append(asks.px(i)).append(" @ ").append(asks.qty(i)).append(" ] ");
         }
         buf.append("}");
         return buf.toString();
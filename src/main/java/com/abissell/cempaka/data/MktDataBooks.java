@@ -21,6 +21,8 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.function.Function;
 
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.fixbridge.MdSnapshotView;
 import com.abissell.fixbridge.ParsedFixMsg;
 import com.abissell.fixbridge.Tradeable;
 
@@ -32,19 +34,36 @@ public final class MktDataBooks<T extends Tradeable> {
             Map<T, MktDataBook> booksMap,
             Function<ParsedFixMsg, T> tradeableExtractor,
             Collection<T> tradeables) {
+        this(booksMap, tradeableExtractor, tradeables, t -> Opt.none());
+    }
+
+    public MktDataBooks(
+            Map<T, MktDataBook> booksMap,
+            Function<ParsedFixMsg, T> tradeableExtractor,
+            Collection<T> tradeables,
+            Function<T, Opt<Integer>> pxDecimalPts) {
         this.books = booksMap;
         this.tradeableExtractor = tradeableExtractor;
-        tradeables.forEach(t -> booksMap.put(t, new MktDataBook(t)));
+        tradeables.forEach(t -> booksMap.put(t, new MktDataBook(t, pxDecimalPts.apply(t))));
     }
 
     public MktDataBook get(T tradeable) {
         return books.get(tradeable);
     }
 
-    public MktDataBook updateBook(ParsedFixMsg parsedMsg) {
+    public MktDataBook updateBook(MdSnapshotView snapshot) {
+        var book = books.get(snapshot.symbol());
+        if (book == null) {
+            throw new IllegalArgumentException("No MktDataBook for symbol " + snapshot.symbol() + ", snapshot: " + snapshot);
+        }
+        book.updateBook(snapshot);
+        return book;
+    }
+
+    public MktDataBook applyIncrement(ParsedFixMsg parsedMsg) {
         var tradeable = tradeableExtractor.apply(parsedMsg);
         var book = books.get(tradeable);
-        book.updateBook(parsedMsg);
+        book.applyIncrement(parsedMsg);
         return book;
     }
 }
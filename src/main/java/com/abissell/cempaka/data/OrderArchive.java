@@ -0,0 +1,226 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.cempaka.orderid.OrdrID;
+import com.abissell.cempaka.util.UtcNanos;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+
+/*
+ * Append-only record of the orders which have reached a terminal status,
+ * with their final fill, kept as a DayFile per UTC trading day named
+ * orders-yyyyMMdd.bin. Each order is a fixed RECORD_SIZE bytes after the
+ * header, whose count is updated once the record is written.
+ *
+ * Appends are plain stores into the mapping and leave writing back to the
+ * OS, other than the force() when a day's file is closed. Symbols and bases
+ * longer than their fields are truncated.
+ *
+ * Not thread safe, appended to only from the trading loop. A Reader may be
+ * opened on the same file from any thread.
+ */
+public final class OrderArchive implements AutoCloseable {
+    static final int MAGIC = 0x434D4F41; // "CMOA"
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 96;
+    private static final DayFile.Format FORMAT =
+            new DayFile.Format("orders", "order archive", MAGIC, VERSION, RECORD_SIZE);
+
+    // Record layout
+    private static final int ID = 0;
+    private static final int SENT_TIME = 8;
+    private static final int TERMINAL_TIME = 16;
+    private static final int QTY = 24;
+    private static final int PX = 32;
+    private static final int CUM_QTY = 40;
+    private static final int AVG_PX = 48;
+    private static final int SIDE = 56;
+    private static final int TIF = 57;
+    private static final int STATUS = 58;
+    private static final int FLAGS = 59;
+    private static final int SYMBOL = 64;
+    private static final int SYMBOL_LEN = 16;
+    private static final int BASE = 80;
+    private static final int BASE_LEN = 16;
+
+    private static final byte FILLED_FLAG = 1;
+
+    private final DayFile file;
+
+    public OrderArchive(Path dir) {
+        this.file = new DayFile(dir, FORMAT);
+    }
+
+    public static Path fileFor(Path dir, LocalDate day) {
+        return FORMAT.fileFor(dir, day);
+    }
+
+    // Orders appended to the current day's file, including any from before a restart
+    public long count() {
+        return file.count();
+    }
+
+    /*
+     * Appends the order with its terminal status and final fill, to the file
+     * for the UTC day of terminalTime.
+     */
+    public void append(Order order, OrdStatus status, boolean filled, double cumQty, double avgPx,
+            LocalDateTime terminalTime) {
+        int pos = file.nextRecord(terminalTime.toLocalDate());
+        var buf = file.buf();
+        buf.putLong(pos + ID, ((ClOrdrID) order.id()).packed());
+        buf.putLong(pos + SENT_TIME, UtcNanos.from(order.sentTime().time()));
+        buf.putLong(pos + TERMINAL_TIME, UtcNanos.from(terminalTime));
+        buf.putDouble(pos + QTY, order.qty().qty());
+        buf.putDouble(pos + PX, order.px().px());
+        buf.putDouble(pos + CUM_QTY, cumQty);
+        buf.putDouble(pos + AVG_PX, avgPx);
+        buf.put(pos + SIDE, (byte) order.side().fixChar);
+        buf.put(pos + TIF, (byte) order.timeInForce().fixChar);
+        buf.put(pos + STATUS, (byte) status.fixChar);
+        buf.put(pos + FLAGS, filled ? FILLED_FLAG : 0);
+        DayFile.putAscii(buf, pos + SYMBOL, SYMBOL_LEN, order.tradeable().symbol());
+        DayFile.putAscii(buf, pos + BASE, BASE_LEN, order.base().fieldVal());
+        file.committed();
+    }
+
+    /*
+     * Looks for the order in the current day's file, e.g. for a late report
+     * on an order whose ledger slot has been reused. Scans from the end,
+     * since lookups are mostly of recent orders.
+     */
+    public Opt<ArchivedOrder> find(ClOrdrID id) {
+        var buf = file.buf();
+        if (buf == null) {
+            return Opt.none();
+        }
+        return find(buf, (int) file.count(), id);
+    }
+
+    private static Opt<ArchivedOrder> find(ByteBuffer buf, int count, ClOrdrID id) {
+        long packed = id.packed();
+        for (int i = count - 1; i >= 0; i--) {
+            int pos = DayFile.HEADER_SIZE + i * RECORD_SIZE;
+            if (buf.getLong(pos + ID) == packed) {
+                return Opt.of(read(buf, pos));
+            }
+        }
+        return Opt.none();
+    }
+
+    private static ArchivedOrder read(ByteBuffer buf, int pos) {
+        return new ArchivedOrder(
+                new ClOrdrID(OrdrID.fromPacked(buf.getLong(pos + ID))),
+                DayFile.getAscii(buf, pos + SYMBOL, SYMBOL_LEN),
+                DayFile.getAscii(buf, pos + BASE, BASE_LEN),
+                Side.fromFixChar((char) buf.get(pos + SIDE)),
+                buf.getDouble(pos + QTY),
+                buf.getDouble(pos + PX),
+                TimeInForce.fromFixChar((char) buf.get(pos + TIF)),
+                UtcNanos.toLocalDateTime(buf.getLong(pos + SENT_TIME)),
+                OrdStatus.fromFixChar((char) buf.get(pos + STATUS)),
+                (buf.get(pos + FLAGS) & FILLED_FLAG) != 0,
+                buf.getDouble(pos + CUM_QTY),
+                buf.getDouble(pos + AVG_PX),
+                UtcNanos.toLocalDateTime(buf.getLong(pos + TERMINAL_TIME)));
+    }
+
+    // Forces the current day's file to disk and closes it
+    @Override
+    public void close() {
+        file.close();
+    }
+
+    public /* value */ record ArchivedOrder(
+            ClOrdrID id,
+            String symbol,
+            String base,
+            Side side,
+            double qty, /* primitive */
+            double px, /* primitive */
+            TimeInForce timeInForce,
+            LocalDateTime sentTime,
+            OrdStatus status,
+            boolean filled, /* primitive */
+            double cumQty, /* primitive */
+            double avgPx, /* primitive */
+            LocalDateTime terminalTime) {
+    }
+
+    /*
+     * Read-only view of one day's file, for console queries and post-trade
+     * tools. The count is read from the header on each call, so orders
+     * appended after opening are seen up to the size mapped at open().
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DayFile.Reader reader;
+
+        private Reader(DayFile.Reader reader) {
+            this.reader = reader;
+        }
+
+        public static Reader open(Path dir, LocalDate day) throws IOException {
+            return open(fileFor(dir, day));
+        }
+
+        public static Reader open(Path file) throws IOException {
+            return new Reader(DayFile.Reader.open(file, FORMAT));
+        }
+
+        public LocalDate day() {
+            return reader.day();
+        }
+
+        public int count() {
+            return reader.count();
+        }
+
+        public ArchivedOrder get(int i) {
+            return read(reader.buf(), reader.pos(i));
+        }
+
+        // Scans from the end, since lookups are mostly of recent orders
+        public Opt<ArchivedOrder> find(ClOrdrID id) {
+            return OrderArchive.find(reader.buf(), count(), id);
+        }
+
+        public void forEach(Consumer<ArchivedOrder> consumer) {
+            int count = count();
+            for (int i = 0; i < count; i++) {
+                consumer.accept(get(i));
+            }
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import java.util.Arrays;
+
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+
+/*
+ * The orders of one ExecLedger, with each order's state held as mutable
+ * fields of a slot. An order's slot is the low bits of its ClOrdrID's
+ * packed value, and the slot keeps the whole packed value, so a lookup is
+ * an array index plus that generation check rather than a hash and an
+ * equals on the ID record. IDs from an OrdrIDGenerator count up, so
+ * consecutive orders take consecutive slots.
+ *
+ * Slots are reused once their order is terminal: a later order wanting the
+ * slot takes it over, after which the old order is no longer found. Only
+ * when a slot's order is still open does the table double, which needs as
+ * many orders sent while one stays open as there are slots.
+ *
+ * Not thread safe, used only from the trading loop.
+ */
+final class OrderTable {
+    static final int NO_SLOT = -1;
+    private static final long EMPTY = -1L;
+
+    private int mask;
+    private long[] ids;
+    private Order[] orders;
+    private OrdStatus[] statuses;
+    private boolean[] filled;
+    private double[] cumQtys;
+    private double[] avgPxs;
+    private int openCount;
+
+    OrderTable(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        mask = capacity - 1;
+        ids = new long[capacity];
+        Arrays.fill(ids, EMPTY);
+        orders = new Order[capacity];
+        statuses = new OrdStatus[capacity];
+        filled = new boolean[capacity];
+        cumQtys = new double[capacity];
+        avgPxs = new double[capacity];
+    }
+
+    // @return the order's slot, holding it as PENDING_NEW
+    int add(ClOrdrID id, Order order) {
+        long packed = id.packed();
+        int slot = (int) packed & mask;
+        while (ids[slot] != EMPTY && !isTerminal(statuses[slot])) {
+            if (ids[slot] == packed) {
+                throw new IllegalArgumentException("Order " + id + " is already open: " + orders[slot]);
+            }
+            grow();
+            slot = (int) packed & mask;
+        }
+        ids[slot] = packed;
+        orders[slot] = order;
+        statuses[slot] = OrdStatus.PENDING_NEW;
+        filled[slot] = false;
+        cumQtys[slot] = 0.0d;
+        avgPxs[slot] = 0.0d;
+        openCount++;
+        return slot;
+    }
+
+    // @return the order's slot, or NO_SLOT if it was never added or its slot has been reused
+    int find(ClOrdrID id) {
+        long packed = id.packed();
+        int slot = (int) packed & mask;
+        return ids[slot] == packed ? slot : NO_SLOT;
+    }
+
+    Order order(int slot) { return orders[slot]; }
+    OrdStatus status(int slot) { return statuses[slot]; }
+    boolean hasFill(int slot) { return filled[slot]; }
+    double cumQty(int slot) { return cumQtys[slot]; }
+    double avgPx(int slot) { return avgPxs[slot]; }
+
+    boolean isUsed(int slot) {
+        return ids[slot] != EMPTY;
+    }
+
+    boolean isOpen(int slot) {
+        return !isTerminal(statuses[slot]);
+    }
+
+    // A terminal order may be reopened, e.g. one force canceled that the venue then reports as NEW
+    void setStatus(int slot, OrdStatus status) {
+        boolean wasTerminal = isTerminal(statuses[slot]);
+        boolean terminal = isTerminal(status);
+        if (!wasTerminal && terminal) {
+            openCount--;
+        } else if (wasTerminal && !terminal) {
+            openCount++;
+        }
+        statuses[slot] = status;
+    }
+
+    void setFill(int slot, OrdStatus status, double cumQty, double avgPx) {
+        setStatus(slot, status);
+        filled[slot] = true;
+        cumQtys[slot] = cumQty;
+        avgPxs[slot] = avgPx;
+    }
+
+    // Orders not yet filled, canceled or rejected
+    int openCount() {
+        return openCount;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    private static boolean isTerminal(OrdStatus status) {
+        return switch (status) {
+            case FILLED, CANCELED, REJECTED, DONE_FOR_DAY, EXPIRED -> true;
+            default -> false;
+        };
+    }
+
+    // Orders in distinct slots stay in distinct slots of the doubled table
+    private void grow() {
+        var oldIds = ids;
+        var oldOrders = orders;
+        var oldStatuses = statuses;
+        var oldFilled = filled;
+        var oldCumQtys = cumQtys;
+        var oldAvgPxs = avgPxs;
+        allocate(oldIds.length << 1);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == EMPTY) {
+                continue;
+            }
+            int slot = (int) oldIds[i] & mask;
+            ids[slot] = oldIds[i];
+            orders[slot] = oldOrders[i];
+            statuses[slot] = oldStatuses[i];
+            filled[slot] = oldFilled[i];
+            cumQtys[slot] = oldCumQtys[i];
+            avgPxs[slot] = oldAvgPxs[i];
+        }
+    }
+}
@@ -21,6 +21,7 @@ public enum RiskLimit {
     APPROVED,
     TRADING_HALTED,
     CIRCUIT_BREAKER,
+    STALE_MKT_DATA,
     MAG_EMPTY,
     MAX_LOSS,
     TRADEABLE_CONCURRENT_ENTRIES,
@@ -27,11 +27,14 @@ import com.abissell.logutil.Log;
 import com.abissell.cempaka.util.DstSet;
 import com.abissell.cempaka.data.Ccy;
 import com.abissell.cempaka.data.CcyPair;
+import com.abissell.cempaka.orderid.ClOrdrID;
 import com.abissell.fixbridge.CheckSum;
+import com.abissell.fixbridge.FixDecoder;
 import com.abissell.fixbridge.FixField;
 import com.abissell.fixbridge.FixFieldVal;
 import com.abissell.fixbridge.MsgSeqNum;
 import com.abissell.fixbridge.MsgType;
+import com.abissell.fixbridge.OrigClOrdrID;
 import com.abissell.fixbridge.PossDupFlag;
 import com.abissell.fixbridge.PossResend;
 import com.abissell.fixbridge.SenderCompID;
@@ -66,6 +69,8 @@ final class BaseQFJApplication {
     private final Function<String, ? extends TargetCompID> targetIdReader =
         constructReader(TargetID::from, TargtID::new);
 
+    private final FixDecoder decoder;
+
     BaseQFJApplication(SessionSettings sessionSettings) {
         this.sessionSettings = sessionSettings;
 
@@ -85,6 +90,15 @@ final class BaseQFJApplication {
                 Ccy.values(),
                 ccy -> new quickfix.field.Currency(ccy.fixStr),
                 () -> new EnumMap<>(Ccy.class));
+
+        var readers = new EnumMap<FixField, Function<String, ? extends FixFieldVal>>(FixField.class);
+        readers.put(FixField.SENDER_COMP_ID, senderIdReader);
+        readers.put(FixField.TARGET_COMP_ID, targetIdReader);
+        readers.put(FixField.SYMBOL, CcyPair::from);
+        readers.put(FixField.CURRENCY, Ccy::fromFixStr);
+        readers.put(FixField.CL_ORD_ID, ClOrdrID::from);
+        readers.put(FixField.ORIG_CL_ORD_ID, OrigClOrdrID::from);
+        this.decoder = new FixDecoder(readers);
     }
 
     void onCreate() {
@@ -180,6 +194,10 @@ final class BaseQFJApplication {
         return to;
     }
 
+    FixDecoder decoder() {
+        return decoder;
+    }
+
     void onSequenceReset(SequenceReset sequenceReset, String logPrefix) {
 
     }
@@ -0,0 +1,101 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Holds only the latest value per slot, e.g. per CcyPair ordinal, with a
+ * bitmask of slots written since the last drain. A put never fails and
+ * never blocks: a value not yet drained is simply replaced.
+ *
+ * put() writes the slot before setting its dirty bit, and drainTo() clears
+ * the mask before taking each slot, so every value is either drained or
+ * replaced by a later one.
+ */
+public final class ConflatingMailbox<T> {
+    private static final VarHandle DIRTY;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    static {
+        try {
+            DIRTY = MethodHandles.lookup().findVarHandle(ConflatingMailbox.class, "dirty", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] slots;
+    private volatile long dirty;
+    private final AtomicLong conflated = new AtomicLong();
+
+    public ConflatingMailbox(int numSlots) {
+        if (numSlots <= 0 || numSlots > Long.SIZE) {
+            throw new IllegalArgumentException("Cannot create mailbox with " + numSlots + " slots");
+        }
+        this.slots = new Object[numSlots];
+    }
+
+    // @return the value replaced before it was drained, or null. It was never
+    //         seen by the consumer, so the producer may reuse it.
+    @SuppressWarnings("unchecked")
+    public T put(int slot, T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+
+        var prev = (T) SLOTS.getAndSet(slots, slot, value);
+        if (prev != null) {
+            conflated.incrementAndGet();
+        }
+        DIRTY.getAndBitwiseOrRelease(this, 1L << slot);
+        return prev;
+    }
+
+    // Adds the latest value of each dirty slot to c, in slot order
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super T> c) {
+        if (dirty == 0L) {
+            return 0;
+        }
+
+        long mask = (long) DIRTY.getAndSet(this, 0L);
+        int drained = 0;
+        while (mask != 0L) {
+            int slot = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            var value = (T) SLOTS.getAndSet(slots, slot, null);
+            // null if an earlier drain already took the value behind this bit
+            if (value != null) {
+                c.add(value);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    public int pending() {
+        return Long.bitCount(dirty);
+    }
+
+    public long conflatedCount() {
+        return conflated.get();
+    }
+}
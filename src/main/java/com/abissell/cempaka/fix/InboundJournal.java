@@ -0,0 +1,255 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import com.abissell.logutil.Log;
+import com.abissell.cempaka.util.DstSet;
+import com.abissell.cempaka.util.UtcNanos;
+
+import quickfix.Message;
+
+/*
+ * Journal of the raw inbound messages of one FIX session, each with the
+ * time it was received, so the state they built can be restored after a
+ * restart without asking the counterparty to resend them.
+ *
+ * The journal is a run of memory-mapped segment files per UTC day, named
+ * <name>-yyyyMMdd-NNNN.jnl. Each frame is the message length, the receive
+ * time as UTC epoch nanos and then the message's tag=value bytes, which
+ * FixDecoder reads back directly. A zero length ends a segment, and a
+ * frame that does not fit in what is left of one starts the next.
+ *
+ * Appends are stores into the mapping and never wait on the disk. A flusher
+ * thread forces the current segment every FLUSH_INTERVAL_NANOS if anything
+ * was appended since its last pass, committing all those frames at once.
+ *
+ * append() must only be called from one thread, the session's.
+ */
+public final class InboundJournal implements AutoCloseable {
+    static final int MAGIC = 0x434D494A; // "CMIJ"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 12;
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5L);
+    private static final String SUFFIX = ".jnl";
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path dir;
+    private final String name;
+    private final int segmentSize;
+    private final Thread flusher;
+
+    // Only touched by the appending thread
+    private LocalDate day;
+    private int segmentIndex;
+    private int pos;
+
+    // Read by the flusher
+    private volatile MappedByteBuffer segment;
+    private volatile long appended;
+    private volatile boolean running = true;
+
+    public InboundJournal(Path dir, String name) {
+        this(dir, name, DEFAULT_SEGMENT_SIZE);
+    }
+
+    InboundJournal(Path dir, String name, int segmentSize) {
+        if (segmentSize <= HEADER_SIZE + FRAME_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.flusher = new Thread(this::flush, "cempaka-journal-flusher-" + name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static Path segmentFile(Path dir, String name, LocalDate day, int index) {
+        return dir.resolve(name + "-" + FILE_DATE.format(day) + "-" + String.format("%04d", index) + SUFFIX);
+    }
+
+    // Logs rather than throws, since a failed write to the journal must not stop the session
+    public void append(Message message, LocalDateTime recvdTime) {
+        var raw = message.toRawString();
+        try {
+            append(raw != null ? raw : message.toString(), recvdTime);
+        } catch (RuntimeException e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not journal " + name + " message: " + e);
+        }
+    }
+
+    public void append(String raw, LocalDateTime recvdTime) {
+        int frameSize = FRAME_HEADER_SIZE + raw.length();
+        if (HEADER_SIZE + frameSize > segmentSize) {
+            throw new IllegalArgumentException("Message of length " + raw.length() + " does not fit in a segment");
+        }
+        var recvdDay = recvdTime.toLocalDate();
+        if (!recvdDay.equals(day)) {
+            openSegment(recvdDay, nextIndex(recvdDay));
+        } else if (pos + frameSize > segmentSize) {
+            openSegment(day, segmentIndex + 1);
+        }
+        var buf = segment;
+        buf.putLong(pos + 4, UtcNanos.from(recvdTime));
+        int bodyPos = pos + FRAME_HEADER_SIZE;
+        for (int i = 0; i < raw.length(); i++) {
+            buf.put(bodyPos + i, (byte) raw.charAt(i));
+        }
+        // The length goes in last, so a reader never sees a partial frame
+        buf.putInt(pos, raw.length());
+        pos += frameSize;
+        appended++;
+    }
+
+    // Continues after any segments from before a restart
+    private int nextIndex(LocalDate newDay) {
+        int index = 0;
+        while (Files.exists(segmentFile(dir, name, newDay, index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private void openSegment(LocalDate newDay, int index) {
+        var file = segmentFile(dir, name, newDay, index);
+        var old = segment;
+        try {
+            Files.createDirectories(dir);
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var buf = channel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentSize);
+                buf.putInt(0, MAGIC);
+                buf.putInt(4, VERSION);
+                buf.putInt(8, segmentSize);
+                segment = buf;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal segment " + file, e);
+        }
+        // The flusher only forces the current segment
+        if (old != null) {
+            old.force();
+        }
+        day = newDay;
+        segmentIndex = index;
+        pos = HEADER_SIZE;
+    }
+
+    private void flush() {
+        long flushed = 0L;
+        while (running) {
+            LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            long count = appended;
+            var buf = segment;
+            if (count != flushed && buf != null) {
+                buf.force();
+                flushed = count;
+            }
+        }
+    }
+
+    // Stops the flusher and forces what was appended to the current segment
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        var buf = segment;
+        if (buf != null) {
+            buf.force();
+        }
+    }
+
+    /*
+     * Passes each message journaled for the day to handler, with its receive
+     * time, in the order appended.
+     *
+     * @return the number of messages replayed
+     */
+    public static int replay(Path dir, String name, LocalDate day,
+            BiConsumer<String, LocalDateTime> handler) throws IOException {
+        var files = new ArrayList<Path>();
+        for (int index = 0; Files.exists(segmentFile(dir, name, day, index)); index++) {
+            files.add(segmentFile(dir, name, day, index));
+        }
+        return replay(files, handler);
+    }
+
+    static int replay(List<Path> files, BiConsumer<String, LocalDateTime> handler) throws IOException {
+        int count = 0;
+        for (var file : files) {
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                var buf = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                checkHeader(buf, file);
+                count += replay(buf, handler);
+            }
+        }
+        return count;
+    }
+
+    private static int replay(ByteBuffer buf, BiConsumer<String, LocalDateTime> handler) {
+        int count = 0;
+        int pos = HEADER_SIZE;
+        byte[] bytes = new byte[256];
+        while (pos + FRAME_HEADER_SIZE <= buf.capacity()) {
+            int length = buf.getInt(pos);
+            if (length <= 0 || pos + FRAME_HEADER_SIZE + length > buf.capacity()) {
+                break;
+            }
+            var recvdTime = UtcNanos.toLocalDateTime(buf.getLong(pos + 4));
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buf.get(pos + FRAME_HEADER_SIZE, bytes, 0, length);
+            handler.accept(new String(bytes, 0, length, StandardCharsets.US_ASCII), recvdTime);
+            count++;
+            pos += FRAME_HEADER_SIZE + length;
+        }
+        return count;
+    }
+
+    private static void checkHeader(ByteBuffer buf, Path file) {
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a version " + VERSION + " journal segment: " + file);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/*
+ * Prints the messages in an InboundJournal as text, one per line, each
+ * after its receive time and with SOH shown as '|':
+ *
+ *   java -cp <classpath> com.abissell.cempaka.fix.JournalDump <dir> <name> [yyyy-MM-dd] [symbol]
+ *
+ * name is the session's journal, "mktdata" or "exec". The day defaults to
+ * today in UTC, and a symbol, e.g. EUR/USD, prints only its messages.
+ */
+public final class JournalDump {
+    private JournalDump() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: JournalDump <dir> <name> [yyyy-MM-dd] [symbol]");
+            System.exit(2);
+        }
+        var dir = Path.of(args[0]);
+        var name = args[1];
+        var day = args.length > 2 ? LocalDate.parse(args[2]) : LocalDate.now(ZoneOffset.UTC);
+        var symbol = args.length > 3 ? args[3] : null;
+        var out = new PrintStream(System.out, false);
+        int count = dump(dir, name, day, symbol, out);
+        out.flush();
+        System.err.println(count + " messages in " + name + " journal for " + day);
+    }
+
+    // @return the number of messages printed
+    static int dump(Path dir, String name, LocalDate day, String symbol, PrintStream out) throws IOException {
+        var symbolTag = symbol == null ? null : "\u000155=" + symbol + "\u0001";
+        var sb = new StringBuilder(512);
+        int[] count = { 0 };
+        InboundJournal.replay(dir, name, day, (raw, recvdTime) -> {
+            if (symbolTag == null || raw.contains(symbolTag)) {
+                sb.setLength(0);
+                out.append(format(raw, recvdTime, sb)).append('\n');
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    static StringBuilder format(String raw, LocalDateTime recvdTime, StringBuilder sb) {
+        sb.append(recvdTime).append(' ');
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            sb.append(c == '\u0001' ? '|' : c);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import quickfix.MessageStore;
+
+/*
+ * MessageStore for one session kept in memory-mapped files in its own
+ * directory. The sequence numbers and creation time sit in a small mapped
+ * "seqnums" file, so updating them is a store to memory. Sent messages are
+ * appended to mapped body segments, body-NNNN.seg, as the sequence number,
+ * the length and then the message's bytes, rolling to a new segment when
+ * one is full. The length goes in last, and a zero length ends a segment.
+ *
+ * An index from sequence number to segment and offset is rebuilt by
+ * scanning the segments when the store is opened, so get() for a resend
+ * copies each message straight out of the mapping without a seek.
+ *
+ * Writing back to disk is left to the OS, other than the force() of each
+ * file on close() and as a segment is rolled, so the store survives the
+ * process exiting but not the host failing.
+ *
+ * Like QuickFIX/J's own stores, it is only used under the Session's lock.
+ */
+public final class MappedStore implements MessageStore, Closeable {
+    static final int MAGIC = 0x434D4D53; // "CMMS"
+    static final int VERSION = 1;
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int SEQNUMS_SIZE = 64;
+    private static final int NEXT_SENDER_OFFSET = 16;
+    private static final int NEXT_TARGET_OFFSET = 20;
+    private static final int CREATION_TIME_OFFSET = 24;
+    private static final String SEQNUMS_FILE = "seqnums";
+    private static final long NOT_STORED = 0L;
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private MappedByteBuffer seqNums;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int pos;
+    // (segment << 32) | offset of each stored sequence number's record
+    private long[] index = new long[1024];
+
+    public MappedStore(Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MappedStore(Path dir, int segmentSize) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        open();
+    }
+
+    static Path segmentFile(Path dir, int segment) {
+        return dir.resolve("body-" + String.format("%04d", segment) + ".seg");
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        var seqNumsFile = dir.resolve(SEQNUMS_FILE);
+        boolean created = !Files.exists(seqNumsFile);
+        seqNums = map(seqNumsFile, SEQNUMS_SIZE);
+        if (created) {
+            seqNums.putInt(0, MAGIC);
+            seqNums.putInt(4, VERSION);
+            initSeqNums();
+        } else {
+            checkHeader(seqNums, seqNumsFile);
+        }
+
+        for (int segment = 0; Files.exists(segmentFile(dir, segment)); segment++) {
+            var file = segmentFile(dir, segment);
+            // Kept at the size it was created with
+            var buf = map(file, (int) Files.size(file));
+            checkHeader(buf, file);
+            segments.add(buf);
+            pos = scan(segment, buf);
+        }
+        if (segments.isEmpty()) {
+            addSegment();
+        }
+    }
+
+    private void initSeqNums() {
+        seqNums.putInt(NEXT_SENDER_OFFSET, 1);
+        seqNums.putInt(NEXT_TARGET_OFFSET, 1);
+        seqNums.putLong(CREATION_TIME_OFFSET, System.currentTimeMillis());
+    }
+
+    // @return the offset after the segment's last record
+    private int scan(int segment, MappedByteBuffer buf) {
+        int at = SEGMENT_HEADER_SIZE;
+        while (at + RECORD_HEADER_SIZE <= buf.capacity()) {
+            int length = buf.getInt(at + 4);
+            if (length <= 0 || at + RECORD_HEADER_SIZE + length > buf.capacity()) {
+                break;
+            }
+            indexRecord(buf.getInt(at), segment, at);
+            at += RECORD_HEADER_SIZE + length;
+        }
+        return at;
+    }
+
+    private void addSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).force();
+        }
+        var buf = map(segmentFile(dir, segments.size()), segmentSize);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        segments.add(buf);
+        pos = SEGMENT_HEADER_SIZE;
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+        }
+    }
+
+    private static void checkHeader(MappedByteBuffer buf, Path file) throws IOException {
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " MappedStore file: " + file);
+        }
+    }
+
+    private void indexRecord(int sequence, int segment, int offset) {
+        if (sequence >= index.length) {
+            index = Arrays.copyOf(index, Math.max(sequence + 1, 2 * index.length));
+        }
+        index[sequence] = ((long) segment << 32) | offset;
+    }
+
+    @Override
+    public boolean set(int sequence, String message) throws IOException {
+        if (sequence <= 0) {
+            throw new IOException("Cannot store message with sequence number " + sequence);
+        }
+        int recordSize = RECORD_HEADER_SIZE + message.length();
+        if (SEGMENT_HEADER_SIZE + recordSize > segmentSize) {
+            throw new IOException("Message of length " + message.length() + " does not fit in a segment");
+        }
+        if (pos + recordSize > segments.get(segments.size() - 1).capacity()) {
+            addSegment();
+        }
+        int segment = segments.size() - 1;
+        var buf = segments.get(segment);
+        buf.putInt(pos, sequence);
+        int bodyPos = pos + RECORD_HEADER_SIZE;
+        for (int i = 0; i < message.length(); i++) {
+            buf.put(bodyPos + i, (byte) message.charAt(i));
+        }
+        buf.putInt(pos + 4, message.length());
+        indexRecord(sequence, segment, pos);
+        pos += recordSize;
+        return true;
+    }
+
+    @Override
+    public void get(int startSequence, int endSequence, Collection<String> messages) {
+        int end = Math.min(endSequence, index.length - 1);
+        byte[] bytes = null;
+        for (int sequence = Math.max(startSequence, 1); sequence <= end; sequence++) {
+            long location = index[sequence];
+            if (location == NOT_STORED) {
+                continue;
+            }
+            var buf = segments.get((int) (location >>> 32));
+            int offset = (int) location;
+            int length = buf.getInt(offset + 4);
+            if (bytes == null || bytes.length < length) {
+                bytes = new byte[Math.max(length, 1024)];
+            }
+            buf.get(offset + RECORD_HEADER_SIZE, bytes, 0, length);
+            // QuickFIX/J's default charset, one byte per char
+            messages.add(new String(bytes, 0, length, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Override
+    public int getNextSenderMsgSeqNum() {
+        return seqNums.getInt(NEXT_SENDER_OFFSET);
+    }
+
+    @Override
+    public int getNextTargetMsgSeqNum() {
+        return seqNums.getInt(NEXT_TARGET_OFFSET);
+    }
+
+    @Override
+    public void setNextSenderMsgSeqNum(int next) {
+        seqNums.putInt(NEXT_SENDER_OFFSET, next);
+    }
+
+    @Override
+    public void setNextTargetMsgSeqNum(int next) {
+        seqNums.putInt(NEXT_TARGET_OFFSET, next);
+    }
+
+    @Override
+    public void incrNextSenderMsgSeqNum() {
+        setNextSenderMsgSeqNum(getNextSenderMsgSeqNum() + 1);
+    }
+
+    @Override
+    public void incrNextTargetMsgSeqNum() {
+        setNextTargetMsgSeqNum(getNextTargetMsgSeqNum() + 1);
+    }
+
+    @Override
+    public Date getCreationTime() {
+        return new Date(seqNums.getLong(CREATION_TIME_OFFSET));
+    }
+
+    // Starts a new creation time, sequence numbers from 1 and no stored messages
+    @Override
+    public void reset() throws IOException {
+        initSeqNums();
+        seqNums.force();
+        segments.clear();
+        for (int segment = 0; Files.exists(segmentFile(dir, segment)); segment++) {
+            Files.delete(segmentFile(dir, segment));
+        }
+        index = new long[1024];
+        addSegment();
+    }
+
+    // Rereads the files, in case they were written by another process
+    @Override
+    public void refresh() throws IOException {
+        segments.clear();
+        index = new long[1024];
+        open();
+    }
+
+    @Override
+    public void close() {
+        seqNums.force();
+        segments.get(segments.size() - 1).force();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import quickfix.ConfigError;
+import quickfix.MessageStore;
+import quickfix.MessageStoreFactory;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+/*
+ * Creates a MappedStore per session, in a directory named for the session
+ * under the session's MappedStorePath setting, or under "store" if unset.
+ */
+public final class MappedStoreFactory implements MessageStoreFactory {
+    public static final String SETTING_MAPPED_STORE_PATH = "MappedStorePath";
+    public static final String DEFAULT_MAPPED_STORE_PATH = "store";
+
+    private final SessionSettings settings;
+
+    public MappedStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public MessageStore create(SessionID sessionID) {
+        try {
+            var path = settings.isSetting(sessionID, SETTING_MAPPED_STORE_PATH) ?
+                settings.getString(sessionID, SETTING_MAPPED_STORE_PATH) : DEFAULT_MAPPED_STORE_PATH;
+            return new MappedStore(Path.of(path, dirName(sessionID)));
+        } catch (ConfigError e) {
+            throw new IllegalStateException("Could not read " + SETTING_MAPPED_STORE_PATH + " for " + sessionID, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open MappedStore for " + sessionID, e);
+        }
+    }
+
+    // e.g. FIX.4.2-SENDER-TARGET, with anything not safe in a file name replaced
+    static String dirName(SessionID sessionID) {
+        return sessionID.toString().replace("->", "-").replace(':', '-').replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
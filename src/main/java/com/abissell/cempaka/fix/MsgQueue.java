@@ -18,18 +18,23 @@
 package com.abissell.cempaka.fix;
 
 import java.util.Collection;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.abissell.logutil.Log;
 import com.abissell.cempaka.util.DstSet;
 
+/*
+ * Each MsgQueue must have a single producing thread (a QFJ session thread or
+ * the console) and is drained only by the trading loop.
+ */
 public final class MsgQueue<T> {
-    private final BlockingQueue<T> queue;
+    private final SpscRing<T> queue;
     public volatile boolean healthy = true;
+    // Items the producer deliberately skipped rather than offering
+    private final AtomicLong dropped = new AtomicLong();
 
     public MsgQueue(int capacity) {
-        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.queue = new SpscRing<>(capacity);
     }
 
     public boolean offer(T item) {
@@ -47,6 +52,14 @@ public final class MsgQueue<T> {
         return queue.drainTo(c);
     }
 
+    public void countDropped() {
+        dropped.incrementAndGet();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
     public int size() {
         return queue.size();
     }
@@ -0,0 +1,96 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import com.abissell.cempaka.data.Ccy;
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+
+import quickfix.UtcTimestampPrecision;
+import quickfix.fix42.NewOrderSingle;
+
+/*
+ * A NewOrderSingle prebuilt for one CcyPair and Side, with the fields that
+ * are the same on every order already set. Each send overwrites only
+ * ClOrdID, TransactTime, OrderQty and Price, plus Currency and TimeInForce
+ * when they differ from the last order sent from this template.
+ *
+ * The session sets the header fields again on every send, so the same
+ * message can go out repeatedly. Not thread safe: orders are only sent
+ * from the trading loop.
+ */
+final class NewOrderTemplate {
+    final CcyPair ccyPair;
+    final Side side;
+    private final NewOrderSingle msg;
+    private Ccy currency;
+    private TimeInForce timeInForce;
+
+    NewOrderTemplate(CcyPair ccyPair, Side side, quickfix.field.Symbol symbol,
+            quickfix.field.Side sideField, quickfix.field.HandlInst handlInst,
+            quickfix.field.OrdType ordType) {
+        this.ccyPair = ccyPair;
+        this.side = side;
+        this.msg = new NewOrderSingle();
+        msg.set(handlInst);
+        msg.set(symbol);
+        msg.set(sideField);
+        msg.set(ordType);
+    }
+
+    static int index(CcyPair ccyPair, Side side) {
+        int sideIdx = switch (side) {
+            case BUY -> 0;
+            case SELL -> 1;
+            default -> throw new IllegalArgumentException("No NewOrderTemplate for side " + side);
+        };
+        return ccyPair.ordinal() * 2 + sideIdx;
+    }
+
+    static int size() {
+        return CcyPair.values().length * 2;
+    }
+
+    Ccy currency() {
+        return currency;
+    }
+
+    void setCurrency(Ccy ccy, quickfix.field.Currency currencyField) {
+        msg.set(currencyField);
+        currency = ccy;
+    }
+
+    NewOrderSingle fill(Order order) {
+        if (order.tradeable() != ccyPair || order.side() != side) {
+            throw new IllegalArgumentException("Order " + order + " does not match template for " + ccyPair + " " + side);
+        }
+        msg.setString(quickfix.field.ClOrdID.FIELD, order.idStr());
+        // Same precision as new quickfix.field.TransactTime(LocalDateTime)
+        msg.setUtcTimeStamp(quickfix.field.TransactTime.FIELD, order.sentTime().fieldVal(),
+                UtcTimestampPrecision.MILLIS);
+        msg.setDouble(quickfix.field.OrderQty.FIELD, order.qty().qty());
+        msg.setDouble(quickfix.field.Price.FIELD, order.px().px());
+        if (order.timeInForce() != timeInForce) {
+            msg.setChar(quickfix.field.TimeInForce.FIELD, order.timeInForce().fixChar);
+            timeInForce = order.timeInForce();
+        }
+        return msg;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.javautil.rusty.Result;
+import com.abissell.logutil.Log;
+import com.abissell.cempaka.data.FixErr;
+import com.abissell.cempaka.data.QFJRes;
+import com.abissell.cempaka.util.CpuAffinity;
+import com.abissell.cempaka.util.DstSet;
+import com.abissell.cempaka.util.IdleStrategy;
+import com.abissell.fixbridge.Order;
+
+import quickfix.Message;
+
+/*
+ * Takes socket writes off the trading loop. The loop publishes messages it
+ * will not touch again into an SpscRing, and a dedicated writer thread hands
+ * each in turn to the session, which takes QuickFIX/J's session lock, writes
+ * the message store and the socket. Failed sends are offered to a MsgQueue
+ * the loop drains, so only the writer ever waits on a slow send, and a
+ * successful one allocates nothing past the Outbound it was published in.
+ *
+ * The writer idles and is pinned separately from the loop (see
+ * TradingLoopConfig), since sends are rare next to market data and a busy
+ * spinning writer would take a core for little gain.
+ *
+ * publish() must only be called from one thread, the trading loop.
+ */
+public final class OutboundWriter {
+    static final String THREAD_NAME = "cempaka-outbound-writer";
+
+    private /* value */ record Outbound(Message msg, List<Order> orders) { }
+
+    private final SpscRing<Outbound> ring;
+    private final MsgQueue<SendResult> results;
+    private final IdleStrategy idleStrategy;
+    private final Opt<Integer> cpu;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public OutboundWriter(int capacity, MsgQueue<SendResult> results, IdleStrategy idleStrategy, Opt<Integer> cpu) {
+        this.ring = new SpscRing<>(capacity);
+        this.results = results;
+        this.idleStrategy = idleStrategy;
+        this.cpu = cpu;
+    }
+
+    // Called from the session's start(), so at most one writer thread runs
+    synchronized void start(Function<Message, Result<QFJRes, FixErr>> sender) {
+        if (running) {
+            return;
+        }
+        // Anything published as the last writer stopped is stale by now
+        failUnsent();
+        running = true;
+        thread = new Thread(() -> write(sender), THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Waits for any send in flight; messages not yet sent are reported as failed
+    synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Interrupted waiting for " + THREAD_NAME + " to stop");
+        }
+    }
+
+    /*
+     * @param msg must not be modified after it is published
+     * @return false if the writer is stopped or the ring is full
+     */
+    boolean publish(Message msg, List<Order> orders) {
+        return running && ring.offer(new Outbound(msg, orders));
+    }
+
+    int pending() {
+        return ring.size();
+    }
+
+    private void write(Function<Message, Result<QFJRes, FixErr>> sender) {
+        cpu.ifPresent(CpuAffinity::pinCurrentThread);
+        Log.INFO.to(DstSet.APP_STD_OUT, THREAD_NAME + " running with idle strategy " + idleStrategy);
+        while (running) {
+            var outbound = ring.poll();
+            if (outbound == null) {
+                idleStrategy.idle(0);
+                continue;
+            }
+            Result<QFJRes, FixErr> result;
+            try {
+                result = sender.apply(outbound.msg());
+            } catch (RuntimeException e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, THREAD_NAME + " caught exception sending " + outbound.msg() + ": " + e);
+                result = Result.err(FixErr.CRITICAL_ERROR);
+            }
+            if (!SendResult.succeeded(result)) {
+                results.offer(new SendResult(outbound.orders(), result));
+            }
+            idleStrategy.idle(1);
+        }
+        failUnsent();
+    }
+
+    // Only called by the ring's consumer, the writer thread or start() once it has exited
+    private void failUnsent() {
+        Outbound unsent;
+        while ((unsent = ring.poll()) != null) {
+            results.offer(new SendResult(unsent.orders(), Result.err(FixErr.SESSION_NOT_FOUND)));
+        }
+    }
+}
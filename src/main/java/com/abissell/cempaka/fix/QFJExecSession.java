@@ -17,12 +17,18 @@
  */
 package com.abissell.cempaka.fix;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.abissell.javautil.rusty.None;
+import com.abissell.javautil.rusty.Opt;
 import com.abissell.javautil.rusty.Result;
 import com.abissell.javautil.rusty.Some;
 import com.abissell.logutil.Log;
@@ -40,7 +46,9 @@ import com.abissell.fixbridge.CumQty;
 import com.abissell.fixbridge.ExecID;
 import com.abissell.fixbridge.ExecSessionBridge;
 import com.abissell.fixbridge.ExecTransType;
+import com.abissell.fixbridge.ExecReportView;
 import com.abissell.fixbridge.ExecType;
+import com.abissell.fixbridge.FixDecoder;
 import com.abissell.fixbridge.FixField;
 import com.abissell.fixbridge.FixFieldVal;
 import com.abissell.fixbridge.HandlInst;
@@ -52,6 +60,7 @@ import com.abissell.fixbridge.OrdStatus;
 import com.abissell.fixbridge.OrdType;
 import com.abissell.fixbridge.Order;
 import com.abissell.fixbridge.OrderID;
+import com.abissell.fixbridge.OrderPairResult;
 import com.abissell.fixbridge.OrderQty;
 import com.abissell.fixbridge.OrdrCxlReq;
 import com.abissell.fixbridge.OrigClOrdrID;
@@ -68,12 +77,19 @@ import quickfix.Application;
 import quickfix.ConfigError;
 import quickfix.DoNotSend;
 import quickfix.FieldNotFound;
+import quickfix.Group;
 import quickfix.Message;
-import quickfix.NoopStoreFactory;
 import quickfix.SLF4JLogFactory;
 import quickfix.SessionID;
 import quickfix.SessionSettings;
 import quickfix.SocketInitiator;
+import quickfix.UtcTimestampPrecision;
+import quickfix.field.LegPrice;
+import quickfix.field.LegQty;
+import quickfix.field.LegRefID;
+import quickfix.field.LegSide;
+import quickfix.field.LegSymbol;
+import quickfix.field.NoLegs;
 import quickfix.field.Password;
 import quickfix.field.Symbol;
 import quickfix.fix42.ExecutionReport;
@@ -83,23 +99,38 @@ import quickfix.fix42.OrderCancelRequest;
 import quickfix.fix42.TradingSessionStatus;
 
 public final class QFJExecSession implements Application, ExecSessionBridge<QFJRes, FixErr> {
+    public static final String JOURNAL_NAME = "exec";
     private static final quickfix.field.OrdType LIMIT_ORD_TYPE = new quickfix.field.OrdType(OrdType.LIMIT.fixChar);
+    private static final int[] LEG_FIELD_ORDER = {
+        LegSymbol.FIELD, LegSide.FIELD, LegQty.FIELD, LegRefID.FIELD, LegPrice.FIELD, 0 };
 
     private final BaseQFJApplication baseQFJApp;
     private final BaseQFJSession baseSession;
     private final MsgQueue<ParsedFixMsg> msgQueue;
+    private final MsgQueue<ExecReportView> execReportQueue;
+    private final ViewPool<ExecReportView> execReportPool;
     private final Supplier<LocalDateTime> timestampSrc;
+    // When present, orders are sent by its thread rather than the caller's
+    private final Opt<OutboundWriter> outboundWriter;
+    // When present, every inbound application message is journaled to it
+    private final Opt<InboundJournal> journal;
 
     private final quickfix.field.HandlInst HANDL_INST = new quickfix.field.HandlInst(
             HandlInst.AUTOMATED_EXECUTION_ORDER_PRIVATE_NO_BROKER_INTERVENTION.fixChar);
+    // Built on the first order for each CcyPair and Side
+    private final NewOrderTemplate[] newOrderTemplates = new NewOrderTemplate[NewOrderTemplate.size()];
 
     public QFJExecSession(
             SessionSettings sessionSettings,
             MsgQueue<ParsedFixMsg> msgQueue,
+            MsgQueue<ExecReportView> execReportQueue,
+            ViewPool<ExecReportView> execReportPool,
+            Opt<OutboundWriter> outboundWriter,
+            Opt<InboundJournal> journal,
             Supplier<LocalDateTime> timestampSrc) throws ConfigError {
         var sessionType = FixSessionType.EXECUTION;
         baseQFJApp = new BaseQFJApplication(sessionSettings);
-        var messageStoreFactory = new NoopStoreFactory();
+        var messageStoreFactory = new MappedStoreFactory(sessionSettings);
         var logFactory = new SLF4JLogFactory(sessionSettings);
         MessageFactory messageFactory = new quickfix.fix42.MessageFactory();
 
@@ -108,17 +139,150 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
                 sessionType);
 
         this.msgQueue = msgQueue;
+        this.execReportQueue = execReportQueue;
+        this.execReportPool = execReportPool;
+        this.outboundWriter = outboundWriter;
+        this.journal = journal;
         this.timestampSrc = timestampSrc;
     }
 
+    /*
+     * Passes each ExecutionReport journaled on the day to handler, decoded
+     * into one reused view, so must be called before the session starts.
+     *
+     * @return the number of ExecutionReports replayed
+     */
+    public int replayJournal(Path dir, LocalDate day, Consumer<ExecReportView> handler) throws IOException {
+        var view = new ExecReportView();
+        int[] count = new int[1];
+        InboundJournal.replay(dir, JOURNAL_NAME, day, (raw, recvdTime) -> {
+            if (FixDecoder.msgType(raw) == MsgType.EXECUTION_REPORT) {
+                handler.accept(baseQFJApp.decoder().decode(raw, recvdTime, view));
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /*
+     * With an OutboundWriter, a copy of the message is published and the
+     * result only says whether it was queued; a failed send's result comes
+     * back later as a SendResult. Templates are refilled for the next order
+     * while the writer may still be sending, hence the copy. It costs a
+     * Message and its field maps per send, which the writer thread then
+     * owns, rather than a pool the two threads would have to hand back and
+     * forth.
+     */
+    private Result<QFJRes, FixErr> sendOrders(Message msg, List<Order> orders) {
+        if (outboundWriter.isNone()) {
+            return baseSession.send(msg);
+        }
+        if (outboundWriter.get().publish((Message) msg.clone(), orders)) {
+            return Result.of(new QFJRes(true));
+        }
+        Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                "Outbound writer was stopped or full, could not send orders " + orders);
+        return Result.of(new QFJRes(false));
+    }
+
+    // Only called from the trading loop, which owns the templates
     public Result<QFJRes, FixErr> sendNewOrderSingle(Order order) {
         if (!baseSession.loggedOn()) {
             Log.ERROR.to(DstSet.APP_STD_OUT, "Tried to send order but no execution session was logged on!");
             return Result.err(FixErr.SESSION_NOT_FOUND);
         }
 
+        var prepared = prepareTemplate(order);
+        if (!succeeded(prepared)) {
+            return prepared;
+        }
+        return sendOrders(templateFor(order).fill(order), List.of(order));
+    }
+
+    /*
+     * QuickFIX/J writes each message separately, so both legs are filled
+     * before the first is sent, leaving only the second's serialization
+     * and write between them.
+     */
+    public OrderPairResult<QFJRes, FixErr> sendNewOrderSingles(Order first, Order second) {
+        if (!baseSession.loggedOn()) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Tried to send orders but no execution session was logged on!");
+            return new OrderPairResult<>(Result.err(FixErr.SESSION_NOT_FOUND), Opt.none());
+        }
+        if (templateFor(first) != null && templateFor(first) == templateFor(second)) {
+            // Both legs would fill the same message
+            var firstResult = sendNewOrderSingle(first);
+            return succeeded(firstResult) ?
+                new OrderPairResult<>(firstResult, Opt.of(sendNewOrderSingle(second)))
+                : new OrderPairResult<>(firstResult, Opt.none());
+        }
+
+        var firstPrepared = prepareTemplate(first);
+        if (!succeeded(firstPrepared)) {
+            return new OrderPairResult<>(firstPrepared, Opt.none());
+        }
+        var secondPrepared = prepareTemplate(second);
+        var firstMsg = templateFor(first).fill(first);
+        var secondMsg = succeeded(secondPrepared) ? templateFor(second).fill(second) : null;
+
+        var firstResult = sendOrders(firstMsg, List.of(first));
+        if (!succeeded(firstResult)) {
+            return new OrderPairResult<>(firstResult, Opt.none());
+        }
+        var secondResult = secondMsg != null ? sendOrders(secondMsg, List.of(second)) : secondPrepared;
+        return new OrderPairResult<>(firstResult, Opt.of(secondResult));
+    }
+
+    private static boolean succeeded(Result<QFJRes, FixErr> result) {
+        return result.map(QFJRes::success).orElse(false);
+    }
+
+    private NewOrderTemplate templateFor(Order order) {
+        return newOrderTemplates[NewOrderTemplate.index((CcyPair) order.tradeable(), order.side())];
+    }
+
+    // Leaves the order's template built and set to its Currency, or returns the error
+    private Result<QFJRes, FixErr> prepareTemplate(Order order) {
         var ccyPair = (CcyPair) order.tradeable();
-        quickfix.field.Symbol symbol;
+        var template = templateFor(order);
+        if (template == null) {
+            var initResult = initNewOrderTemplate(ccyPair, order.side());
+            template = templateFor(order);
+            if (template == null) {
+                return initResult;
+            }
+        }
+
+        var base = (Ccy) order.base();
+        if (base != template.currency()) {
+            switch (baseQFJApp.getCachedCcy(base)) {
+                case Some<quickfix.field.Currency>(quickfix.field.Currency c) -> template.setCurrency(base, c);
+                case None<quickfix.field.Currency>() -> {
+                    Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Currency for Ccy " + base);
+                    return Result.err(FixErr.CACHED_FIELD_NOT_FOUND);
+                }
+                default -> { return criticalError(); }
+            }
+        }
+        return Result.of(new QFJRes(true));
+    }
+
+    /*
+     * The FIX 4.2 message classes have no NewOrderMultileg, so it is built
+     * as a generic Message with the FIX 4.4 layout FixEncoder also writes.
+     * Venue-specific, so not worth a template.
+     */
+    public Result<QFJRes, FixErr> sendNewOrderMultileg(Order first, Order second) {
+        if (!baseSession.loggedOn()) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Tried to send multileg order but no execution session was logged on!");
+            return Result.err(FixErr.SESSION_NOT_FOUND);
+        }
+        var ccyPair = (CcyPair) first.tradeable();
+        if (!ccyPair.equals(second.tradeable())) {
+            throw new IllegalArgumentException("Legs must share a tradeable: " + first + ", " + second);
+        }
+
+        final quickfix.field.Symbol symbol;
         switch (baseQFJApp.getCachedCcyPair(ccyPair)) {
             case Some<quickfix.field.Symbol>(quickfix.field.Symbol s) -> symbol = s;
             case None<quickfix.field.Symbol>() -> {
@@ -128,42 +292,70 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
             default -> { return criticalError(); }
         }
 
-        var side = order.side();
-        final quickfix.field.Side sideField;
-        switch (baseQFJApp.getCachedSide(side)) {
-            case Some<quickfix.field.Side>(quickfix.field.Side s) -> sideField = s;
-            case None<quickfix.field.Side>() -> {
-                Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Side for Side " + side);
+        var base = (Ccy) first.base();
+        final quickfix.field.Currency currency;
+        switch (baseQFJApp.getCachedCcy(base)) {
+            case Some<quickfix.field.Currency>(quickfix.field.Currency c) -> currency = c;
+            case None<quickfix.field.Currency>() -> {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Currency for Ccy " + base);
                 return Result.err(FixErr.CACHED_FIELD_NOT_FOUND);
             }
             default -> { return criticalError(); }
         }
 
-        NewOrderSingle newOrder = new NewOrderSingle(
-                new quickfix.field.ClOrdID(order.idStr()),
-                HANDL_INST,
-                symbol,
-                sideField,
-                new quickfix.field.TransactTime(order.sentTime().fieldVal()),
-                LIMIT_ORD_TYPE);
+        var multileg = new Message();
+        multileg.getHeader().setString(quickfix.field.MsgType.FIELD, MsgType.NEW_ORDER_MULTILEG.fixStr);
+        multileg.setString(quickfix.field.ClOrdID.FIELD, first.idStr());
+        multileg.setField(HANDL_INST);
+        multileg.setField(currency);
+        multileg.setField(symbol);
+        multileg.setChar(quickfix.field.Side.FIELD, Side.AS_DEFINED.fixChar);
+        multileg.setUtcTimeStamp(quickfix.field.TransactTime.FIELD, first.sentTime().fieldVal(),
+                UtcTimestampPrecision.MILLIS);
+        multileg.setField(LIMIT_ORD_TYPE);
+        multileg.setChar(quickfix.field.TimeInForce.FIELD, first.timeInForce().fixChar);
+        multileg.addGroup(leg(first));
+        multileg.addGroup(leg(second));
+        return sendOrders(multileg, List.of(first, second));
+    }
 
-        var base = (Ccy) order.base();
-        switch (baseQFJApp.getCachedCcy(base)) {
-            case Some<quickfix.field.Currency>(quickfix.field.Currency c) -> newOrder.set(c);
-            case None<quickfix.field.Currency>() -> {
-                Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Currency for Ccy " + base);
+    private static Group leg(Order order) {
+        var leg = new Group(NoLegs.FIELD, LegSymbol.FIELD, LEG_FIELD_ORDER);
+        leg.setString(LegSymbol.FIELD, order.tradeable().symbol());
+        leg.setChar(LegSide.FIELD, order.side().fixChar);
+        leg.setDouble(LegQty.FIELD, order.qty().qty());
+        leg.setString(LegRefID.FIELD, order.idStr());
+        leg.setDouble(LegPrice.FIELD, order.px().px());
+        return leg;
+    }
+
+    private Result<QFJRes, FixErr> initNewOrderTemplate(CcyPair ccyPair, Side side) {
+        quickfix.field.Symbol symbol;
+        switch (baseQFJApp.getCachedCcyPair(ccyPair)) {
+            case Some<quickfix.field.Symbol>(quickfix.field.Symbol s) -> symbol = s;
+            case None<quickfix.field.Symbol>() -> {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Symbol for CcyPair " + ccyPair);
                 return Result.err(FixErr.CACHED_FIELD_NOT_FOUND);
             }
             default -> { return criticalError(); }
         }
 
-        newOrder.set(new quickfix.field.OrderQty(order.qty().qty()));
-        newOrder.set(new quickfix.field.Price(order.px().px()));
-        newOrder.set(new quickfix.field.TimeInForce(order.timeInForce().fixChar));
+        final quickfix.field.Side sideField;
+        switch (baseQFJApp.getCachedSide(side)) {
+            case Some<quickfix.field.Side>(quickfix.field.Side s) -> sideField = s;
+            case None<quickfix.field.Side>() -> {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Couldn't find cached quickfix.field.Side for Side " + side);
+                return Result.err(FixErr.CACHED_FIELD_NOT_FOUND);
+            }
+            default -> { return criticalError(); }
+        }
 
-        return baseSession.send(newOrder);
+        newOrderTemplates[NewOrderTemplate.index(ccyPair, side)] =
+            new NewOrderTemplate(ccyPair, side, symbol, sideField, HANDL_INST, LIMIT_ORD_TYPE);
+        return Result.of(new QFJRes(true));
     }
 
+    // Cancels come from the console thread, so never go through the OutboundWriter
     public Result<QFJRes, FixErr> sendOrderCancelRequest(OrdrCxlReq request) {
         if (!baseSession.loggedOn()) {
             Log.ERROR
@@ -273,6 +465,16 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
             }
             case OrderCancelRequest cancel -> {
             }
+            case Message multileg when isNewOrderMultileg(multileg) -> {
+                if (possDupFlag) {
+                    Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                            "Suppressing resend on NewOrderMultileg with PossDupFlag set to true! Message:");
+                    Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(), multileg);
+                    throw new DoNotSend();
+                }
+                Log.DEBUG.to(DstSet.APP_STD_OUT, baseSession.logPrefix(), "Sending NewOrderMultileg:");
+                Log.DEBUG.to(DstSet.APP_STD_OUT, baseSession.logPrefix(), multileg);
+            }
             default -> {
                 Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
                         "toApp saw unrecognized message of type: " + message.getClass() + ", Message:");
@@ -281,11 +483,21 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
         }
     }
 
+    private static boolean isNewOrderMultileg(Message message) {
+        try {
+            return MsgType.NEW_ORDER_MULTILEG.fixStr.equals(message.getHeader().getString(quickfix.field.MsgType.FIELD));
+        } catch (FieldNotFound e) {
+            return false;
+        }
+    }
+
     @Override
     public void fromApp(Message message, SessionID sessionID) {
+        var recvdTime = timestampSrc.get();
+        journal.ifPresent(j -> j.append(message, recvdTime));
         switch (message) {
-            case ExecutionReport er -> onExecutionReport(er);
-            case TradingSessionStatus tss -> onTradingSessionStatus(tss);
+            case ExecutionReport er -> onExecutionReport(er, recvdTime);
+            case TradingSessionStatus tss -> onTradingSessionStatus(tss, recvdTime);
             default -> Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
                     "Unrecognized fromApp message of type: " + message.getClass() + ", message:\n" + message);
         }
@@ -317,13 +529,27 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
         }
     }
 
-    private void onExecutionReport(ExecutionReport executionReport) {
-        var fields = read(executionReport);
-        var parsedFixMsg = new ParsedFixMsg(fields, timestampSrc.get());
-        msgQueue.offer(parsedFixMsg);
+    private void onExecutionReport(ExecutionReport executionReport, LocalDateTime recvdTime) {
+        var view = read(executionReport, recvdTime, execReportPool.claim());
+        if (!execReportQueue.offer(view)) {
+            execReportPool.recycle(view);
+        }
+    }
+
+    private ExecReportView read(ExecutionReport executionReport, LocalDateTime recvdTime, ExecReportView into) {
+        var raw = executionReport.toRawString();
+        if (raw != null) {
+            try {
+                return baseQFJApp.decoder().decode(raw, recvdTime, into);
+            } catch (Exception e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                        "Could not decode raw ExecutionReport, reading from the QFJ Message: " + e.getMessage());
+            }
+        }
+        return into.load(readMessage(executionReport), recvdTime);
     }
 
-    private EnumMap<FixField, FixFieldVal> read(ExecutionReport executionReport) {
+    private EnumMap<FixField, FixFieldVal> readMessage(ExecutionReport executionReport) {
         var fields = new EnumMap<FixField, FixFieldVal>(FixField.class);
         try {
             baseQFJApp.readHeaderFields(executionReport, fields);
@@ -380,14 +606,16 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
         }
     }
 
-    private void onTradingSessionStatus(TradingSessionStatus tss) {
+    private void onTradingSessionStatus(TradingSessionStatus tss, LocalDateTime recvdTime) {
         var fields = baseQFJApp.onTradingSessionStatus(tss, baseSession.logPrefix());
-        msgQueue.offer(new ParsedFixMsg(fields, timestampSrc.get()));
+        msgQueue.offer(new ParsedFixMsg(fields, recvdTime));
     }
 
     @Override
     public Result<QFJRes, FixErr> start() {
-        return baseSession.start();
+        var result = baseSession.start();
+        outboundWriter.ifPresent(writer -> writer.start(baseSession::send));
+        return result;
     }
 
     @Override
@@ -397,11 +625,12 @@ public final class QFJExecSession implements Application, ExecSessionBridge<QFJR
 
     @Override
     public void stop() {
-        baseSession.stop();
+        stop(false);
     }
 
     @Override
     public void stop(boolean forceDisconnect) {
+        outboundWriter.ifPresent(OutboundWriter::stop);
         baseSession.stop(forceDisconnect);
     }
 
@@ -21,8 +21,11 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.function.Supplier;
 
+import com.abissell.javautil.rusty.Opt;
 import com.abissell.javautil.rusty.Result;
 import com.abissell.logutil.Log;
 import com.abissell.cempaka.data.FixErr;
@@ -37,9 +40,15 @@ import com.abissell.fixbridge.MDEntry;
 import com.abissell.fixbridge.MDEntryPx;
 import com.abissell.fixbridge.MDEntrySize;
 import com.abissell.fixbridge.MDEntryType;
+import com.abissell.fixbridge.MDIncEntries;
+import com.abissell.fixbridge.MDIncEntry;
 import com.abissell.fixbridge.MDReqID;
+import com.abissell.fixbridge.MDUpdateAction;
+import com.abissell.fixbridge.MDUpdateType;
+import com.abissell.fixbridge.MdSnapshotView;
 import com.abissell.fixbridge.MktDataSessionBridge;
 import com.abissell.fixbridge.MktDataSubscriptionReq;
+import com.abissell.fixbridge.MsgType;
 import com.abissell.fixbridge.NoMDEntries;
 import com.abissell.fixbridge.ParsedFixMsg;
 import com.abissell.fixbridge.SubscriptionRequestType;
@@ -50,30 +59,57 @@ import quickfix.ConfigError;
 import quickfix.DoNotSend;
 import quickfix.FieldNotFound;
 import quickfix.Message;
-import quickfix.NoopStoreFactory;
 import quickfix.SLF4JLogFactory;
 import quickfix.SessionID;
 import quickfix.SessionSettings;
 import quickfix.SocketInitiator;
+import quickfix.fix42.MarketDataIncrementalRefresh;
 import quickfix.fix42.MarketDataRequest;
 import quickfix.fix42.MarketDataSnapshotFullRefresh;
 import quickfix.fix42.TradingSessionStatus;
 
 public final class QFJMktDataSession implements Application, MktDataSessionBridge<QFJRes, FixErr> {
+    public static final String JOURNAL_NAME = "mktdata";
+
     private final BaseQFJApplication baseQFJApp;
     private final BaseQFJSession baseSession;
     private final MsgQueue<ParsedFixMsg> msgQueue;
+    private final ConflatingMailbox<MdSnapshotView> snapshotMailbox;
+    private final ViewPool<MdSnapshotView> snapshotPool;
     private final Supplier<LocalDateTime> timestampSrc;
+    // When present, every inbound application message is journaled to it
+    private final Opt<InboundJournal> journal;
+    // Whether each message is also rendered as text to the MktData log
+    private final boolean textLog;
+    // Snapshots can only be conflated when no increments are applied on top
+    // of them, otherwise they must stay in order in msgQueue
+    private volatile boolean conflateSnapshots = true;
+
+    // Hash of the MDEntries last enqueued per CcyPair ordinal, 0 if unknown.
+    // Only touched from the QFJ session thread.
+    private final long[] lastSnapshotHashes = new long[CcyPair.values().length];
+    // Set by read(MarketDataSnapshotFullRefresh), 0 if it did not read the whole message
+    private long readEntriesHash;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
 
     public QFJMktDataSession(
             SessionSettings sessionSettings,
             MsgQueue<ParsedFixMsg> msgQueue,
+            ConflatingMailbox<MdSnapshotView> snapshotMailbox,
+            ViewPool<MdSnapshotView> snapshotPool,
+            Opt<InboundJournal> journal,
+            boolean textLog,
             Supplier<LocalDateTime> timestampSrc) throws ConfigError {
         this.baseQFJApp = new BaseQFJApplication(sessionSettings);
         this.msgQueue = msgQueue;
+        this.snapshotMailbox = snapshotMailbox;
+        this.snapshotPool = snapshotPool;
+        this.journal = journal;
+        this.textLog = textLog;
         this.timestampSrc = timestampSrc;
 
-        var messageStoreFactory = new NoopStoreFactory();
+        var messageStoreFactory = new MappedStoreFactory(sessionSettings);
         var logFactory = new SLF4JLogFactory(sessionSettings);
         var messageFactory = new quickfix.fix42.MessageFactory();
 
@@ -95,9 +131,10 @@ public final class QFJMktDataSession implements Application, MktDataSessionBridg
                 new quickfix.field.MDReqID(request.mdReqID().id()),
                 new quickfix.field.SubscriptionRequestType(request.subReqType().fixChar),
                 new quickfix.field.MarketDepth(request.marketDepth().depth()));
-        qfjRequest.set(new quickfix.field.MDUpdateType(quickfix.field.MDUpdateType.FULL_REFRESH));
+        qfjRequest.set(new quickfix.field.MDUpdateType(request.updateType().fixInt()));
 
         request.minQty().ifPresent(minQty -> qfjRequest.setField(new quickfix.field.MinQty(minQty.minQty())));
+        conflateSnapshots = request.updateType() == MDUpdateType.FULL_REFRESH;
 
         MarketDataRequest.NoMDEntryTypes noMDEntryTypes = new MarketDataRequest.NoMDEntryTypes();
         noMDEntryTypes.set(new quickfix.field.MDEntryType(quickfix.field.MDEntryType.BID));
@@ -191,24 +228,113 @@ public final class QFJMktDataSession implements Application, MktDataSessionBridg
 
     @Override
     public void fromApp(Message message, SessionID sessionID) {
+        var recvdTime = timestampSrc.get();
+        journal.ifPresent(j -> j.append(message, recvdTime));
         switch (message) {
-            case MarketDataSnapshotFullRefresh snapshotRefresh -> onSnapshotRefresh(snapshotRefresh);
-            case TradingSessionStatus status -> onTradingSessionStatus(status);
+            case MarketDataSnapshotFullRefresh snapshotRefresh -> onSnapshotRefresh(snapshotRefresh, recvdTime);
+            case MarketDataIncrementalRefresh incRefresh -> onIncrementalRefresh(incRefresh, recvdTime);
+            case TradingSessionStatus status -> onTradingSessionStatus(status, recvdTime);
             default -> Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
                     "Unrecognized fromApp message of type: " + message.getClass() + ", message:\n" + message);
         }
     }
 
-    private void onSnapshotRefresh(MarketDataSnapshotFullRefresh snapshot) {
+    private void onSnapshotRefresh(MarketDataSnapshotFullRefresh snapshot, LocalDateTime recvdTime) {
+        if (conflateSnapshots) {
+            onConflatableSnapshot(snapshot, recvdTime);
+            return;
+        }
+
         var fields = read(snapshot);
-        var parsedFixMsg = new ParsedFixMsg(fields, timestampSrc.get());
-        msgQueue.offer(parsedFixMsg);
-        if (!parsedFixMsg.isPossDup()) {
+        var parsedFixMsg = new ParsedFixMsg(fields, recvdTime);
+        // Books ignore possible duplicates, as in onConflatableSnapshot()
+        if (parsedFixMsg.isPossDup()) {
+            return;
+        }
+
+        // Venues resend identical snapshots, which would leave the book as is.
+        // CHECK_SUM is only present if read() got through the whole message.
+        if (fields.get(FixField.SYMBOL) instanceof CcyPair ccyPair
+                && fields.containsKey(FixField.CHECK_SUM)) {
+            var hash = readEntriesHash;
+            if (hash == lastSnapshotHashes[ccyPair.ordinal()]) {
+                msgQueue.countDropped();
+            } else {
+                var offered = msgQueue.offer(parsedFixMsg);
+                lastSnapshotHashes[ccyPair.ordinal()] = offered ? hash : 0L;
+            }
+        } else {
+            msgQueue.offer(parsedFixMsg);
+        }
+        if (textLog) {
+            Log.INFO.to(DstSet.MKT_DATA, snapshot::toString);
+        }
+    }
+
+    // With no increments to order against, only the latest snapshot per
+    // CcyPair is kept, decoded into a pooled view
+    private void onConflatableSnapshot(MarketDataSnapshotFullRefresh snapshot, LocalDateTime recvdTime) {
+        var view = read(snapshot, recvdTime, snapshotPool.claim());
+        // Books ignore possible duplicates, and one must not replace a real
+        // snapshot waiting in the mailbox. Not counted as dropped, which is
+        // only for identical snapshots (see CcyPairTrader.printQueueStats).
+        if (view.isPossDup()) {
+            snapshotPool.recycle(view);
+            return;
+        }
+
+        if (view.symbol() instanceof CcyPair ccyPair) {
+            var hash = view.has(FixField.CHECK_SUM) ? entriesHash(view) : 0L;
+            if (hash != 0L && hash == lastSnapshotHashes[ccyPair.ordinal()]) {
+                snapshotPool.recycle(view);
+                msgQueue.countDropped();
+            } else {
+                var replaced = snapshotMailbox.put(ccyPair.ordinal(), view);
+                if (replaced != null) {
+                    snapshotPool.recycle(replaced);
+                }
+                lastSnapshotHashes[ccyPair.ordinal()] = hash;
+            }
+        } else {
+            Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                    "Dropping MarketDataSnapshotFullRefresh without a known Symbol: " + view);
+            snapshotPool.recycle(view);
+        }
+        if (textLog) {
             Log.INFO.to(DstSet.MKT_DATA, snapshot::toString);
         }
     }
 
+    private MdSnapshotView read(MarketDataSnapshotFullRefresh snapshot, LocalDateTime recvdTime, MdSnapshotView into) {
+        var raw = snapshot.toRawString();
+        if (raw != null) {
+            try {
+                return baseQFJApp.decoder().decode(raw, recvdTime, into);
+            } catch (Exception e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                        "Could not decode raw MarketDataSnapshotFullRefresh, reading from the QFJ Message: " + e.getMessage());
+            }
+        }
+        return into.load(readMessage(snapshot), recvdTime);
+    }
+
     private EnumMap<FixField, FixFieldVal> read(MarketDataSnapshotFullRefresh snapshot) {
+        readEntriesHash = 0L;
+        var raw = snapshot.toRawString();
+        if (raw != null) {
+            try {
+                var map = baseQFJApp.decoder().decode(raw);
+                readEntriesHash = entriesHash(((MDEntries) map.get(FixField.MD_ENTRIES)).entries());
+                return map;
+            } catch (Exception e) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                        "Could not decode raw MarketDataSnapshotFullRefresh, reading from the QFJ Message: " + e.getMessage());
+            }
+        }
+        return readMessage(snapshot);
+    }
+
+    private EnumMap<FixField, FixFieldVal> readMessage(MarketDataSnapshotFullRefresh snapshot) {
         var map = new EnumMap<FixField, FixFieldVal>(FixField.class);
         try {
             map = baseQFJApp.readHeaderFields(snapshot, map);
@@ -222,7 +348,6 @@ public final class QFJMktDataSession implements Application, MktDataSessionBridg
             map.put(FixField.NO_MD_ENTRIES, noMDEntries);
             var mdEntriesList = new ArrayList<MDEntry>(numEntries);
             for (int i = 0; i < numEntries; i++) {
-                // TODO: Can we read this without creating the Group object?
                 var group = new quickfix.fix42.MarketDataSnapshotFullRefresh.NoMDEntries();
                 final var groupIdx = i + 1;
                 snapshot.getGroup(groupIdx, group);
@@ -234,6 +359,7 @@ public final class QFJMktDataSession implements Application, MktDataSessionBridg
             var mdEntries = new MDEntries(mdEntriesList);
             map.put(FixField.MD_ENTRIES, mdEntries);
             baseQFJApp.readTrailerField(snapshot, map);
+            readEntriesHash = entriesHash(mdEntriesList);
         } catch (Exception e) {
             Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
                     "ERROR parsing MarketDataSnapshotFullRefresh: " + snapshot);
@@ -242,9 +368,135 @@ public final class QFJMktDataSession implements Application, MktDataSessionBridg
         return map;
     }
 
-    private void onTradingSessionStatus(TradingSessionStatus tss) {
+    private static long entriesHash(List<MDEntry> entries) {
+        long hash = mixHash(FNV_OFFSET_BASIS, entries.size());
+        for (var entry : entries) {
+            hash = mixHash(hash, entry.type().fixChar);
+            hash = mixHash(hash, Double.doubleToLongBits(entry.px().px()));
+            hash = mixHash(hash, Double.doubleToLongBits(entry.size().size()));
+        }
+        return hash;
+    }
+
+    // Must match entriesHash(List) for the same entries
+    private static long entriesHash(MdSnapshotView view) {
+        long hash = mixHash(FNV_OFFSET_BASIS, view.numEntries());
+        for (int i = 0; i < view.numEntries(); i++) {
+            hash = mixHash(hash, view.entryType(i).fixChar);
+            hash = mixHash(hash, Double.doubleToLongBits(view.entryPx(i)));
+            hash = mixHash(hash, Double.doubleToLongBits(view.entrySize(i)));
+        }
+        return hash;
+    }
+
+    // FNV-1a style, a word at a time
+    private static long mixHash(long hash, long val) {
+        return (hash ^ val) * FNV_PRIME;
+    }
+
+    private void onIncrementalRefresh(MarketDataIncrementalRefresh incRefresh, LocalDateTime recvdTime) {
+        var parsedFixMsgs = read(incRefresh, recvdTime);
+        for (var parsedFixMsg : parsedFixMsgs) {
+            // The book is moving away from the last snapshot seen
+            if (parsedFixMsg.get(FixField.SYMBOL) instanceof CcyPair ccyPair) {
+                lastSnapshotHashes[ccyPair.ordinal()] = 0L;
+            }
+            msgQueue.offer(parsedFixMsg);
+        }
+        if (textLog && !parsedFixMsgs.isEmpty() && !parsedFixMsgs.get(0).isPossDup()) {
+            Log.INFO.to(DstSet.MKT_DATA, incRefresh::toString);
+        }
+    }
+
+    /*
+     * An incremental refresh can carry entries for several symbols, so it is
+     * split into one ParsedFixMsg per symbol to keep each message scoped to
+     * a single MktDataBook. If any entry fails to parse none are applied,
+     * and each symbol it may have touched gets a failed increment instead,
+     * which leaves its book stale until the next full refresh.
+     */
+    private List<ParsedFixMsg> read(MarketDataIncrementalRefresh incRefresh, LocalDateTime recvdTime) {
+        EnumMap<FixField, FixFieldVal> headerMap;
+        try {
+            headerMap = baseQFJApp.readHeaderFields(incRefresh, new EnumMap<>(FixField.class));
+            if (incRefresh.isSetMDReqID()) {
+                headerMap.put(FixField.MD_REQ_ID, new MDReqID(incRefresh.getMDReqID().getValue()));
+            }
+            baseQFJApp.readTrailerField(incRefresh, headerMap);
+        } catch (Exception e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(),
+                    "ERROR parsing MarketDataIncrementalRefresh: " + incRefresh);
+            Log.ERROR.to(DstSet.APP_STD_OUT, baseSession.logPrefix(), e.getMessage());
+            return failedIncrements(EnumSet.allOf(CcyPair.class), recvdTime);
+        }
+        return readEntries(incRefresh, headerMap, recvdTime, baseSession.logPrefix());
+    }
+
+    static List<ParsedFixMsg> readEntries(MarketDataIncrementalRefresh incRefresh,
+            EnumMap<FixField, FixFieldVal> headerMap, LocalDateTime recvdTime, String logPrefix) {
+        var parsedFixMsgs = new ArrayList<ParsedFixMsg>(1);
+        var entriesBySymbol = new EnumMap<CcyPair, List<MDIncEntry>>(CcyPair.class);
+        CcyPair ccyPair = null;
+        try {
+            int numEntries = incRefresh.getNoMDEntries().getValue();
+            for (int i = 0; i < numEntries; i++) {
+                var group = new quickfix.fix42.MarketDataIncrementalRefresh.NoMDEntries();
+                final var groupIdx = i + 1;
+                incRefresh.getGroup(groupIdx, group);
+                // Symbol is only required when it differs from the previous entry's
+                if (group.isSetSymbol()) {
+                    ccyPair = CcyPair.from(group.getSymbol().getValue());
+                } else if (ccyPair == null) {
+                    throw new IllegalArgumentException("No Symbol on first MDEntry of incremental refresh");
+                }
+                var mdUpdateAction = MDUpdateAction.fromFixChar(group.getMDUpdateAction().getValue());
+                var mdEntryType = MDEntryType.fromFixChar(group.getMDEntryType().getValue());
+                var mdEntryPx = new MDEntryPx(group.getMDEntryPx().getValue());
+                var mdEntrySize = new MDEntrySize(group.isSetMDEntrySize() ? group.getMDEntrySize().getValue() : 0.0d);
+                entriesBySymbol.computeIfAbsent(ccyPair, __ -> new ArrayList<>())
+                    .add(new MDIncEntry(mdUpdateAction, mdEntryType, mdEntryPx, mdEntrySize));
+            }
+
+            entriesBySymbol.forEach((symbol, entries) -> {
+                var map = new EnumMap<>(headerMap);
+                map.put(FixField.SYMBOL, symbol);
+                map.put(FixField.NO_MD_ENTRIES, new NoMDEntries(entries.size()));
+                map.put(FixField.MD_INC_ENTRIES, new MDIncEntries(entries));
+                parsedFixMsgs.add(new ParsedFixMsg(map, recvdTime));
+            });
+        } catch (Exception e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, logPrefix,
+                    "ERROR parsing MarketDataIncrementalRefresh: " + incRefresh);
+            Log.ERROR.to(DstSet.APP_STD_OUT, logPrefix, e.getMessage());
+            var stalePairs = EnumSet.noneOf(CcyPair.class);
+            stalePairs.addAll(entriesBySymbol.keySet());
+            if (ccyPair != null) {
+                stalePairs.add(ccyPair);
+            }
+            return failedIncrements(stalePairs.isEmpty() ? EnumSet.allOf(CcyPair.class) : stalePairs, recvdTime);
+        }
+        return parsedFixMsgs;
+    }
+
+    private static List<ParsedFixMsg> failedIncrements(EnumSet<CcyPair> stalePairs, LocalDateTime recvdTime) {
+        var failed = new ArrayList<ParsedFixMsg>(stalePairs.size());
+        for (var stalePair : stalePairs) {
+            var map = new EnumMap<FixField, FixFieldVal>(FixField.class);
+            map.put(FixField.MSG_TYPE, MsgType.MARKET_DATA_INCREMENTAL_REFRESH);
+            map.put(FixField.SYMBOL, stalePair);
+            failed.add(new ParsedFixMsg(map, recvdTime));
+        }
+        return failed;
+    }
+
+    // An increment read() could not parse, carrying only its symbol
+    public static boolean isFailedIncrement(ParsedFixMsg msg) {
+        return msg.get(FixField.MD_INC_ENTRIES) == null;
+    }
+
+    private void onTradingSessionStatus(TradingSessionStatus tss, LocalDateTime recvdTime) {
         var fields = baseQFJApp.onTradingSessionStatus(tss, baseSession.logPrefix());
-        msgQueue.offer(new ParsedFixMsg(fields, timestampSrc.get()));
+        msgQueue.offer(new ParsedFixMsg(fields, recvdTime));
     }
 
     @Override
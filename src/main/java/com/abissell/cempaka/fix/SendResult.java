@@ -0,0 +1,38 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.util.List;
+
+import com.abissell.javautil.rusty.Result;
+import com.abissell.cempaka.data.FixErr;
+import com.abissell.cempaka.data.QFJRes;
+import com.abissell.fixbridge.Order;
+
+// The outcome of a message an OutboundWriter failed to send, with the orders it carried
+public /* value */ record SendResult(
+        List<Order> orders,
+        Result<QFJRes, FixErr> result) {
+    public boolean succeeded() {
+        return succeeded(result);
+    }
+
+    static boolean succeeded(Result<QFJRes, FixErr> result) {
+        return result.map(QFJRes::success).orElse(false);
+    }
+}
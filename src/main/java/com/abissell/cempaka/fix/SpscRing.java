@@ -0,0 +1,155 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+
+/*
+ * Bounded single-producer/single-consumer ring buffer. The producer owns
+ * tail and the consumer owns head; each publishes its counter with a
+ * release store and reads the other's with an acquire load, so neither
+ * side ever takes a lock. The counters are padded onto their own cache
+ * lines via the superclasses below, since field order follows the class
+ * hierarchy.
+ *
+ * Exactly one thread may call offer() and exactly one thread may call
+ * drainTo() or poll() at any time. size() is an estimate and may be called
+ * from anywhere.
+ */
+final class SpscRing<T> extends SpscRingPad2 {
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SpscRingHead.class, "head", long.class);
+            TAIL = lookup.findVarHandle(SpscRingTail.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] buffer;
+    private final int mask;
+    private final int capacity;
+
+    SpscRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+        // Array length is rounded up to a power of 2 for masking, but capacity
+        // is still enforced exactly
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) {
+            length <<= 1;
+        }
+        this.buffer = new Object[length];
+        this.mask = length - 1;
+    }
+
+    boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        final long currTail = tail;
+        if (currTail - headCache >= capacity) {
+            headCache = (long) HEAD.getAcquire(this);
+            if (currTail - headCache >= capacity) {
+                return false;
+            }
+        }
+
+        buffer[(int) currTail & mask] = item;
+        TAIL.setRelease(this, currTail + 1);
+        return true;
+    }
+
+    // Drains everything available in one batch, publishing head once
+    @SuppressWarnings("unchecked")
+    int drainTo(Collection<? super T> c) {
+        final long currHead = head;
+        final long currTail = (long) TAIL.getAcquire(this);
+        final int available = (int) (currTail - currHead);
+        for (int i = 0; i < available; i++) {
+            int idx = (int) (currHead + i) & mask;
+            var item = (T) buffer[idx];
+            buffer[idx] = null;
+            c.add(item);
+        }
+        if (available > 0) {
+            HEAD.setRelease(this, currTail);
+        }
+        return available;
+    }
+
+    // @return the oldest item, or null if empty
+    @SuppressWarnings("unchecked")
+    T poll() {
+        final long currHead = head;
+        if (currHead == (long) TAIL.getAcquire(this)) {
+            return null;
+        }
+        int idx = (int) currHead & mask;
+        var item = (T) buffer[idx];
+        buffer[idx] = null;
+        HEAD.setRelease(this, currHead + 1);
+        return item;
+    }
+
+    int size() {
+        // Read head first so a concurrent drain can only make this an overestimate
+        long currHead = (long) HEAD.getAcquire(this);
+        long currTail = (long) TAIL.getAcquire(this);
+        return (int) Math.max(0L, Math.min(capacity, currTail - currHead));
+    }
+
+    int remainingCapacity() {
+        return capacity - size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
+
+abstract class SpscRingPad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+// Producer-owned: tail, plus the last head it read
+abstract class SpscRingTail extends SpscRingPad0 {
+    long tail;
+    long headCache;
+}
+
+abstract class SpscRingPad1 extends SpscRingTail {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+// Consumer-owned
+abstract class SpscRingHead extends SpscRingPad1 {
+    long head;
+}
+
+abstract class SpscRingPad2 extends SpscRingHead {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
@@ -0,0 +1,73 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Recycles the views a QFJ session thread fills and hands to the trading
+ * loop, so the steady state allocates none. Views the loop is done with
+ * come back through an SPSC ring running the opposite way to the MsgQueue
+ * or ConflatingMailbox that carried them.
+ *
+ * claim() and recycle() are for the producing session thread only, and
+ * release() for the trading loop only.
+ */
+public final class ViewPool<V> {
+    private final SpscRing<V> free;
+    private final Supplier<V> factory;
+    private final AtomicLong allocated = new AtomicLong();
+    // Producer-owned, a view that was claimed but never handed over
+    private V spare;
+
+    public ViewPool(int capacity, Supplier<V> factory) {
+        this.free = new SpscRing<>(capacity);
+        this.factory = factory;
+    }
+
+    public V claim() {
+        var view = spare;
+        if (view != null) {
+            spare = null;
+            return view;
+        }
+        view = free.poll();
+        if (view == null) {
+            allocated.incrementAndGet();
+            view = factory.get();
+        }
+        return view;
+    }
+
+    // For a view the consumer never saw, e.g. one replaced in a mailbox
+    public void recycle(V view) {
+        if (spare == null) {
+            spare = view;
+        }
+    }
+
+    // Views beyond the pool's capacity are left to the GC
+    public void release(V view) {
+        free.offer(view);
+    }
+
+    public long allocatedCount() {
+        return allocated.get();
+    }
+}
@@ -21,8 +21,24 @@ import com.abissell.fixbridge.ClOrdID;
 import com.abissell.fixbridge.OrigClOrdrID;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 public /* primitive */ record ClOrdrID(OrdrID id) implements ClOrdID {
+    // Shared by every order and cancel request this process sends
+    private static final OrdrIDGenerator SESSION_IDS = new OrdrIDGenerator(LocalDateTime.now(ZoneOffset.UTC));
+
+    public static ClOrdrID next() {
+        return new ClOrdrID(SESSION_IDS.next());
+    }
+
+    // For IDs sent before a restart, so next() cannot hand them out again
+    public static void advancePast(ClOrdrID id) {
+        SESSION_IDS.advancePast(id.packed());
+    }
+
+    public long packed() {
+        return id.packed();
+    }
 
     @Override
     public String fieldVal() {
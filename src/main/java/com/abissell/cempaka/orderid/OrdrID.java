@@ -17,6 +17,7 @@
  */
 package com.abissell.cempaka.orderid;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 
 public /* primitive */ record OrdrID(
@@ -170,6 +171,70 @@ public /* primitive */ record OrdrID(
         return VALID_BYTES[index];
     }
 
+    // 62^8, the number of distinct OrdrIDs
+    public static final long NUM_PACKED = 218_340_105_584_896L;
+
+    // Writes packed as 8 base-62 digits, most significant first, without any intermediate char[]
+    public static OrdrID fromPacked(long packed) {
+        if (packed < 0L || packed >= NUM_PACKED) {
+            throw new IllegalArgumentException("Cannot create OrdrID from packed value " + packed);
+        }
+        byte b8 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b7 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b6 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b5 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b4 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b3 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b2 = VALID_BYTES[(int) (packed % 62L)];
+        packed /= 62L;
+        byte b1 = VALID_BYTES[(int) packed];
+        return new OrdrID(b1, b2, b3, b4, b5, b6, b7, b8);
+    }
+
+    /*
+     * The 8 chars read as base-62 digits, a distinct long for every OrdrID,
+     * for use as a primitive hash key.
+     */
+    public long packed() {
+        long packed = digit(b1);
+        packed = packed * 62L + digit(b2);
+        packed = packed * 62L + digit(b3);
+        packed = packed * 62L + digit(b4);
+        packed = packed * 62L + digit(b5);
+        packed = packed * 62L + digit(b6);
+        packed = packed * 62L + digit(b7);
+        return packed * 62L + digit(b8);
+    }
+
+    // Inverse of VALID_BYTES
+    private static int digit(byte b) {
+        if (b < 58) {
+            return b - 48;
+        } else if (b < 91) {
+            return b - 65 + 36;
+        } else {
+            return b - 97 + 10;
+        }
+    }
+
+    // Writes the 8 ASCII chars at the buffer's position, for encoders which would otherwise build asStr()
+    public void putAscii(ByteBuffer buf) {
+        buf.put(b1);
+        buf.put(b2);
+        buf.put(b3);
+        buf.put(b4);
+        buf.put(b5);
+        buf.put(b6);
+        buf.put(b7);
+        buf.put(b8);
+    }
+
     public String asStr() {
         char[] arr = new char[8];
         arr[0] = (char) b1;
@@ -0,0 +1,64 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.orderid;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hands out OrdrIDs packed from the UTC second of day the generator was
+ * created, above a 30 bit counter, so IDs never repeat within a session. The
+ * 47 bits fit in the 62^8 values of an OrdrID (see OrdrID.fromPacked). A
+ * session started in the same second of day as an earlier one shares its
+ * epoch, so on startup the IDs it sent are passed to advancePast() and the
+ * counter resumes after them.
+ *
+ * Lock free and safe to share between threads. Running out of counter
+ * throws rather than wrapping onto IDs already sent.
+ */
+public final class OrdrIDGenerator {
+    static final int COUNTER_BITS = 30;
+    static final long MAX_COUNT = 1L << COUNTER_BITS;
+
+    private final long epochBits;
+    private final AtomicLong counter = new AtomicLong();
+
+    public OrdrIDGenerator(LocalDateTime sessionStartUtc) {
+        this.epochBits = (long) sessionStartUtc.toLocalTime().toSecondOfDay() << COUNTER_BITS;
+    }
+
+    public long nextPacked() {
+        long count = counter.getAndIncrement();
+        if (count >= MAX_COUNT) {
+            throw new IllegalStateException("Generated all " + MAX_COUNT + " OrdrIDs for this session");
+        }
+        return epochBits | count;
+    }
+
+    // Keeps the IDs handed out after id, if it shares this generator's epoch
+    public void advancePast(long packed) {
+        if ((packed & ~(MAX_COUNT - 1L)) == epochBits) {
+            long count = packed & (MAX_COUNT - 1L);
+            counter.accumulateAndGet(count + 1L, Math::max);
+        }
+    }
+
+    public OrdrID next() {
+        return OrdrID.fromPacked(nextPacked());
+    }
+}
@@ -23,22 +23,13 @@ import com.abissell.javautil.io.ThreadLocalFormat;
 import com.abissell.logutil.Log;
 import com.abissell.logutil.LogDstSet;
 import com.abissell.logutil.OptBuf;
-import com.abissell.fixbridge.AvgPx;
-import com.abissell.cempaka.data.CcyPair;
 import com.abissell.cempaka.orderid.ClOrdrID;
-import com.abissell.fixbridge.CumQty;
-import com.abissell.fixbridge.ExecID;
+import com.abissell.fixbridge.ExecReportView;
 import com.abissell.fixbridge.ExecType;
 import com.abissell.fixbridge.FixField;
 import com.abissell.fixbridge.FixFieldVal;
-import com.abissell.fixbridge.LastPx;
-import com.abissell.fixbridge.LastShares;
-import com.abissell.fixbridge.OrdStatus;
-import com.abissell.fixbridge.OrderQty;
 import com.abissell.fixbridge.OrigClOrdrID;
-import com.abissell.fixbridge.Price;
 import com.abissell.fixbridge.Side;
-import com.abissell.fixbridge.TimeInForce;
 
 public enum CempakaLog {
     ; // Enum singleton
@@ -60,45 +51,37 @@ public enum CempakaLog {
         }
     }
 
-    public static void logExecutionReport(EnumMap<FixField, FixFieldVal> execReport,
-            OptBuf buf) {
+    public static void logExecutionReport(ExecReportView execReport, OptBuf buf) {
         if (buf instanceof OptBuf.Noop) {
             return;
         }
 
-        CcyPair ccyPair = (CcyPair) execReport.get(FixField.SYMBOL);
-        buf.add("\n").add(ccyPair).add(" ");
-        ExecType execType = (ExecType) execReport.get(FixField.EXEC_TYPE);
+        buf.add("\n").add(execReport.symbol()).add(" ");
+        ExecType execType = execReport.execType();
         buf.add(getType(execType)).add(" ");
-        Side side = (Side) execReport.get(FixField.SIDE);
-        buf.add(getAction(execType, side)).add(" ");
+        buf.add(getAction(execType, execReport.side())).add(" ");
         buf.add(getQty(execType, execReport)).add(" @ ");
         buf.add(getPx(execType, execReport));
-        OrdStatus status = (OrdStatus) execReport.get(FixField.ORD_STATUS);
-        if (status != null) {
-            buf.add(" | STATUS: ").add(status);
+        if (execReport.has(FixField.ORD_STATUS)) {
+            buf.add(" | STATUS: ").add(execReport.ordStatus());
         }
-        TimeInForce tif = (TimeInForce) execReport.get(FixField.TIME_IN_FORCE);
-        if (tif != null) {
-            buf.add(" | TIF: ").add(tif);
+        if (execReport.has(FixField.TIME_IN_FORCE)) {
+            buf.add(" | TIF: ").add(execReport.timeInForce());
         }
-        buf.add(" | TS: ").add(execReport.get(FixField.TRANSACT_TIME));
-        buf.add(" | ORD_ID: ").add(((ClOrdrID) execReport.get(FixField.CL_ORD_ID)).fieldVal());
-        CumQty cumQty = (CumQty) execReport.get(FixField.CUM_QTY);
-        if (cumQty != null) {
-            buf.add(" | CUM_QTY: ").add(cumQty.decimalString());
+        buf.add(" | TS: ").add(execReport.has(FixField.TRANSACT_TIME)
+                ? UtcNanos.toLocalDateTime(execReport.transactTime()) : null);
+        buf.add(" | ORD_ID: ").add(((ClOrdrID) execReport.clOrdID()).fieldVal());
+        if (execReport.has(FixField.CUM_QTY)) {
+            buf.add(" | CUM_QTY: ").add(decimalString(execReport.cumQty()));
         }
-        AvgPx avgPx = (AvgPx) execReport.get(FixField.AVG_PX);
-        if (avgPx != null) {
-            buf.add(" | AVG_PX: ").add(avgPx.decimalString());
+        if (execReport.has(FixField.AVG_PX)) {
+            buf.add(" | AVG_PX: ").add(decimalString(execReport.avgPx()));
         }
-        OrigClOrdrID origID = (OrigClOrdrID) execReport.get(FixField.ORIG_CL_ORD_ID);
-        if (origID != null) {
-            buf.add(" | ORIG_ORD_ID: ").add(origID.fieldVal());
+        if (execReport.has(FixField.ORIG_CL_ORD_ID)) {
+            buf.add(" | ORIG_ORD_ID: ").add(((OrigClOrdrID) execReport.origClOrdID()).fieldVal());
         }
-        ExecID execID = (ExecID) execReport.get(FixField.EXEC_ID);
-        if (execID != null) {
-            buf.add(" | EXEC_ID: ").add(execID.fieldVal());
+        if (execReport.has(FixField.EXEC_ID)) {
+            buf.add(" | EXEC_ID: ").add(execReport.execID());
         }
     }
 
@@ -132,29 +115,26 @@ public enum CempakaLog {
         };
     }
 
-    private static String getQty(ExecType type, EnumMap<FixField, FixFieldVal> msg) {
+    private static String getQty(ExecType type, ExecReportView execReport) {
         return switch (type) {
-            case PARTIAL_FILL, FILL -> ((LastShares) msg.get(FixField.LAST_SHARES)).decimalString();
+            case PARTIAL_FILL, FILL -> decimalString(execReport.lastShares());
             case PENDING_CANCEL, CANCELED -> {
-                CumQty cumQty = (CumQty) msg.get(FixField.CUM_QTY);
-                double cumQtyVal;
-                if (cumQty != null) {
-                    cumQtyVal = cumQty.fieldVal();
-                } else {
-                    cumQtyVal = 0.0d;
-                }
-                OrderQty orderQty = (OrderQty) msg.get(FixField.ORDER_QTY);
-                double cxldVal = orderQty.fieldVal() - cumQtyVal;
-                yield ThreadLocalFormat.with8SigDigits().format(cxldVal);
+                double cumQtyVal = execReport.has(FixField.CUM_QTY) ? execReport.cumQty() : 0.0d;
+                double cxldVal = execReport.orderQty() - cumQtyVal;
+                yield decimalString(cxldVal);
             }
-            default -> ((OrderQty) msg.get(FixField.ORDER_QTY)).decimalString();
+            default -> decimalString(execReport.orderQty());
         };
     }
 
-    private static String getPx(ExecType type, EnumMap<FixField, FixFieldVal> msg) {
+    private static String getPx(ExecType type, ExecReportView execReport) {
         return switch (type) {
-            case PARTIAL_FILL, FILL -> ((LastPx) msg.get(FixField.LAST_PX)).decimalString();
-            default -> ((Price) msg.get(FixField.PRICE)).decimalString();
+            case PARTIAL_FILL, FILL -> decimalString(execReport.lastPx());
+            default -> decimalString(execReport.price());
         };
     }
+
+    private static String decimalString(double val) {
+        return ThreadLocalFormat.with8SigDigits().format(val);
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.abissell.logutil.Log;
+
+/*
+ * Binds the calling thread to a CPU on Linux. There is no native binding in
+ * the build, so this runs taskset (sched_setaffinity) against the thread's
+ * own tid, found through /proc/thread-self.
+ */
+public enum CpuAffinity {
+    ; // Enum singleton
+    public static boolean pinCurrentThread(int cpu) {
+        try {
+            // Links to "<pid>/task/<tid>"
+            var threadSelf = Files.readSymbolicLink(Path.of("/proc/thread-self"));
+            var tid = threadSelf.getFileName().toString();
+            var process = new ProcessBuilder("taskset", "-cp", Integer.toString(cpu), tid)
+                .redirectErrorStream(true)
+                .start();
+            var output = new String(process.getInputStream().readAllBytes()).trim();
+            if (!process.waitFor(5L, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                Log.ERROR.to(DstSet.APP_STD_OUT, "Could not pin thread " + Thread.currentThread().getName() +
+                        " to cpu " + cpu + ": " + output);
+                return false;
+            }
+            Log.INFO.to(DstSet.APP_STD_OUT, "Pinned thread " + Thread.currentThread().getName() + " (tid " + tid +
+                    ") to cpu " + cpu);
+            return true;
+        } catch (Exception e) {
+            Log.ERROR.to(DstSet.APP_STD_OUT, "Could not pin thread " + Thread.currentThread().getName() +
+                    " to cpu " + cpu + ": " + e);
+            return false;
+        }
+    }
+}
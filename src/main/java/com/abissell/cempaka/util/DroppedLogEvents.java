@@ -0,0 +1,49 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.async.AsyncQueueFullPolicy;
+import org.apache.logging.log4j.core.async.EventRoute;
+
+/*
+ * What log4j's Async appenders do when their queue is full, in async
+ * logging mode (see Dst): the event is dropped and counted, so a thread
+ * logging faster than the appenders can write never waits on them.
+ *
+ * log4j creates the instance itself, from the class name set as
+ * log4j2.AsyncQueueFullPolicy, so the count is kept statically.
+ */
+public final class DroppedLogEvents implements AsyncQueueFullPolicy {
+    private static final LongAdder dropped = new LongAdder();
+
+    public DroppedLogEvents() {
+    }
+
+    public static long count() {
+        return dropped.sum();
+    }
+
+    @Override
+    public EventRoute getRoute(long backgroundThreadId, Level level) {
+        dropped.increment();
+        return EventRoute.DISCARD;
+    }
+}
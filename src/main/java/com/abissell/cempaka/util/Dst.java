@@ -24,10 +24,21 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.appender.ConsoleAppender;
 import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
 import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
 
 import com.abissell.logutil.LogDst;
 
+/*
+ * The log4j loggers behind each destination, configured once on first use.
+ *
+ * With -Dcempaka.log.async=true each appender sits behind an Async appender
+ * with a bounded ASYNC_QUEUE_SIZE queue, so layouts, file writes and
+ * rollovers happen on log4j's background threads rather than the thread
+ * logging. An event which finds its queue full is dropped and counted by
+ * DroppedLogEvents instead of waiting.
+ */
 public enum Dst implements LogDst {
     APP(null),
     STD_OUT("StdOut"),
@@ -39,6 +50,10 @@ public enum Dst implements LogDst {
         this.name = name;
     }
 
+    public static final String ASYNC_PROPERTY = "cempaka.log.async";
+    private static final int ASYNC_QUEUE_SIZE = 8192;
+    private static final String QUEUE_FULL_POLICY_PROPERTY = "log4j2.AsyncQueueFullPolicy";
+
     private static final EnumMap<Dst, Logger> loggers = configLoggers();
 
     @Override
@@ -47,6 +62,12 @@ public enum Dst implements LogDst {
     }
 
     private static EnumMap<Dst, Logger> configLoggers() {
+        final boolean async = Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY, "false").trim());
+        if (async && System.getProperty(QUEUE_FULL_POLICY_PROPERTY) == null) {
+            // Must be set before the Async appenders start
+            System.setProperty(QUEUE_FULL_POLICY_PROPERTY, DroppedLogEvents.class.getName());
+        }
+
         var builder = ConfigurationBuilderFactory.newConfigurationBuilder();
 
         // Set to debug or trace if log4j2 is having problems
@@ -62,7 +83,7 @@ public enum Dst implements LogDst {
         builder.add(appenderBuilder);
 
         builder.add(builder.newLogger(STD_OUT.name, Level.INFO)
-                .add(builder.newAppenderRef("Stdout"))
+                .add(builder.newAppenderRef(wrap(builder, "Stdout", async)))
                 .addAttribute("additivity", false));
 
         // create a standard rolling file triggering policy
@@ -87,7 +108,7 @@ public enum Dst implements LogDst {
         builder.add(appenderBuilder);
 
         builder.add(builder.newLogger(MKT_DATA.name, Level.INFO)
-                .add(builder.newAppenderRef("rollingMktData"))
+                .add(builder.newAppenderRef(wrap(builder, "rollingMktData", async)))
                 .addAttribute("additivity", false));
 
         // create an execution rolling file appender and logger
@@ -100,7 +121,7 @@ public enum Dst implements LogDst {
         builder.add(appenderBuilder);
 
         builder.add(builder.newLogger(EXEC.name, Level.INFO)
-                .add(builder.newAppenderRef("rollingExec"))
+                .add(builder.newAppenderRef(wrap(builder, "rollingExec", async)))
                 .addAttribute("additivity", false));
 
         // create the root appender
@@ -113,18 +134,19 @@ public enum Dst implements LogDst {
                 .addComponent(triggeringPolicy)
                 .addComponent(rolloverStrategy);
         builder.add(appenderBuilder);
+        final var rollingRef = wrap(builder, "rolling", async);
 
         // set loggers at WARN level for QFJ messages
         builder.add(builder.newLogger("quickfixj.msg.incoming", Level.WARN)
-                .add(builder.newAppenderRef("rolling"))
+                .add(builder.newAppenderRef(rollingRef))
                 .addAttribute("additivity", false));
         builder.add(builder.newLogger("quickfixj.msg.outgoing", Level.WARN)
-                .add(builder.newAppenderRef("rolling"))
+                .add(builder.newAppenderRef(rollingRef))
                 .addAttribute("additivity", false));
 
         // create the root logger
         builder.add(builder.newRootLogger(Level.INFO)
-                .add(builder.newAppenderRef("rolling")));
+                .add(builder.newAppenderRef(rollingRef)));
 
         // initialize the config
         Configurator.initialize(builder.build());
@@ -140,4 +162,19 @@ public enum Dst implements LogDst {
         }
         return loggersMap;
     }
+
+    // @return the name of the appender for loggers to refer to
+    private static String wrap(ConfigurationBuilder<BuiltConfiguration> builder, String appender, boolean async) {
+        if (!async) {
+            return appender;
+        }
+        var asyncName = "async" + Character.toUpperCase(appender.charAt(0)) + appender.substring(1);
+        builder.add(builder.newAppender(asyncName, "Async")
+                .addAttribute("bufferSize", ASYNC_QUEUE_SIZE)
+                // Full queues go to the AsyncQueueFullPolicy, which drops rather than blocks
+                .addAttribute("blocking", true)
+                .addAttribute("includeLocation", false)
+                .addComponent(builder.newAppenderRef(appender)));
+        return asyncName;
+    }
 }
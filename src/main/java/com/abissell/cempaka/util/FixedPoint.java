@@ -0,0 +1,83 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import java.math.RoundingMode;
+
+/*
+ * Fixed-point helpers for pxs and qtys held as longs scaled by 10^decimalPts.
+ *
+ * Doubles parsed from FIX decimal strings sit within a few ulps of a point on
+ * the decimal grid, so a scaled value that close to a whole number is taken
+ * as exact before the rounding mode applies. Otherwise 1.0813 at 4 places,
+ * held as 1.08129999..., would round DOWN to 1.0812.
+ */
+public enum FixedPoint {
+    ; // Enum singleton
+
+    public static final int MAX_DECIMAL_PTS = 15;
+    // Books hold pxs at a finer scale than order pxs, since venues quote
+    // below the tick that orders are rounded to
+    public static final int MKT_DATA_DECIMAL_PTS = 8;
+
+    private static final long[] POW10 = new long[MAX_DECIMAL_PTS + 1];
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+    // Keeps the scaled value well inside the range a double holds exactly
+    private static final double MAX_SCALED = 0x1p53;
+    private static final int GRID_ULPS = 4;
+
+    public static long toScaled(double val, int decimalPts, RoundingMode roundingMode) {
+        double scaled = val * pow10(decimalPts);
+        if (!(Math.abs(scaled) < MAX_SCALED)) {
+            throw new IllegalArgumentException("Cannot scale " + val + " to " + decimalPts + " decimal pts");
+        }
+        double nearest = Math.rint(scaled);
+        if (Math.abs(scaled - nearest) <= GRID_ULPS * Math.ulp(scaled)) {
+            return (long) nearest;
+        }
+        return (long) switch (roundingMode) {
+            case DOWN -> scaled < 0.0d ? Math.ceil(scaled) : Math.floor(scaled);
+            case UP -> scaled < 0.0d ? Math.floor(scaled) : Math.ceil(scaled);
+            case FLOOR -> Math.floor(scaled);
+            case CEILING -> Math.ceil(scaled);
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> nearest;
+            case UNNECESSARY -> throw new ArithmeticException(val + " is not a multiple of 10^-" + decimalPts);
+        };
+    }
+
+    // The double nearest the scaled decimal, so equal scaled values give equal doubles
+    public static double toDouble(long scaled, int decimalPts) {
+        return (double) scaled / pow10(decimalPts);
+    }
+
+    public static double round(double val, int decimalPts, RoundingMode roundingMode) {
+        return toDouble(toScaled(val, decimalPts, roundingMode), decimalPts);
+    }
+
+    private static long pow10(int decimalPts) {
+        if (decimalPts < 0 || decimalPts > MAX_DECIMAL_PTS) {
+            throw new IllegalArgumentException("Invalid decimalPts " + decimalPts);
+        }
+        return POW10[decimalPts];
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * How a polling loop waits when an iteration found no work. Implementations
+ * are stateful and must only be used by the one thread running the loop.
+ */
+public sealed interface IdleStrategy {
+
+    // @param workCount the number of items handled by the last iteration
+    void idle(int workCount);
+
+    /*
+     * Parses one of:
+     *   busy-spin
+     *   spin-yield[:maxSpins]
+     *   spin-yield-park[:maxSpins:maxYields:minParkNanos:maxParkNanos]
+     */
+    static IdleStrategy from(String spec) {
+        var parts = spec.trim().split(":");
+        return switch (parts[0]) {
+            case "busy-spin" -> {
+                if (parts.length != 1) {
+                    throw new IllegalArgumentException("busy-spin takes no params: " + spec);
+                }
+                yield new BusySpin();
+            }
+            case "spin-yield" -> switch (parts.length) {
+                case 1 -> new SpinYield(SpinYield.DEFAULT_MAX_SPINS);
+                case 2 -> new SpinYield(Integer.parseInt(parts[1]));
+                default -> throw new IllegalArgumentException("Invalid spin-yield params: " + spec);
+            };
+            case "spin-yield-park" -> switch (parts.length) {
+                case 1 -> new SpinYieldPark(
+                        SpinYieldPark.DEFAULT_MAX_SPINS,
+                        SpinYieldPark.DEFAULT_MAX_YIELDS,
+                        SpinYieldPark.DEFAULT_MIN_PARK_NANOS,
+                        SpinYieldPark.DEFAULT_MAX_PARK_NANOS);
+                case 5 -> new SpinYieldPark(
+                        Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]),
+                        Long.parseLong(parts[3]),
+                        Long.parseLong(parts[4]));
+                default -> throw new IllegalArgumentException("Invalid spin-yield-park params: " + spec);
+            };
+            default -> throw new IllegalArgumentException("Unrecognized idle strategy: " + spec);
+        };
+    }
+
+    // Lowest latency, keeps the core busy
+    final class BusySpin implements IdleStrategy {
+        @Override
+        public void idle(int workCount) {
+            if (workCount == 0) {
+                Thread.onSpinWait();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "busy-spin";
+        }
+    }
+
+    final class SpinYield implements IdleStrategy {
+        static final int DEFAULT_MAX_SPINS = 100;
+
+        private final int maxSpins;
+        private int spins;
+
+        public SpinYield(int maxSpins) {
+            if (maxSpins < 0) {
+                throw new IllegalArgumentException("maxSpins=" + maxSpins);
+            }
+            this.maxSpins = maxSpins;
+        }
+
+        @Override
+        public void idle(int workCount) {
+            if (workCount > 0) {
+                spins = 0;
+            } else if (spins < maxSpins) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "spin-yield:" + maxSpins;
+        }
+    }
+
+    // Backs off to parking, doubling the park time up to maxParkNanos, for
+    // hosts where the loop should not hold a core
+    final class SpinYieldPark implements IdleStrategy {
+        static final int DEFAULT_MAX_SPINS = 100;
+        static final int DEFAULT_MAX_YIELDS = 10;
+        static final long DEFAULT_MIN_PARK_NANOS = 1_000L;
+        static final long DEFAULT_MAX_PARK_NANOS = 1_000_000L;
+
+        private final int maxSpins;
+        private final int maxYields;
+        private final long minParkNanos;
+        private final long maxParkNanos;
+        private int spins;
+        private int yields;
+        private long parkNanos;
+
+        public SpinYieldPark(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+            if (maxSpins < 0 || maxYields < 0 || minParkNanos <= 0L || maxParkNanos < minParkNanos) {
+                throw new IllegalArgumentException("Invalid params maxSpins=" + maxSpins + ", maxYields=" + maxYields +
+                        ", minParkNanos=" + minParkNanos + ", maxParkNanos=" + maxParkNanos);
+            }
+            this.maxSpins = maxSpins;
+            this.maxYields = maxYields;
+            this.minParkNanos = minParkNanos;
+            this.maxParkNanos = maxParkNanos;
+            this.parkNanos = minParkNanos;
+        }
+
+        @Override
+        public void idle(int workCount) {
+            if (workCount > 0) {
+                spins = 0;
+                yields = 0;
+                parkNanos = minParkNanos;
+            } else if (spins < maxSpins) {
+                spins++;
+                Thread.onSpinWait();
+            } else if (yields < maxYields) {
+                yields++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "spin-yield-park:" + maxSpins + ":" + maxYields + ":" + minParkNanos + ":" + maxParkNanos;
+        }
+    }
+}
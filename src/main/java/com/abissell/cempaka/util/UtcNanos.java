@@ -0,0 +1,37 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public enum UtcNanos {
+    ; // Enum singleton
+    private static final long NANOS_PER_SEC = 1_000_000_000L;
+
+    public static long from(LocalDateTime utcTime) {
+        return utcTime.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SEC + utcTime.getNano();
+    }
+
+    public static LocalDateTime toLocalDateTime(long utcNanos) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(utcNanos, NANOS_PER_SEC),
+                (int) Math.floorMod(utcNanos, NANOS_PER_SEC),
+                ZoneOffset.UTC);
+    }
+}
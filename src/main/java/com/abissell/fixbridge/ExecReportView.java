@@ -0,0 +1,218 @@
+package com.abissell.fixbridge;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+
+import com.abissell.cempaka.util.UtcNanos;
+
+/*
+ * Reusable, mutable view of an ExecutionReport <35=8>. Numeric fields are
+ * held as primitives and timestamps as UTC epoch nanos. A bit per FixField
+ * ordinal records which fields were present; accessors for absent fields
+ * return 0, false or null.
+ *
+ * Filled by FixDecoder or load() and read by a single thread at a time.
+ */
+public final class ExecReportView {
+    private long present;
+    private LocalDateTime recvdTime;
+
+    private int msgSeqNum;
+    private boolean possDup;
+    private long sendingTime;
+    private String orderID;
+    private ClOrdID clOrdID;
+    private OrigClOrdID origClOrdID;
+    private String execID;
+    private HandlInst handlInst;
+    private String account;
+    private ExecTransType execTransType;
+    private ExecType execType;
+    private OrdStatus ordStatus;
+    private Tradeable symbol;
+    private String text;
+    private FixFieldVal currency;
+    private double lastPx;
+    private double lastShares;
+    private Side side;
+    private double orderQty;
+    private double price;
+    private OrdType ordType;
+    private TimeInForce timeInForce;
+    private long transactTime;
+    private String settlDate;
+    private double leavesQty;
+    private double cumQty;
+    private double avgPx;
+    private MultiLegReportingType multiLegReportingType;
+
+    public boolean has(FixField field) {
+        return (present & bit(field)) != 0L;
+    }
+
+    public LocalDateTime recvdTime() { return recvdTime; }
+    public int msgSeqNum() { return msgSeqNum; }
+    public boolean isPossDup() { return possDup; }
+    public long sendingTime() { return sendingTime; }
+    public String orderID() { return orderID; }
+    public ClOrdID clOrdID() { return clOrdID; }
+    public OrigClOrdID origClOrdID() { return origClOrdID; }
+    public String execID() { return execID; }
+    public HandlInst handlInst() { return handlInst; }
+    public String account() { return account; }
+    public ExecTransType execTransType() { return execTransType; }
+    public ExecType execType() { return execType; }
+    public OrdStatus ordStatus() { return ordStatus; }
+    public Tradeable symbol() { return symbol; }
+    public String text() { return text; }
+    public FixFieldVal currency() { return currency; }
+    public double lastPx() { return lastPx; }
+    public double lastShares() { return lastShares; }
+    public Side side() { return side; }
+    public double orderQty() { return orderQty; }
+    public double price() { return price; }
+    public OrdType ordType() { return ordType; }
+    public TimeInForce timeInForce() { return timeInForce; }
+    public long transactTime() { return transactTime; }
+    public String settlDate() { return settlDate; }
+    public double leavesQty() { return leavesQty; }
+    public double cumQty() { return cumQty; }
+    public double avgPx() { return avgPx; }
+    public MultiLegReportingType multiLegReportingType() { return multiLegReportingType; }
+
+    // Copies the fields of an ExecutionReport already read into an EnumMap
+    public ExecReportView load(EnumMap<FixField, FixFieldVal> fields, LocalDateTime recvdTime) {
+        reset(recvdTime);
+        fields.forEach((field, val) -> {
+            switch (val) {
+                case MsgSeqNum v -> msgSeqNum(v.seqNum());
+                case PossDupFlag v -> possDup(v.flag());
+                case SendingTime v -> sendingTime(UtcNanos.from(v.sendingTime()));
+                case OrderID v -> orderID(v.id());
+                case ClOrdID v -> clOrdID(v);
+                case OrigClOrdID v -> origClOrdID(v);
+                case ExecID v -> execID(v.id());
+                case HandlInst v -> handlInst(v);
+                case Account v -> account(v.acct());
+                case ExecTransType v -> execTransType(v);
+                case ExecType v -> execType(v);
+                case OrdStatus v -> ordStatus(v);
+                case Text v -> text(v.text());
+                case LastPx v -> lastPx(v.px());
+                case LastShares v -> lastShares(v.qty());
+                case Side v -> side(v);
+                case OrderQty v -> orderQty(v.qty());
+                case Price v -> price(v.px());
+                case OrdType v -> ordType(v);
+                case TimeInForce v -> timeInForce(v);
+                case TransactTime v -> transactTime(UtcNanos.from(v.time()));
+                case SettlDate v -> settlDate(v.date().date());
+                case LeavesQty v -> leavesQty(v.qty());
+                case CumQty v -> cumQty(v.qty());
+                case AvgPx v -> avgPx(v.px());
+                case MultiLegReportingType v -> multiLegReportingType(v);
+                case CheckSum v -> checkSum();
+                default -> {
+                    switch (field) {
+                        case SYMBOL -> symbol((Tradeable) val);
+                        case CURRENCY -> currency(val);
+                        default -> { } // Header and trailer fields not held
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    void reset(LocalDateTime recvdTime) {
+        present = 0L;
+        this.recvdTime = recvdTime;
+        // Drop references so a recycled view does not hold the last message's objects
+        orderID = null;
+        clOrdID = null;
+        origClOrdID = null;
+        execID = null;
+        account = null;
+        symbol = null;
+        text = null;
+        currency = null;
+        settlDate = null;
+    }
+
+    void msgSeqNum(int v) { msgSeqNum = v; set(FixField.MSG_SEQ_NUM); }
+    void possDup(boolean v) { possDup = v; set(FixField.POSS_DUP_FLAG); }
+    void sendingTime(long v) { sendingTime = v; set(FixField.SENDING_TIME); }
+    void orderID(String v) { orderID = v; set(FixField.ORDER_ID); }
+    void clOrdID(ClOrdID v) { clOrdID = v; set(FixField.CL_ORD_ID); }
+    void origClOrdID(OrigClOrdID v) { origClOrdID = v; set(FixField.ORIG_CL_ORD_ID); }
+    void execID(String v) { execID = v; set(FixField.EXEC_ID); }
+    void handlInst(HandlInst v) { handlInst = v; set(FixField.HANDL_INST); }
+    void account(String v) { account = v; set(FixField.ACCOUNT); }
+    void execTransType(ExecTransType v) { execTransType = v; set(FixField.EXEC_TRANS_TYPE); }
+    void execType(ExecType v) { execType = v; set(FixField.EXEC_TYPE); }
+    void ordStatus(OrdStatus v) { ordStatus = v; set(FixField.ORD_STATUS); }
+    void symbol(Tradeable v) { symbol = v; set(FixField.SYMBOL); }
+    void text(String v) { text = v; set(FixField.TEXT); }
+    void currency(FixFieldVal v) { currency = v; set(FixField.CURRENCY); }
+    void lastPx(double v) { lastPx = v; set(FixField.LAST_PX); }
+    void lastShares(double v) { lastShares = v; set(FixField.LAST_SHARES); }
+    void side(Side v) { side = v; set(FixField.SIDE); }
+    void orderQty(double v) { orderQty = v; set(FixField.ORDER_QTY); }
+    void price(double v) { price = v; set(FixField.PRICE); }
+    void ordType(OrdType v) { ordType = v; set(FixField.ORD_TYPE); }
+    void timeInForce(TimeInForce v) { timeInForce = v; set(FixField.TIME_IN_FORCE); }
+    void transactTime(long v) { transactTime = v; set(FixField.TRANSACT_TIME); }
+    void settlDate(String v) { settlDate = v; set(FixField.SETTL_DATE); }
+    void leavesQty(double v) { leavesQty = v; set(FixField.LEAVES_QTY); }
+    void cumQty(double v) { cumQty = v; set(FixField.CUM_QTY); }
+    void avgPx(double v) { avgPx = v; set(FixField.AVG_PX); }
+    void multiLegReportingType(MultiLegReportingType v) { multiLegReportingType = v; set(FixField.MULTI_LEG_REPORTING_TYPE); }
+    void checkSum() { set(FixField.CHECK_SUM); }
+
+    long present() {
+        return present;
+    }
+
+    private void set(FixField field) {
+        present |= bit(field);
+    }
+
+    // FixField has fewer than 64 values, so one bit per ordinal fits in a long
+    static long bit(FixField field) {
+        return 1L << field.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("ExecReportView[recvdTime=").append(recvdTime);
+        if (has(FixField.MSG_SEQ_NUM)) sb.append(", msgSeqNum=").append(msgSeqNum);
+        if (has(FixField.POSS_DUP_FLAG)) sb.append(", possDup=").append(possDup);
+        if (has(FixField.SENDING_TIME)) sb.append(", sendingTime=").append(sendingTime);
+        if (has(FixField.ORDER_ID)) sb.append(", orderID=").append(orderID);
+        if (has(FixField.CL_ORD_ID)) sb.append(", clOrdID=").append(clOrdID.fieldVal());
+        if (has(FixField.ORIG_CL_ORD_ID)) sb.append(", origClOrdID=").append(origClOrdID.fieldVal());
+        if (has(FixField.EXEC_ID)) sb.append(", execID=").append(execID);
+        if (has(FixField.HANDL_INST)) sb.append(", handlInst=").append(handlInst);
+        if (has(FixField.ACCOUNT)) sb.append(", account=").append(account);
+        if (has(FixField.EXEC_TRANS_TYPE)) sb.append(", execTransType=").append(execTransType);
+        if (has(FixField.EXEC_TYPE)) sb.append(", execType=").append(execType);
+        if (has(FixField.ORD_STATUS)) sb.append(", ordStatus=").append(ordStatus);
+        if (has(FixField.SYMBOL)) sb.append(", symbol=").append(symbol);
+        if (has(FixField.TEXT)) sb.append(", text=").append(text);
+        if (has(FixField.CURRENCY)) sb.append(", currency=").append(currency);
+        if (has(FixField.LAST_PX)) sb.append(", lastPx=").append(lastPx);
+        if (has(FixField.LAST_SHARES)) sb.append(", lastShares=").append(lastShares);
+        if (has(FixField.SIDE)) sb.append(", side=").append(side);
+        if (has(FixField.ORDER_QTY)) sb.append(", orderQty=").append(orderQty);
+        if (has(FixField.PRICE)) sb.append(", price=").append(price);
+        if (has(FixField.ORD_TYPE)) sb.append(", ordType=").append(ordType);
+        if (has(FixField.TIME_IN_FORCE)) sb.append(", timeInForce=").append(timeInForce);
+        if (has(FixField.TRANSACT_TIME)) sb.append(", transactTime=").append(transactTime);
+        if (has(FixField.SETTL_DATE)) sb.append(", settlDate=").append(settlDate);
+        if (has(FixField.LEAVES_QTY)) sb.append(", leavesQty=").append(leavesQty);
+        if (has(FixField.CUM_QTY)) sb.append(", cumQty=").append(cumQty);
+        if (has(FixField.AVG_PX)) sb.append(", avgPx=").append(avgPx);
+        if (has(FixField.MULTI_LEG_REPORTING_TYPE)) sb.append(", multiLegReportingType=").append(multiLegReportingType);
+        return sb.append(']').toString();
+    }
+}
@@ -5,5 +5,9 @@ import com.abissell.javautil.rusty.Result;
 
 public interface ExecSessionBridge<R, E extends ErrType<E>> extends FixSessionBridge<R, E> {
     Result<R, E> sendNewOrderSingle(Order order);
+    // Sends both as close together as the session allows, second only if first was sent
+    OrderPairResult<R, E> sendNewOrderSingles(Order first, Order second);
+    // Sends both as the legs of one NewOrderMultileg <35=AB>, for venues that accept it
+    Result<R, E> sendNewOrderMultileg(Order first, Order second);
     Result<R, E> sendOrderCancelRequest(OrdrCxlReq request);
 }
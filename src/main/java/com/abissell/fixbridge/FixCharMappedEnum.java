@@ -2,7 +2,7 @@ package com.abissell.fixbridge;
 
 public sealed interface FixCharMappedEnum<E extends Enum<E>>
         extends FixMappedEnum<E> // Valhalla TODO: hoist primitive chars to FixField
-        permits ExecType, ExecTransType, HandlInst, MDEntryType, OrdStatus, OrdType, Side, SubscriptionRequestType, TimeInForce {
+        permits ExecType, ExecTransType, HandlInst, MDEntryType, MDUpdateAction, MDUpdateType, MultiLegReportingType, OrdStatus, OrdType, Side, SubscriptionRequestType, TimeInForce {
 
     public char fieldVal();
 
@@ -0,0 +1,564 @@
+package com.abissell.fixbridge;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.abissell.cempaka.util.UtcNanos;
+
+/*
+ * Decodes the fields used from MarketDataSnapshotFullRefresh <35=W> and
+ * ExecutionReport <35=8> messages in a single pass over the raw tag=value
+ * string, without going through quickfix.Message field maps and groups.
+ * Messages can be decoded into an EnumMap, or into a reusable
+ * MdSnapshotView or ExecReportView without boxing any numeric field.
+ *
+ * Fields whose types are defined by clients (Symbol, Currency, the comp IDs
+ * and order IDs) are converted by the readers passed to the constructor.
+ * Instances hold no mutable state and can be shared across sessions.
+ */
+public final class FixDecoder {
+    public static final char SOH = '\u0001';
+
+    public static final EnumSet<FixField> CLIENT_READ_FIELDS = EnumSet.of(
+            FixField.SENDER_COMP_ID, FixField.TARGET_COMP_ID, FixField.SYMBOL,
+            FixField.CURRENCY, FixField.CL_ORD_ID, FixField.ORIG_CL_ORD_ID);
+
+    private static final EnumSet<FixField> REQUIRED_HEADER_FIELDS = EnumSet.of(
+            FixField.MSG_TYPE, FixField.MSG_SEQ_NUM, FixField.SENDER_COMP_ID,
+            FixField.TARGET_COMP_ID, FixField.SENDING_TIME, FixField.CHECK_SUM);
+    private static final EnumSet<FixField> REQUIRED_SNAPSHOT_FIELDS = EnumSet.of(
+            FixField.MD_REQ_ID, FixField.SYMBOL, FixField.NO_MD_ENTRIES, FixField.MD_ENTRIES);
+    private static final EnumSet<FixField> REQUIRED_EXEC_REPORT_FIELDS = EnumSet.of(
+            FixField.ORDER_ID, FixField.CL_ORD_ID, FixField.EXEC_ID, FixField.ACCOUNT,
+            FixField.EXEC_TRANS_TYPE, FixField.EXEC_TYPE, FixField.ORD_STATUS, FixField.SYMBOL,
+            FixField.CURRENCY, FixField.SIDE, FixField.ORDER_QTY, FixField.PRICE,
+            FixField.TRANSACT_TIME, FixField.SETTL_DATE, FixField.LEAVES_QTY,
+            FixField.CUM_QTY, FixField.AVG_PX);
+    static {
+        REQUIRED_SNAPSHOT_FIELDS.addAll(REQUIRED_HEADER_FIELDS);
+        REQUIRED_EXEC_REPORT_FIELDS.addAll(REQUIRED_HEADER_FIELDS);
+    }
+    // Views do not hold MsgType or the comp IDs, which are checked as they are read
+    private static final long VIEW_UNHELD_MASK = mask(EnumSet.of(
+                FixField.MSG_TYPE, FixField.SENDER_COMP_ID, FixField.TARGET_COMP_ID));
+    private static final long REQUIRED_SNAPSHOT_MASK = mask(REQUIRED_SNAPSHOT_FIELDS) & ~VIEW_UNHELD_MASK;
+    private static final long REQUIRED_EXEC_REPORT_MASK = mask(REQUIRED_EXEC_REPORT_FIELDS) & ~VIEW_UNHELD_MASK;
+
+    // Powers of ten that are exact as doubles
+    private static final double[] POW_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // nextField() packs a field's tag and value bounds into a long, 21 bits each
+    private static final int FIELD_BITS = 21;
+    private static final int MAX_MSG_LENGTH = (1 << FIELD_BITS) - 1;
+    private static final long FIELD_MASK = MAX_MSG_LENGTH;
+
+    private final EnumMap<FixField, Function<String, ? extends FixFieldVal>> readers;
+
+    public FixDecoder(Map<FixField, Function<String, ? extends FixFieldVal>> readers) {
+        if (!readers.keySet().containsAll(CLIENT_READ_FIELDS)) {
+            throw new IllegalArgumentException("Readers must cover " + CLIENT_READ_FIELDS + ", got " + readers.keySet());
+        }
+        this.readers = new EnumMap<>(readers);
+    }
+
+    /*
+     * Returns the MsgType of a raw message, which by the FIX spec is the third
+     * field, after BeginString <8> and BodyLength <9>.
+     */
+    public static MsgType msgType(String raw) {
+        int pos = 0;
+        for (int i = 0; i < 2; i++) {
+            pos = raw.indexOf(SOH, pos) + 1;
+            if (pos == 0) {
+                throw new IllegalArgumentException("Truncated FIX message: " + raw);
+            }
+        }
+        if (!raw.startsWith("35=", pos)) {
+            throw new IllegalArgumentException("MsgType <35> is not the third field: " + raw);
+        }
+        int valStart = pos + 3;
+        int valEnd = raw.indexOf(SOH, valStart);
+        return msgType(raw, valStart, valEnd < 0 ? raw.length() : valEnd);
+    }
+
+    // @throws IllegalArgumentException if the message is malformed, is not a
+    //         35=W or 35=8, or is missing a field required for its type
+    public EnumMap<FixField, FixFieldVal> decode(String raw) {
+        checkLength(raw);
+        var fields = new EnumMap<FixField, FixFieldVal>(FixField.class);
+        ArrayList<MDEntry> mdEntries = null;
+        MDEntryType entryType = null;
+        double entryPx = Double.NaN;
+        double entrySize = Double.NaN;
+
+        for (int pos = 0; pos < raw.length();) {
+            long field = nextField(raw, pos);
+            int start = valStart(field);
+            int end = valEnd(field);
+            pos = end + 1;
+
+            switch (tag(field)) {
+                case 35 -> {
+                    var msgType = msgType(raw, start, end);
+                    if (msgType != MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH && msgType != MsgType.EXECUTION_REPORT) {
+                        throw new IllegalArgumentException("Cannot decode MsgType " + msgType);
+                    }
+                    fields.put(FixField.MSG_TYPE, msgType);
+                }
+                case 34 -> fields.put(FixField.MSG_SEQ_NUM, new MsgSeqNum(parseInt(raw, start, end)));
+                case 49 -> put(fields, FixField.SENDER_COMP_ID, raw.substring(start, end));
+                case 56 -> put(fields, FixField.TARGET_COMP_ID, raw.substring(start, end));
+                case 43 -> fields.put(FixField.POSS_DUP_FLAG, PossDupFlag.from(parseBool(raw, start, end)));
+                case 97 -> fields.put(FixField.POSS_RESEND, PossResend.from(parseBool(raw, start, end)));
+                case 52 -> fields.put(FixField.SENDING_TIME, new SendingTime(parseUtcTimestamp(raw, start, end)));
+                case 262 -> fields.put(FixField.MD_REQ_ID, new MDReqID(raw.substring(start, end)));
+                case 55 -> put(fields, FixField.SYMBOL, raw.substring(start, end));
+                case 268 -> {
+                    int numEntries = parseInt(raw, start, end);
+                    fields.put(FixField.NO_MD_ENTRIES, new NoMDEntries(numEntries));
+                    mdEntries = new ArrayList<>(numEntries);
+                }
+                case 269 -> {
+                    if (mdEntries == null) {
+                        throw new IllegalArgumentException("MDEntryType <269> before NoMDEntries <268>");
+                    }
+                    if (entryType != null) {
+                        mdEntries.add(entry(entryType, entryPx, entrySize));
+                    }
+                    entryType = MDEntryType.fromFixChar(parseChar(raw, start, end));
+                    entryPx = Double.NaN;
+                    entrySize = Double.NaN;
+                }
+                case 270 -> entryPx = parseDouble(raw, start, end);
+                case 271 -> entrySize = parseDouble(raw, start, end);
+                case 37 -> fields.put(FixField.ORDER_ID, new OrderID(raw.substring(start, end)));
+                case 11 -> put(fields, FixField.CL_ORD_ID, raw.substring(start, end));
+                case 41 -> put(fields, FixField.ORIG_CL_ORD_ID, raw.substring(start, end));
+                case 17 -> fields.put(FixField.EXEC_ID, new ExecID(raw.substring(start, end)));
+                case 21 -> fields.put(FixField.HANDL_INST, HandlInst.fromFixChar(parseChar(raw, start, end)));
+                case 1 -> fields.put(FixField.ACCOUNT, new Account(raw.substring(start, end)));
+                case 20 -> fields.put(FixField.EXEC_TRANS_TYPE, ExecTransType.fromFixChar(parseChar(raw, start, end)));
+                case 150 -> fields.put(FixField.EXEC_TYPE, ExecType.fromFixChar(parseChar(raw, start, end)));
+                case 39 -> fields.put(FixField.ORD_STATUS, OrdStatus.fromFixChar(parseChar(raw, start, end)));
+                case 58 -> fields.put(FixField.TEXT, new Text(raw.substring(start, end)));
+                case 15 -> put(fields, FixField.CURRENCY, raw.substring(start, end));
+                case 31 -> fields.put(FixField.LAST_PX, new LastPx(parseDouble(raw, start, end)));
+                case 32 -> fields.put(FixField.LAST_SHARES, new LastShares(parseDouble(raw, start, end)));
+                case 54 -> fields.put(FixField.SIDE, Side.fromFixChar(parseChar(raw, start, end)));
+                case 38 -> fields.put(FixField.ORDER_QTY, new OrderQty(parseDouble(raw, start, end)));
+                case 44 -> fields.put(FixField.PRICE, new Price(parseDouble(raw, start, end)));
+                case 40 -> fields.put(FixField.ORD_TYPE, OrdType.fromFixChar(parseChar(raw, start, end)));
+                case 59 -> fields.put(FixField.TIME_IN_FORCE, TimeInForce.fromFixChar(parseChar(raw, start, end)));
+                case 60 -> fields.put(FixField.TRANSACT_TIME, new TransactTime(parseUtcTimestamp(raw, start, end)));
+                case 64 -> fields.put(FixField.SETTL_DATE, new SettlDate(new StrDate(raw.substring(start, end))));
+                case 151 -> fields.put(FixField.LEAVES_QTY, new LeavesQty(parseDouble(raw, start, end)));
+                case 14 -> fields.put(FixField.CUM_QTY, new CumQty(parseDouble(raw, start, end)));
+                case 6 -> fields.put(FixField.AVG_PX, new AvgPx(parseDouble(raw, start, end)));
+                case 442 -> fields.put(FixField.MULTI_LEG_REPORTING_TYPE, MultiLegReportingType.fromFixChar(parseChar(raw, start, end)));
+                case 10 -> fields.put(FixField.CHECK_SUM, new CheckSum(parseInt(raw, start, end)));
+                default -> { } // Not used downstream
+            }
+        }
+
+        if (mdEntries != null) {
+            if (entryType != null) {
+                mdEntries.add(entry(entryType, entryPx, entrySize));
+            }
+            var noMDEntries = (NoMDEntries) fields.get(FixField.NO_MD_ENTRIES);
+            checkNumEntries(noMDEntries.noMDEntries(), mdEntries.size());
+            fields.put(FixField.MD_ENTRIES, new MDEntries(mdEntries));
+        }
+
+        var msgType = fields.get(FixField.MSG_TYPE);
+        if (msgType == null) {
+            throw new IllegalArgumentException("No MsgType <35> in message");
+        }
+        var required = msgType == MsgType.EXECUTION_REPORT ? REQUIRED_EXEC_REPORT_FIELDS : REQUIRED_SNAPSHOT_FIELDS;
+        if (!fields.keySet().containsAll(required)) {
+            var missing = EnumSet.copyOf(required);
+            missing.removeAll(fields.keySet());
+            throw new IllegalArgumentException("Missing required fields " + missing + " for " + msgType);
+        }
+        return fields;
+    }
+
+    // Same as decode(String) for a 35=8, but into a reused view
+    public ExecReportView decode(String raw, LocalDateTime recvdTime, ExecReportView into) {
+        checkLength(raw);
+        into.reset(recvdTime);
+        boolean sawMsgType = false;
+        for (int pos = 0; pos < raw.length();) {
+            long field = nextField(raw, pos);
+            int start = valStart(field);
+            int end = valEnd(field);
+            pos = end + 1;
+
+            switch (tag(field)) {
+                case 35 -> {
+                    checkMsgType(raw, start, end, MsgType.EXECUTION_REPORT);
+                    sawMsgType = true;
+                }
+                case 34 -> into.msgSeqNum(parseInt(raw, start, end));
+                case 49 -> read(FixField.SENDER_COMP_ID, raw, start, end);
+                case 56 -> read(FixField.TARGET_COMP_ID, raw, start, end);
+                case 43 -> into.possDup(parseBool(raw, start, end));
+                case 52 -> into.sendingTime(parseUtcTimestampNanos(raw, start, end));
+                case 37 -> into.orderID(raw.substring(start, end));
+                case 11 -> into.clOrdID((ClOrdID) read(FixField.CL_ORD_ID, raw, start, end));
+                case 41 -> into.origClOrdID((OrigClOrdID) read(FixField.ORIG_CL_ORD_ID, raw, start, end));
+                case 17 -> into.execID(raw.substring(start, end));
+                case 21 -> into.handlInst(HandlInst.fromFixChar(parseChar(raw, start, end)));
+                case 1 -> into.account(raw.substring(start, end));
+                case 20 -> into.execTransType(ExecTransType.fromFixChar(parseChar(raw, start, end)));
+                case 150 -> into.execType(ExecType.fromFixChar(parseChar(raw, start, end)));
+                case 39 -> into.ordStatus(OrdStatus.fromFixChar(parseChar(raw, start, end)));
+                case 55 -> into.symbol((Tradeable) read(FixField.SYMBOL, raw, start, end));
+                case 58 -> into.text(raw.substring(start, end));
+                case 15 -> into.currency(read(FixField.CURRENCY, raw, start, end));
+                case 31 -> into.lastPx(parseDouble(raw, start, end));
+                case 32 -> into.lastShares(parseDouble(raw, start, end));
+                case 54 -> into.side(Side.fromFixChar(parseChar(raw, start, end)));
+                case 38 -> into.orderQty(parseDouble(raw, start, end));
+                case 44 -> into.price(parseDouble(raw, start, end));
+                case 40 -> into.ordType(OrdType.fromFixChar(parseChar(raw, start, end)));
+                case 59 -> into.timeInForce(TimeInForce.fromFixChar(parseChar(raw, start, end)));
+                case 60 -> into.transactTime(parseUtcTimestampNanos(raw, start, end));
+                case 64 -> into.settlDate(raw.substring(start, end));
+                case 151 -> into.leavesQty(parseDouble(raw, start, end));
+                case 14 -> into.cumQty(parseDouble(raw, start, end));
+                case 6 -> into.avgPx(parseDouble(raw, start, end));
+                case 442 -> into.multiLegReportingType(MultiLegReportingType.fromFixChar(parseChar(raw, start, end)));
+                case 10 -> {
+                    parseInt(raw, start, end);
+                    into.checkSum();
+                }
+                default -> { } // Not used downstream
+            }
+        }
+        checkRequired(sawMsgType, into.present(), REQUIRED_EXEC_REPORT_MASK, MsgType.EXECUTION_REPORT);
+        return into;
+    }
+
+    // Same as decode(String) for a 35=W, but into a reused view
+    public MdSnapshotView decode(String raw, LocalDateTime recvdTime, MdSnapshotView into) {
+        checkLength(raw);
+        into.reset(recvdTime);
+        boolean sawMsgType = false;
+        MDEntryType entryType = null;
+        double entryPx = Double.NaN;
+        double entrySize = Double.NaN;
+        for (int pos = 0; pos < raw.length();) {
+            long field = nextField(raw, pos);
+            int start = valStart(field);
+            int end = valEnd(field);
+            pos = end + 1;
+
+            switch (tag(field)) {
+                case 35 -> {
+                    checkMsgType(raw, start, end, MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH);
+                    sawMsgType = true;
+                }
+                case 34 -> into.msgSeqNum(parseInt(raw, start, end));
+                case 49 -> read(FixField.SENDER_COMP_ID, raw, start, end);
+                case 56 -> read(FixField.TARGET_COMP_ID, raw, start, end);
+                case 43 -> into.possDup(parseBool(raw, start, end));
+                case 52 -> into.sendingTime(parseUtcTimestampNanos(raw, start, end));
+                case 262 -> into.mdReqID(raw.substring(start, end));
+                case 55 -> into.symbol((Tradeable) read(FixField.SYMBOL, raw, start, end));
+                case 268 -> into.noMDEntries(parseInt(raw, start, end));
+                case 269 -> {
+                    if (!into.has(FixField.NO_MD_ENTRIES)) {
+                        throw new IllegalArgumentException("MDEntryType <269> before NoMDEntries <268>");
+                    }
+                    if (entryType != null) {
+                        addEntry(into, entryType, entryPx, entrySize);
+                    }
+                    entryType = MDEntryType.fromFixChar(parseChar(raw, start, end));
+                    entryPx = Double.NaN;
+                    entrySize = Double.NaN;
+                }
+                case 270 -> entryPx = parseDouble(raw, start, end);
+                case 271 -> entrySize = parseDouble(raw, start, end);
+                case 10 -> {
+                    parseInt(raw, start, end);
+                    into.checkSum();
+                }
+                default -> { } // Not used downstream
+            }
+        }
+        if (entryType != null) {
+            addEntry(into, entryType, entryPx, entrySize);
+        }
+        if (into.has(FixField.NO_MD_ENTRIES)) {
+            checkNumEntries(into.noMDEntries(), into.numEntries());
+        }
+        checkRequired(sawMsgType, into.present(), REQUIRED_SNAPSHOT_MASK, MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH);
+        return into;
+    }
+
+    private void put(EnumMap<FixField, FixFieldVal> fields, FixField field, String val) {
+        fields.put(field, readers.get(field).apply(val));
+    }
+
+    private FixFieldVal read(FixField field, String raw, int start, int end) {
+        return readers.get(field).apply(raw.substring(start, end));
+    }
+
+    private static MDEntry entry(MDEntryType type, double px, double size) {
+        checkEntry(type, px, size);
+        return new MDEntry(type, new MDEntryPx(px), new MDEntrySize(size));
+    }
+
+    private static void addEntry(MdSnapshotView into, MDEntryType type, double px, double size) {
+        checkEntry(type, px, size);
+        into.addEntry(type, px, size);
+    }
+
+    private static void checkEntry(MDEntryType type, double px, double size) {
+        if (Double.isNaN(px) || Double.isNaN(size)) {
+            throw new IllegalArgumentException("MDEntry of type " + type + " is missing MDEntryPx <270> or MDEntrySize <271>");
+        }
+    }
+
+    private static void checkNumEntries(int noMDEntries, int numEntries) {
+        if (numEntries != noMDEntries) {
+            throw new IllegalArgumentException("NoMDEntries <268> was " + noMDEntries +
+                    " but found " + numEntries + " entries");
+        }
+    }
+
+    private static void checkMsgType(String raw, int start, int end, MsgType expected) {
+        var msgType = msgType(raw, start, end);
+        if (msgType != expected) {
+            throw new IllegalArgumentException("Expected MsgType " + expected + " but got " + msgType);
+        }
+    }
+
+    private static void checkRequired(boolean sawMsgType, long present, long required, MsgType msgType) {
+        if (!sawMsgType) {
+            throw new IllegalArgumentException("No MsgType <35> in message");
+        }
+        long missingMask = required & ~present;
+        if (missingMask != 0L) {
+            var missing = EnumSet.noneOf(FixField.class);
+            for (var field : FixField.values()) {
+                if ((missingMask & ExecReportView.bit(field)) != 0L) {
+                    missing.add(field);
+                }
+            }
+            throw new IllegalArgumentException("Missing required fields " + missing + " for " + msgType);
+        }
+    }
+
+    private static long mask(EnumSet<FixField> fields) {
+        long mask = 0L;
+        for (var field : fields) {
+            mask |= ExecReportView.bit(field);
+        }
+        return mask;
+    }
+
+    private static void checkLength(String raw) {
+        if (raw.length() > MAX_MSG_LENGTH) {
+            throw new IllegalArgumentException("Message of length " + raw.length() + " exceeds " + MAX_MSG_LENGTH);
+        }
+    }
+
+    /*
+     * Reads the tag=value field starting at pos, returning the tag and the
+     * bounds of its value packed into one long so the scan allocates nothing.
+     */
+    private static long nextField(String raw, int pos) {
+        int len = raw.length();
+        int tag = 0;
+        char c;
+        while ((c = raw.charAt(pos)) != '=') {
+            if (c < '0' || c > '9' || tag > MAX_MSG_LENGTH / 10) {
+                throw new IllegalArgumentException("Invalid tag char '" + c + "' at " + pos);
+            }
+            tag = tag * 10 + (c - '0');
+            if (++pos == len) {
+                throw new IllegalArgumentException("Truncated tag at " + pos);
+            }
+        }
+        int start = pos + 1;
+        int end = raw.indexOf(SOH, start);
+        if (end < 0) {
+            end = len;
+        }
+        return ((long) tag << (2 * FIELD_BITS)) | ((long) start << FIELD_BITS) | end;
+    }
+
+    private static int tag(long field) {
+        return (int) (field >>> (2 * FIELD_BITS));
+    }
+
+    private static int valStart(long field) {
+        return (int) ((field >>> FIELD_BITS) & FIELD_MASK);
+    }
+
+    private static int valEnd(long field) {
+        return (int) (field & FIELD_MASK);
+    }
+
+    private static MsgType msgType(String raw, int start, int end) {
+        MsgType msgType = null;
+        if (end - start == 1 || end - start == 2) {
+            try {
+                msgType = MsgType.from(raw, start, end);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // Falls through to the unrecognized error below
+            }
+        }
+        if (msgType == null) {
+            throw new IllegalArgumentException("Unrecognized MsgType " + raw.substring(start, end));
+        }
+        return msgType;
+    }
+
+    static char parseChar(String raw, int start, int end) {
+        if (end - start != 1) {
+            throw new IllegalArgumentException("Expected a single char but got " + raw.substring(start, end));
+        }
+        return raw.charAt(start);
+    }
+
+    static boolean parseBool(String raw, int start, int end) {
+        return switch (parseChar(raw, start, end)) {
+            case 'Y' -> true;
+            case 'N' -> false;
+            default -> throw new IllegalArgumentException("Invalid boolean " + raw.substring(start, end));
+        };
+    }
+
+    static int parseInt(String raw, int start, int end) {
+        if (start == end || end - start > 9) {
+            throw new IllegalArgumentException("Invalid int " + raw.substring(start, end));
+        }
+        int val = 0;
+        for (int i = start; i < end; i++) {
+            val = val * 10 + digit(raw, i);
+        }
+        return val;
+    }
+
+    /*
+     * Exact for decimals of up to 15 significant digits, which covers prices
+     * and quantities: the mantissa and power of ten are both exact doubles, so
+     * the one division is correctly rounded. Anything else falls back to
+     * Double.parseDouble.
+     */
+    static double parseDouble(String raw, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && raw.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end) {
+            throw new IllegalArgumentException("Invalid decimal " + raw.substring(start, end));
+        }
+        long mantissa = 0L;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || mantissa >= MAX_EXACT_MANTISSA / 10
+                    || fractionDigits == POW_10.length - 1) {
+                return Double.parseDouble(raw.substring(start, end));
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        double val = fractionDigits > 0 ? mantissa / POW_10[fractionDigits] : mantissa;
+        return negative ? -val : val;
+    }
+
+    static LocalDateTime parseUtcTimestamp(String raw, int start, int end) {
+        long nanos = parseUtcTimestampNanos(raw, start, end);
+        return UtcNanos.toLocalDateTime(nanos);
+    }
+
+    // UTCTimestamp: YYYYMMDD-HH:MM:SS with optional .sss, .ssssss or .sssssssss,
+    // returned as UTC epoch nanos
+    static long parseUtcTimestampNanos(String raw, int start, int end) {
+        int len = end - start;
+        if ((len != 17 && len != 21 && len != 24 && len != 27)
+                || raw.charAt(start + 8) != '-'
+                || raw.charAt(start + 11) != ':'
+                || raw.charAt(start + 14) != ':') {
+            throw new IllegalArgumentException("Invalid UTCTimestamp " + raw.substring(start, end));
+        }
+        long nanos = 0L;
+        if (len > 17) {
+            if (raw.charAt(start + 17) != '.') {
+                throw new IllegalArgumentException("Invalid UTCTimestamp " + raw.substring(start, end));
+            }
+            for (int i = start + 18; i < end; i++) {
+                nanos = nanos * 10 + digit(raw, i);
+            }
+            for (int digits = len - 18; digits < 9; digits++) {
+                nanos *= 10;
+            }
+        }
+        int year = digits(raw, start, 4);
+        int month = digits(raw, start + 4, 2);
+        int day = digits(raw, start + 6, 2);
+        int hour = digits(raw, start + 9, 2);
+        int minute = digits(raw, start + 12, 2);
+        int second = digits(raw, start + 15, 2);
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            throw new IllegalArgumentException("Invalid UTCTimestamp " + raw.substring(start, end));
+        }
+        long secondOfDay = hour * 3600L + minute * 60L + second;
+        return (epochDay(year, month, day) * 86_400L + secondOfDay) * 1_000_000_000L + nanos;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar, for year >= 0
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    private static int digits(String raw, int start, int count) {
+        int val = 0;
+        for (int i = start; i < start + count; i++) {
+            val = val * 10 + digit(raw, i);
+        }
+        return val;
+    }
+
+    private static int digit(String raw, int i) {
+        char c = raw.charAt(i);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Expected digit but got '" + c + "' at " + i);
+        }
+        return c - '0';
+    }
+}
@@ -0,0 +1,332 @@
+package com.abissell.fixbridge;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.abissell.cempaka.orderid.ClOrdrID;
+
+/*
+ * Encodes NewOrderSingle <35=D>, NewOrderMultileg <35=AB> and
+ * OrderCancelRequest <35=F> messages as FIX 4.2 tag=value bytes straight into a preallocated direct ByteBuffer,
+ * for sessions that write raw bytes rather than quickfix.Message objects.
+ *
+ * The body is written first, after room left for the largest BeginString
+ * and BodyLength prefix, and the prefix is then written to end just before
+ * it, so the message starts a few bytes into the buffer. Pxs and qtys are
+ * written as fixed-point decimals with up to 8 places, and timestamps with
+ * millis, reusing the "yyyyMMdd-HH:mm:" prefix while the minute is the same.
+ * ClOrdrIDs are written from their bytes, so encoding builds no Strings
+ * for them.
+ *
+ * Not thread safe, and the buffer returned by each encode call is only
+ * valid until the next one.
+ */
+public final class FixEncoder {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final byte SOH = (byte) FixDecoder.SOH;
+    private static final byte[] BEGIN_STRING = ascii("8=FIX.4.2" + FixDecoder.SOH + "9=");
+    private static final int MAX_BODY_LENGTH_DIGITS = 5;
+    private static final int BODY_START = BEGIN_STRING.length + MAX_BODY_LENGTH_DIGITS + 1;
+
+    private static final int DECIMAL_PTS = 8;
+    private static final long DECIMAL_SCALE = 100_000_000L;
+    // Keeps the scaled value exact as a double
+    private static final double MAX_DECIMAL = (double) (1L << 53) / DECIMAL_SCALE;
+
+    private final ByteBuffer buf;
+    private final byte[] compIDs;
+    private final char handlInst;
+
+    private long cachedMinute = Long.MIN_VALUE;
+    private final byte[] minutePrefix = new byte["yyyyMMdd-HH:mm:".length()];
+
+    public FixEncoder(String senderCompID, String targetCompID, HandlInst handlInst) {
+        this(senderCompID, targetCompID, handlInst, DEFAULT_CAPACITY);
+    }
+
+    public FixEncoder(String senderCompID, String targetCompID, HandlInst handlInst, int capacity) {
+        if (capacity <= BODY_START) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.buf = ByteBuffer.allocateDirect(capacity);
+        this.compIDs = ascii("49=" + senderCompID + FixDecoder.SOH + "56=" + targetCompID + FixDecoder.SOH);
+        this.handlInst = handlInst.fixChar;
+    }
+
+    /*
+     * @return the buffer, positioned at the start of the message with its
+     * limit at the end
+     */
+    public ByteBuffer encodeNewOrderSingle(Order order, int msgSeqNum, LocalDateTime sendingTime) {
+        buf.clear();
+        int start = writeNewOrderSingle(0, order, msgSeqNum, sendingTime);
+        return flip(start);
+    }
+
+    /*
+     * Encodes two orders back to back, for a single write.
+     *
+     * @return as for encodeNewOrderSingle(), covering both messages
+     */
+    public ByteBuffer encodeNewOrderSingles(Order first, int firstSeqNum,
+            Order second, int secondSeqNum, LocalDateTime sendingTime) {
+        buf.clear();
+        int start = writeNewOrderSingle(0, first, firstSeqNum, sendingTime);
+        int firstEnd = buf.position();
+        int secondStart = writeNewOrderSingle(firstEnd, second, secondSeqNum, sendingTime);
+        // Close the few bytes left unused ahead of the second BeginString
+        int secondLength = buf.position() - secondStart;
+        for (int i = 0; i < secondLength; i++) {
+            buf.put(firstEnd + i, buf.get(secondStart + i));
+        }
+        buf.position(firstEnd + secondLength);
+        return flip(start);
+    }
+
+    /*
+     * Encodes both orders as the legs of one NewOrderMultileg, laid out as
+     * in FIX 4.4 since 4.2 has no multileg messages. The multileg takes
+     * first's ClOrdID and each leg carries its own as LegRefID <654>.
+     *
+     * @return as for encodeNewOrderSingle()
+     */
+    public ByteBuffer encodeNewOrderMultileg(Order first, Order second, int msgSeqNum, LocalDateTime sendingTime) {
+        if (!first.tradeable().equals(second.tradeable())) {
+            throw new IllegalArgumentException("Legs must share a tradeable: " + first + ", " + second);
+        }
+        buf.clear();
+        beginBody(0, MsgType.NEW_ORDER_MULTILEG, msgSeqNum, sendingTime);
+        putOrdID(11, first.id());
+        putChar(21, handlInst);
+        putStr(15, first.base().fieldVal());
+        putStr(55, first.tradeable().symbol());
+        putChar(54, Side.AS_DEFINED.fixChar);
+        putTimestamp(60, first.sentTime().time());
+        putChar(40, OrdType.LIMIT.fixChar);
+        putChar(59, first.timeInForce().fixChar);
+        putLong(555, 2);
+        putLeg(first);
+        putLeg(second);
+        return flip(finish(0));
+    }
+
+    // @return as for encodeNewOrderSingle()
+    public ByteBuffer encodeOrderCancelRequest(OrdrCxlReq request, int msgSeqNum, LocalDateTime sendingTime) {
+        var order = request.order();
+        buf.clear();
+        beginBody(0, MsgType.ORDER_CANCEL_REQUEST, msgSeqNum, sendingTime);
+        putOrdID(41, order.id());
+        putOrdID(11, request.id());
+        putStr(55, order.tradeable().symbol());
+        putChar(54, order.side().fixChar);
+        putTimestamp(60, request.sentTime().time());
+        putDecimal(38, order.qty().qty());
+        return flip(finish(0));
+    }
+
+    private int writeNewOrderSingle(int offset, Order order, int msgSeqNum, LocalDateTime sendingTime) {
+        beginBody(offset, MsgType.ORDER_SINGLE, msgSeqNum, sendingTime);
+        putOrdID(11, order.id());
+        putChar(21, handlInst);
+        putStr(15, order.base().fieldVal());
+        putStr(55, order.tradeable().symbol());
+        putChar(54, order.side().fixChar);
+        putTimestamp(60, order.sentTime().time());
+        putDecimal(38, order.qty().qty());
+        putChar(40, OrdType.LIMIT.fixChar);
+        putDecimal(44, order.px().px());
+        putChar(59, order.timeInForce().fixChar);
+        return finish(offset);
+    }
+
+    private void putLeg(Order leg) {
+        putStr(600, leg.tradeable().symbol());
+        putChar(624, leg.side().fixChar);
+        putDecimal(687, leg.qty().qty());
+        putOrdID(654, leg.id());
+        putDecimal(566, leg.px().px());
+    }
+
+    private void beginBody(int offset, MsgType msgType, int msgSeqNum, LocalDateTime sendingTime) {
+        buf.position(offset + BODY_START);
+        putStr(35, msgType.fixStr);
+        buf.put(compIDs);
+        putLong(34, msgSeqNum);
+        putTimestamp(52, sendingTime);
+    }
+
+    /*
+     * Writes the BeginString, BodyLength and CheckSum around the body
+     * written after offset, leaving the position after the CheckSum.
+     *
+     * @return the index the message starts at
+     */
+    private int finish(int offset) {
+        int bodyStart = offset + BODY_START;
+        int bodyEnd = buf.position();
+        int bodyLength = bodyEnd - bodyStart;
+        int lengthDigits = digits(bodyLength);
+        if (lengthDigits > MAX_BODY_LENGTH_DIGITS) {
+            throw new IllegalStateException("Body too long: " + bodyLength);
+        }
+
+        int start = bodyStart - 1 - lengthDigits - BEGIN_STRING.length;
+        buf.position(start);
+        buf.put(BEGIN_STRING);
+        writeDigits(bodyLength, lengthDigits);
+        buf.put(SOH);
+
+        int checkSum = 0;
+        for (int i = start; i < bodyEnd; i++) {
+            checkSum += buf.get(i);
+        }
+        buf.position(bodyEnd);
+        putTag(10);
+        writeDigits(checkSum & 0xFF, 3);
+        buf.put(SOH);
+        return start;
+    }
+
+    private ByteBuffer flip(int start) {
+        buf.limit(buf.position());
+        buf.position(start);
+        return buf;
+    }
+
+    private void putTag(int tag) {
+        writeDigits(tag, digits(tag));
+        buf.put((byte) '=');
+    }
+
+    private void putStr(int tag, String val) {
+        putTag(tag);
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+            if (c == FixDecoder.SOH || c > 0x7F) {
+                throw new IllegalArgumentException("Cannot encode tag " + tag + " value " + val);
+            }
+            buf.put((byte) c);
+        }
+        buf.put(SOH);
+    }
+
+    private void putOrdID(int tag, ClOrdID id) {
+        if (id instanceof ClOrdrID clOrdrID) {
+            putTag(tag);
+            clOrdrID.id().putAscii(buf);
+            buf.put(SOH);
+        } else {
+            putStr(tag, id.fieldVal());
+        }
+    }
+
+    private void putChar(int tag, char val) {
+        putTag(tag);
+        buf.put((byte) val);
+        buf.put(SOH);
+    }
+
+    private void putLong(int tag, long val) {
+        putTag(tag);
+        if (val < 0L) {
+            buf.put((byte) '-');
+            val = -val;
+        }
+        writeDigits(val, digits(val));
+        buf.put(SOH);
+    }
+
+    // Writes the val rounded to DECIMAL_PTS, without trailing zeros
+    private void putDecimal(int tag, double val) {
+        if (!(Math.abs(val) < MAX_DECIMAL)) {
+            throw new IllegalArgumentException("Cannot encode tag " + tag + " value " + val);
+        }
+        putTag(tag);
+        long scaled = Math.round(val * DECIMAL_SCALE);
+        if (scaled < 0L) {
+            buf.put((byte) '-');
+            scaled = -scaled;
+        }
+        long whole = scaled / DECIMAL_SCALE;
+        long fraction = scaled % DECIMAL_SCALE;
+        writeDigits(whole, digits(whole));
+        if (fraction != 0L) {
+            int fractionDigits = DECIMAL_PTS;
+            while (fraction % 10L == 0L) {
+                fraction /= 10L;
+                fractionDigits--;
+            }
+            buf.put((byte) '.');
+            writeDigits(fraction, fractionDigits);
+        }
+        buf.put(SOH);
+    }
+
+    // UTCTimestamp with millis, yyyyMMdd-HH:mm:ss.SSS
+    private void putTimestamp(int tag, LocalDateTime time) {
+        putTag(tag);
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        long minute = Math.floorDiv(epochSecond, 60L);
+        if (minute != cachedMinute) {
+            cacheMinutePrefix(time);
+            cachedMinute = minute;
+        }
+        buf.put(minutePrefix);
+        writeDigits(time.getSecond(), 2);
+        buf.put((byte) '.');
+        writeDigits(time.getNano() / 1_000_000, 3);
+        buf.put(SOH);
+    }
+
+    private void cacheMinutePrefix(LocalDateTime time) {
+        int year = time.getYear();
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Cannot encode timestamp " + time);
+        }
+        setDigits(minutePrefix, 0, year, 4);
+        setDigits(minutePrefix, 4, time.getMonthValue(), 2);
+        setDigits(minutePrefix, 6, time.getDayOfMonth(), 2);
+        minutePrefix[8] = '-';
+        setDigits(minutePrefix, 9, time.getHour(), 2);
+        minutePrefix[11] = ':';
+        setDigits(minutePrefix, 12, time.getMinute(), 2);
+        minutePrefix[14] = ':';
+    }
+
+    // Writes the lowest numDigits digits of val, zero padded
+    private void writeDigits(long val, int numDigits) {
+        int end = buf.position() + numDigits;
+        if (end > buf.limit()) {
+            throw new BufferOverflowException();
+        }
+        for (int i = end - 1; i >= end - numDigits; i--) {
+            buf.put(i, (byte) ('0' + (val % 10L)));
+            val /= 10L;
+        }
+        buf.position(end);
+    }
+
+    private static void setDigits(byte[] bytes, int offset, int val, int numDigits) {
+        for (int i = offset + numDigits - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + (val % 10));
+            val /= 10;
+        }
+    }
+
+    private static int digits(long val) {
+        int digits = 1;
+        while (val >= 10L) {
+            val /= 10L;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -47,11 +47,15 @@ public enum FixField {
     MD_REQ_ID(262, "MDReqID"),
     SUBSCRIPTION_REQUEST_TYPE(263, "SubscriptionRequestType"),
     MARKET_DEPTH(264, "MarketDepth"),
+    MD_UPDATE_TYPE(265, "MDUpdateType"),
     NO_MD_ENTRIES(268, "NoMDEntries"),
     MD_ENTRY_TYPE(269, "MDEntryType"),
     MD_ENTRY_PX(270, "MDEntryPx"),
     MD_ENTRY_SIZE(271, "MDEntrySize"),
-    MD_ENTRIES(-1, "MDEntries");
+    MD_UPDATE_ACTION(279, "MDUpdateAction"),
+    MULTI_LEG_REPORTING_TYPE(442, "MultiLegReportingType"),
+    MD_ENTRIES(-1, "MDEntries"),
+    MD_INC_ENTRIES(-1, "MDIncEntries");
 
     public static final EnumSet<FixField> HEADER_FIELDS =
         EnumSet.of(MSG_TYPE, MSG_SEQ_NUM, SENDER_COMP_ID, TARGET_COMP_ID,
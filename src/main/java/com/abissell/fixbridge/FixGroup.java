@@ -2,6 +2,6 @@ package com.abissell.fixbridge;
 
 public sealed interface FixGroup<T>
         extends FixFieldVal
-        permits MDEntries {
+        permits MDEntries, MDIncEntries {
 
 }
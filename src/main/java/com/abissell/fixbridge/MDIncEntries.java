@@ -0,0 +1,10 @@
+package com.abissell.fixbridge;
+
+import java.util.List;
+
+public /* value */ record MDIncEntries(List<MDIncEntry> entries) implements FixGroup<MDIncEntry> {
+    @Override
+    public FixField field() {
+        return FixField.MD_INC_ENTRIES;
+    }
+}
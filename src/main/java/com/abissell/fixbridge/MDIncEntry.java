@@ -0,0 +1,7 @@
+package com.abissell.fixbridge;
+
+public /* primitive */ /* value */ record MDIncEntry(
+        MDUpdateAction action,
+        MDEntryType type,
+        MDEntryPx px,
+        MDEntrySize size) { }
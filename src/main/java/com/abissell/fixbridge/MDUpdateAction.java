@@ -0,0 +1,27 @@
+package com.abissell.fixbridge;
+
+public enum MDUpdateAction implements FixCharMappedEnum<MDUpdateAction> {
+    NEW('0'),
+    CHANGE('1'),
+    DELETE('2');
+
+    public final char fixChar;
+
+    MDUpdateAction(char fixChar) {
+        this.fixChar = fixChar;
+    }
+
+    public FixField field() {
+        return FixField.MD_UPDATE_ACTION;
+    }
+
+    public char fieldVal() {
+        return fixChar;
+    }
+
+    private static final MDUpdateAction[] LOOKUP_TABLE = MDUpdateAction.values();
+
+    public static MDUpdateAction fromFixChar(char c) {
+        return FixCharMappedEnum.fromFixChar(c, LOOKUP_TABLE);
+    }
+}
@@ -0,0 +1,31 @@
+package com.abissell.fixbridge;
+
+public enum MDUpdateType implements FixCharMappedEnum<MDUpdateType> {
+    FULL_REFRESH('0'),
+    INCREMENTAL_REFRESH('1');
+
+    public final char fixChar;
+
+    MDUpdateType(char fixChar) {
+        this.fixChar = fixChar;
+    }
+
+    public FixField field() {
+        return FixField.MD_UPDATE_TYPE;
+    }
+
+    public char fieldVal() {
+        return fixChar;
+    }
+
+    // MDUpdateType <265> is an int field on the wire
+    public int fixInt() {
+        return fixChar - '0';
+    }
+
+    private static final MDUpdateType[] LOOKUP_TABLE = MDUpdateType.values();
+
+    public static MDUpdateType fromFixChar(char c) {
+        return FixCharMappedEnum.fromFixChar(c, LOOKUP_TABLE);
+    }
+}
@@ -0,0 +1,160 @@
+package com.abissell.fixbridge;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import com.abissell.cempaka.util.UtcNanos;
+
+/*
+ * Reusable, mutable view of a MarketDataSnapshotFullRefresh <35=W>, with
+ * the MDEntries held in parallel primitive arrays that grow as needed and
+ * are then reused. Presence of the non-repeating fields is tracked as in
+ * ExecReportView.
+ *
+ * Filled by FixDecoder or load() and read by a single thread at a time.
+ */
+public final class MdSnapshotView {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long present;
+    private LocalDateTime recvdTime;
+
+    private int msgSeqNum;
+    private boolean possDup;
+    private long sendingTime;
+    private String mdReqID;
+    private Tradeable symbol;
+    private int noMDEntries;
+
+    private int numEntries;
+    private MDEntryType[] entryTypes = new MDEntryType[INITIAL_CAPACITY];
+    private double[] entryPxs = new double[INITIAL_CAPACITY];
+    private double[] entrySizes = new double[INITIAL_CAPACITY];
+
+    public boolean has(FixField field) {
+        return (present & ExecReportView.bit(field)) != 0L;
+    }
+
+    public LocalDateTime recvdTime() { return recvdTime; }
+    public int msgSeqNum() { return msgSeqNum; }
+    public boolean isPossDup() { return possDup; }
+    public long sendingTime() { return sendingTime; }
+    public String mdReqID() { return mdReqID; }
+    public Tradeable symbol() { return symbol; }
+
+    // The count given by NoMDEntries <268>
+    public int noMDEntries() { return noMDEntries; }
+
+    // The count of entries actually read
+    public int numEntries() { return numEntries; }
+
+    public MDEntryType entryType(int i) {
+        checkIdx(i);
+        return entryTypes[i];
+    }
+
+    public double entryPx(int i) {
+        checkIdx(i);
+        return entryPxs[i];
+    }
+
+    public double entrySize(int i) {
+        checkIdx(i);
+        return entrySizes[i];
+    }
+
+    private void checkIdx(int i) {
+        if (i < 0 || i >= numEntries) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+
+    // Copies the fields of a snapshot already read into an EnumMap
+    public MdSnapshotView load(EnumMap<FixField, FixFieldVal> fields, LocalDateTime recvdTime) {
+        reset(recvdTime);
+        fields.forEach((field, val) -> {
+            switch (val) {
+                case MsgSeqNum v -> msgSeqNum(v.seqNum());
+                case PossDupFlag v -> possDup(v.flag());
+                case SendingTime v -> sendingTime(UtcNanos.from(v.sendingTime()));
+                case MDReqID v -> mdReqID(v.id());
+                case NoMDEntries v -> noMDEntries(v.noMDEntries());
+                case MDEntries v -> v.entries().forEach(e -> addEntry(e.type(), e.px().px(), e.size().size()));
+                case CheckSum v -> checkSum();
+                default -> {
+                    if (field == FixField.SYMBOL) {
+                        symbol((Tradeable) val);
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    void reset(LocalDateTime recvdTime) {
+        present = 0L;
+        this.recvdTime = recvdTime;
+        mdReqID = null;
+        symbol = null;
+        noMDEntries = 0;
+        numEntries = 0;
+    }
+
+    void msgSeqNum(int v) { msgSeqNum = v; set(FixField.MSG_SEQ_NUM); }
+    void possDup(boolean v) { possDup = v; set(FixField.POSS_DUP_FLAG); }
+    void sendingTime(long v) { sendingTime = v; set(FixField.SENDING_TIME); }
+    void mdReqID(String v) { mdReqID = v; set(FixField.MD_REQ_ID); }
+    void symbol(Tradeable v) { symbol = v; set(FixField.SYMBOL); }
+    void checkSum() { set(FixField.CHECK_SUM); }
+
+    // The group is present, if possibly empty, once its count is read
+    void noMDEntries(int v) {
+        noMDEntries = v;
+        set(FixField.NO_MD_ENTRIES);
+        set(FixField.MD_ENTRIES);
+        ensureCapacity(v);
+    }
+
+    void addEntry(MDEntryType type, double px, double size) {
+        ensureCapacity(numEntries + 1);
+        entryTypes[numEntries] = type;
+        entryPxs[numEntries] = px;
+        entrySizes[numEntries] = size;
+        numEntries++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > entryPxs.length) {
+            int newCapacity = Math.max(capacity, entryPxs.length << 1);
+            entryTypes = Arrays.copyOf(entryTypes, newCapacity);
+            entryPxs = Arrays.copyOf(entryPxs, newCapacity);
+            entrySizes = Arrays.copyOf(entrySizes, newCapacity);
+        }
+    }
+
+    long present() {
+        return present;
+    }
+
+    private void set(FixField field) {
+        present |= ExecReportView.bit(field);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("MdSnapshotView[recvdTime=").append(recvdTime);
+        if (has(FixField.MSG_SEQ_NUM)) sb.append(", msgSeqNum=").append(msgSeqNum);
+        if (has(FixField.POSS_DUP_FLAG)) sb.append(", possDup=").append(possDup);
+        if (has(FixField.SENDING_TIME)) sb.append(", sendingTime=").append(sendingTime);
+        if (has(FixField.MD_REQ_ID)) sb.append(", mdReqID=").append(mdReqID);
+        if (has(FixField.SYMBOL)) sb.append(", symbol=").append(symbol);
+        if (has(FixField.NO_MD_ENTRIES)) sb.append(", noMDEntries=").append(noMDEntries);
+        sb.append(", entries=[");
+        for (int i = 0; i < numEntries; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(entryTypes[i]).append(' ').append(entrySizes[i]).append('@').append(entryPxs[i]);
+        }
+        return sb.append("]]").toString();
+    }
+}
@@ -6,4 +6,5 @@ public /* value */ record MktDataSubscriptionReq(
         MDReqID mdReqID,
         SubscriptionRequestType subReqType,
         MarketDepth marketDepth,
+        MDUpdateType updateType,
         Opt<MinQty> minQty) { }
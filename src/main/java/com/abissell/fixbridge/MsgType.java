@@ -149,10 +149,15 @@ public enum MsgType implements FixStrMappedEnum<MsgType> {
     }
 
     public static MsgType from(String s) {
-        return switch (s.length()) {
-            case 1 -> LOOKUP[s.charAt(0)][0];
-            case 2 -> LOOKUP[s.charAt(1)][s.charAt(0) - '@'];
-            default -> throw new IllegalArgumentException(s);
+        return from(s, 0, s.length());
+    }
+
+    // Looks up the MsgType in s[start, end) without creating a substring
+    public static MsgType from(CharSequence s, int start, int end) {
+        return switch (end - start) {
+            case 1 -> LOOKUP[s.charAt(start)][0];
+            case 2 -> LOOKUP[s.charAt(start + 1)][s.charAt(start) - '@'];
+            default -> throw new IllegalArgumentException(s.subSequence(start, end).toString());
         };
     }
 }
@@ -0,0 +1,30 @@
+package com.abissell.fixbridge;
+
+public enum MultiLegReportingType implements FixCharMappedEnum<MultiLegReportingType> {
+    INDEX_0_DO_NOT_USE('0'),
+    SINGLE_SECURITY('1'),
+    INDIVIDUAL_LEG_OF_MULTI_LEG_SECURITY('2'),
+    MULTI_LEG_SECURITY('3');
+
+    public final char fixChar;
+
+    MultiLegReportingType(char fixChar) {
+        this.fixChar = fixChar;
+    }
+
+    @Override
+    public char fieldVal() {
+        return fixChar;
+    }
+
+    @Override
+    public FixField field() {
+        return FixField.MULTI_LEG_REPORTING_TYPE;
+    }
+
+    private static final MultiLegReportingType[] LOOKUP_TABLE = MultiLegReportingType.values();
+
+    public static MultiLegReportingType fromFixChar(char c) {
+        return FixCharMappedEnum.fromFixChar(c, LOOKUP_TABLE);
+    }
+}
@@ -2,7 +2,6 @@ package com.abissell.fixbridge;
 
 public /* value */ record Order(
         ClOrdID id,
-        String idStr,
         Tradeable tradeable,
         FixString base,
         Side side,
@@ -11,12 +10,16 @@ public /* value */ record Order(
         TimeInForce timeInForce,
         TransactTime sentTime) {
 
-    public Order(ClOrdID ordID, Tradeable tradeable, FixString base, Side side, OrderQty qty,
-            Price px, TimeInForce timeInForce, TransactTime sentTime) {
-        this(ordID, ordID.fieldVal(), tradeable, base, side, qty, px, timeInForce, sentTime);
+    /*
+     * Built on each call, for the QFJ sessions which need a String. The
+     * FixEncoder writes the id's bytes directly, so orders sent raw never
+     * build it.
+     */
+    public String idStr() {
+        return id.fieldVal();
     }
 
     public Order withNewQty(OrderQty newQty) {
-        return new Order(id, idStr, tradeable, base, side, newQty, px, timeInForce, sentTime);
+        return new Order(id, tradeable, base, side, newQty, px, timeInForce, sentTime);
     }
 }
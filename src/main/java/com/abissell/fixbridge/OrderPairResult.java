@@ -0,0 +1,11 @@
+package com.abissell.fixbridge;
+
+import com.abissell.javautil.rusty.ErrType;
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.javautil.rusty.Result;
+
+// second is none if it was never sent because first failed
+public /* value */ record OrderPairResult<R, E extends ErrType<E>>(
+        Result<R, E> first,
+        Opt<Result<R, E>> second) {
+}
@@ -0,0 +1,51 @@
+package com.abissell.fixbridge;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import com.abissell.javautil.rusty.ErrType;
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.javautil.rusty.Result;
+
+/*
+ * An ExecSessionBridge for sessions that write tag=value bytes to the wire
+ * themselves, rather than handing quickfix.Message objects to QuickFIX/J.
+ * Orders and cancels are encoded by the session's FixEncoder and passed to
+ * sendRaw() without any intermediate message object.
+ *
+ * Implementations own sequencing: the MsgSeqNum taken for a message must
+ * be the next one written, so take and send under the same lock or from a
+ * single thread.
+ */
+public interface RawExecSessionBridge<R, E extends ErrType<E>> extends ExecSessionBridge<R, E> {
+    FixEncoder encoder();
+    int nextSenderMsgSeqNum();
+    LocalDateTime sendingTime();
+
+    // The bytes between the buffer's position and limit are one or more complete messages
+    Result<R, E> sendRaw(ByteBuffer msg);
+
+    @Override
+    default Result<R, E> sendNewOrderSingle(Order order) {
+        return sendRaw(encoder().encodeNewOrderSingle(order, nextSenderMsgSeqNum(), sendingTime()));
+    }
+
+    // Both orders go out in the one write, so share its result
+    @Override
+    default OrderPairResult<R, E> sendNewOrderSingles(Order first, Order second) {
+        int firstSeqNum = nextSenderMsgSeqNum();
+        int secondSeqNum = nextSenderMsgSeqNum();
+        var result = sendRaw(encoder().encodeNewOrderSingles(first, firstSeqNum, second, secondSeqNum, sendingTime()));
+        return new OrderPairResult<>(result, Opt.of(result));
+    }
+
+    @Override
+    default Result<R, E> sendNewOrderMultileg(Order first, Order second) {
+        return sendRaw(encoder().encodeNewOrderMultileg(first, second, nextSenderMsgSeqNum(), sendingTime()));
+    }
+
+    @Override
+    default Result<R, E> sendOrderCancelRequest(OrdrCxlReq request) {
+        return sendRaw(encoder().encodeOrderCancelRequest(request, nextSenderMsgSeqNum(), sendingTime()));
+    }
+}
@@ -18,6 +18,7 @@
 package com.abissell.cempaka;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
@@ -184,4 +185,53 @@ public class CxdBookAnalyzerTest {
         assertEquals(bidUpdate0, analysis.cxdBidLvls().get(0).update());
         assertEquals(new OrderQty(2.0d), analysis.cxdBidLvls().get(0).qty());
     }
+
+    @Test
+    public void writesCrossesIntoReusableBuf() {
+        var book = new MktDataBook(CcyPair.NUMER_2_DENOM_2);
+        var now = LocalDateTime.now();
+        var bidUpdate0 = new SidePxQtyUpdate(
+                new SidePxQty(Side.BUY,
+                    new Price(1700.0d),
+                    new OrderQty(9.0d)
+                ), now, now);
+        var bidUpdate1 = new SidePxQtyUpdate(
+                new SidePxQty(Side.BUY,
+                    new Price(1699.0d),
+                    new OrderQty(2.0d)
+                ), now, now);
+        var askUpdate1 = new SidePxQtyUpdate(
+                new SidePxQty(Side.SELL,
+                    new Price(1698.9d),
+                    new OrderQty(1.0d)
+                ), now, now);
+        var askUpdate0 = new SidePxQtyUpdate(
+                new SidePxQty(Side.SELL,
+                    new Price(1698.8d),
+                    new OrderQty(3.0d)
+                ), now, now);
+        book.updateBook(
+                Arrays.asList(bidUpdate0, bidUpdate1),
+                Arrays.asList(askUpdate0, askUpdate1));
+        var analyzer = new CxdBookAnalyzer(Fees.ZERO);
+        var minSigQty = Constraints.on(Ccy.NUMER_2).minSigQty();
+        var analysis = analyzer.analyze(book, minSigQty);
+        var buf = new CxdBookBuf();
+        assertTrue(analyzer.analyze(book, minSigQty, buf));
+        assertEquals(analysis.theoValUsd(), buf.theoValUsd());
+        for (var side : new Side[] { Side.BUY, Side.SELL }) {
+            assertEquals(analysis.numCxdLvls(side), buf.numCxdLvls(side));
+            for (int i = 0; i < buf.numCxdLvls(side); i++) {
+                assertEquals(analysis.cxdPx(side, i), buf.cxdPx(side, i));
+                assertEquals(analysis.cxdQty(side, i), buf.cxdQty(side, i));
+            }
+        }
+
+        // Reusing the buf for an uncrossed book leaves nothing behind
+        book.updateBook(Arrays.asList(bidUpdate1), Arrays.asList(new SidePxQtyUpdate(
+                new SidePxQty(Side.SELL, new Price(1699.5d), new OrderQty(1.0d)), now, now)));
+        assertFalse(analyzer.analyze(book, minSigQty, buf));
+        assertEquals(0, buf.numCxdLvls(Side.BUY));
+        assertEquals(0, buf.numCxdLvls(Side.SELL));
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.cempaka.data.CxOrders;
+import com.abissell.cempaka.data.ExecLedger;
+import com.abissell.cempaka.data.ExecLedgers;
+import com.abissell.cempaka.data.Pnl;
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StateSnapshotTest {
+    @Test
+    public void testReadsBackWrittenSnapshot(@TempDir Path dir) throws IOException {
+        assertTrue(StateSnapshot.read(dir).isNone());
+
+        var now = LocalDateTime.now();
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var buy = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(2.5d),
+                new Price(1.25d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var open = new ExecLedger.OpenOrder(buy, OrdStatus.PARTIALLY_FILLED, true, 1.0d, 1.2d);
+        var multilegId = ClOrdrID.next();
+        var buyLeg = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(0.5d),
+                new Price(1.24d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var sellLeg = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.SELL, new OrderQty(0.5d),
+                new Price(1.26d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var legs = new CxOrders(buyLeg, sellLeg);
+        var pnl = new Pnl(1.0d, 2.0d, 3.0d, 4.0d, 5.0d, 6.0d, 7.0d, 8.0d, 9.0d);
+        var ledgers = new ExecLedgers.State<>(Opt.of(now.minusSeconds(1L)), 42,
+                Map.of(pair, new ExecLedger.State(pnl, 3, List.of(open), Map.of(multilegId, legs))));
+        var risk = new CcyPairRiskLimits(now).state();
+
+        var written = new StateSnapshot(now, ledgers, risk);
+        written.write(dir);
+        var read = StateSnapshot.read(dir).get();
+
+        assertEquals(now, read.takenTime());
+        assertEquals(now.minusSeconds(1L), read.ledgers().lastAppliedRecvdTime().get());
+        assertEquals(42, read.ledgers().lastAppliedMsgSeqNum());
+        assertEquals(ledgers.ledgers(), read.ledgers().ledgers());
+        assertEquals(risk, read.risk());
+    }
+}
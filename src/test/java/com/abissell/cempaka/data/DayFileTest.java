@@ -0,0 +1,77 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DayFileTest {
+    private static final DayFile.Format FORMAT = new DayFile.Format("test", "test file", 0x434D5446, 1, 16);
+
+    @Test
+    public void testTruncatesAsciiToItsField() {
+        var buf = ByteBuffer.allocate(8);
+        DayFile.putAscii(buf, 0, 4, "NUMER_1");
+        assertEquals("NUME", DayFile.getAscii(buf, 0, 4));
+        DayFile.putAscii(buf, 0, 4, "AB");
+        assertEquals("AB", DayFile.getAscii(buf, 0, 4));
+    }
+
+    @Test
+    public void testContinuesTheCountAfterARestart(@TempDir Path dir) throws IOException {
+        var day = LocalDate.of(2023, 4, 12);
+        try (var file = new DayFile(dir, FORMAT)) {
+            int pos = file.nextRecord(day);
+            file.buf().putLong(pos, 7L);
+            file.committed();
+        }
+        try (var file = new DayFile(dir, FORMAT)) {
+            int pos = file.nextRecord(day);
+            assertEquals(DayFile.HEADER_SIZE + 16, pos);
+            file.buf().putLong(pos, 8L);
+            file.committed();
+            assertEquals(2L, file.count());
+        }
+
+        try (var reader = DayFile.Reader.open(FORMAT.fileFor(dir, day), FORMAT)) {
+            assertEquals(day, reader.day());
+            assertEquals(2, reader.count());
+            assertEquals(8L, reader.buf().getLong(reader.pos(1)));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.pos(2));
+        }
+    }
+
+    @Test
+    public void testRejectsAnotherFormat(@TempDir Path dir) {
+        var day = LocalDate.of(2023, 4, 12);
+        try (var file = new DayFile(dir, FORMAT)) {
+            file.nextRecord(day);
+            file.committed();
+        }
+        var other = new DayFile.Format("test", "other file", 0x434D5446, 1, 32);
+        assertThrows(IllegalStateException.class, () -> DayFile.Reader.open(FORMAT.fileFor(dir, day), other));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.CumQty;
+import com.abissell.fixbridge.ExecID;
+import com.abissell.fixbridge.ExecReportView;
+import com.abissell.fixbridge.ExecType;
+import com.abissell.fixbridge.FixField;
+import com.abissell.fixbridge.FixFieldVal;
+import com.abissell.fixbridge.LastPx;
+import com.abissell.fixbridge.LastShares;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExecJournalTest {
+    @Test
+    public void testReadsBackAppendedRecords(@TempDir Path dir) throws IOException {
+        var now = LocalDateTime.now();
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var buy = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(2.5d),
+                new Price(1.25d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var sell = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.SELL, new OrderQty(2.5d),
+                new Price(1.25d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var fields = new EnumMap<FixField, FixFieldVal>(FixField.class);
+        fields.put(FixField.CL_ORD_ID, buy.id());
+        fields.put(FixField.SYMBOL, pair);
+        fields.put(FixField.SIDE, Side.BUY);
+        fields.put(FixField.EXEC_TYPE, ExecType.PARTIAL_FILL);
+        fields.put(FixField.ORD_STATUS, OrdStatus.PARTIALLY_FILLED);
+        fields.put(FixField.ORDER_QTY, new OrderQty(2.5d));
+        fields.put(FixField.PRICE, new Price(1.25d));
+        fields.put(FixField.LAST_SHARES, new LastShares(1.0d));
+        fields.put(FixField.LAST_PX, new LastPx(1.2d));
+        fields.put(FixField.CUM_QTY, new CumQty(1.0d));
+        fields.put(FixField.EXEC_ID, new ExecID("exec-1"));
+        fields.put(FixField.TRANSACT_TIME, new TransactTime(now));
+        var execReport = new ExecReportView().load(fields, now.plusSeconds(1L));
+
+        try (var journal = new ExecJournal(dir)) {
+            journal.appendEntryOrder(buy, TradingMode.DRY_RUN);
+            journal.appendEntryOrder(sell, TradingMode.DRY_RUN);
+            journal.appendEntry(new CxOrders(buy, sell), 0.5d, 0.75d, 0.25d, 1.5d, 2.25d, 0.75d);
+            journal.appendExecReport(execReport);
+            assertEquals(4L, journal.count());
+        }
+
+        try (var reader = ExecJournal.Reader.open(dir, now.toLocalDate())) {
+            assertEquals(4, reader.count());
+            assertEquals(ExecJournal.ENTRY_ORDER, reader.kind(0));
+            assertEquals(buy, reader.entryOrder(0));
+            assertEquals(TradingMode.DRY_RUN, reader.entryOrderMode(0));
+            assertEquals(sell, reader.entryOrder(1));
+
+            var entry = reader.entry(2);
+            assertEquals(buy.id(), entry.buyId());
+            assertEquals(sell.id(), entry.sellId());
+            assertEquals(0.5d, entry.netPnl());
+            assertEquals(0.75d, entry.cumFees());
+
+            var read = reader.execReport(3, new ExecReportView());
+            assertEquals(now.plusSeconds(1L), read.recvdTime());
+            assertEquals(buy.id(), read.clOrdID());
+            assertEquals(pair, read.symbol());
+            assertEquals(ExecType.PARTIAL_FILL, read.execType());
+            assertEquals(OrdStatus.PARTIALLY_FILLED, read.ordStatus());
+            assertEquals(1.0d, read.lastShares());
+            assertEquals(1.2d, read.lastPx());
+            assertEquals(1.0d, read.cumQty());
+            assertEquals("exec-1", read.execID());
+            assertEquals(execReport.transactTime(), read.transactTime());
+            assertFalse(read.has(FixField.AVG_PX));
+            assertFalse(read.has(FixField.TIME_IN_FORCE));
+        }
+    }
+}
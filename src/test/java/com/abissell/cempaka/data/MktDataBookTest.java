@@ -0,0 +1,151 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.cempaka.util.FixedPoint;
+
+import com.abissell.fixbridge.FixField;
+import com.abissell.fixbridge.FixFieldVal;
+import com.abissell.fixbridge.MDEntryPx;
+import com.abissell.fixbridge.MDEntrySize;
+import com.abissell.fixbridge.MDEntryType;
+import com.abissell.fixbridge.MDIncEntries;
+import com.abissell.fixbridge.MDIncEntry;
+import com.abissell.fixbridge.MDUpdateAction;
+import com.abissell.fixbridge.MsgType;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.ParsedFixMsg;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.SendingTime;
+import com.abissell.fixbridge.Side;
+
+public class MktDataBookTest {
+    @Test
+    public void testAppliesIncrementsInPxOrder() {
+        var book = new MktDataBook(CcyPair.NUMER_2_DENOM_2);
+        var now = LocalDateTime.now();
+        var bid = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(1700.0d), new OrderQty(0.1d)), now, now);
+        var ask = new SidePxQtyUpdate(new SidePxQty(Side.SELL, new Price(1700.2d), new OrderQty(0.1d)), now, now);
+        book.updateBook(Arrays.asList(bid), Arrays.asList(ask));
+
+        book.applyIncrement(incRefresh(now,
+                    new MDIncEntry(MDUpdateAction.NEW, MDEntryType.BID, new MDEntryPx(1700.1d), new MDEntrySize(0.2d)),
+                    new MDIncEntry(MDUpdateAction.NEW, MDEntryType.BID, new MDEntryPx(1699.9d), new MDEntrySize(0.3d)),
+                    new MDIncEntry(MDUpdateAction.CHANGE, MDEntryType.OFFER, new MDEntryPx(1700.2d), new MDEntrySize(0.4d))
+                ));
+
+        var bids = book.bids();
+        assertEquals(3, bids.size());
+        assertEquals(1700.1d, bids.px(0));
+        assertEquals(1700.0d, bids.px(1));
+        assertEquals(1699.9d, bids.px(2));
+        assertEquals(0.4d, book.asks().qty(0));
+
+        book.applyIncrement(incRefresh(now,
+                    new MDIncEntry(MDUpdateAction.DELETE, MDEntryType.BID, new MDEntryPx(1700.0d), new MDEntrySize(0.0d)),
+                    new MDIncEntry(MDUpdateAction.DELETE, MDEntryType.OFFER, new MDEntryPx(1700.2d), new MDEntrySize(0.0d))
+                ));
+
+        bids = book.bids();
+        assertEquals(2, bids.size());
+        assertEquals(1700.1d, bids.px(0));
+        assertEquals(1699.9d, bids.px(1));
+        assertTrue(book.asks().isEmpty());
+    }
+
+    @Test
+    public void testKeepsSnapshotLevelsSorted() {
+        var book = new MktDataBook(CcyPair.NUMER_2_DENOM_2);
+        var now = LocalDateTime.now();
+        var bid0 = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(1699.0d), new OrderQty(0.1d)), now, now);
+        var bid1 = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(1700.0d), new OrderQty(0.1d)), now, now);
+        var bid2 = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(1700.0d), new OrderQty(0.3d)), now, now);
+        var ask0 = new SidePxQtyUpdate(new SidePxQty(Side.SELL, new Price(1701.0d), new OrderQty(0.1d)), now, now);
+        var ask1 = new SidePxQtyUpdate(new SidePxQty(Side.SELL, new Price(1700.5d), new OrderQty(0.1d)), now, now);
+        book.updateBook(Arrays.asList(bid0, bid1, bid2), Arrays.asList(ask0, ask1));
+
+        assertEquals(3, book.bids().size());
+        assertEquals(bid2, book.bids().update(0));
+        assertEquals(bid1, book.bids().update(1));
+        assertEquals(bid0, book.bids().update(2));
+        assertEquals(ask1, book.asks().update(0));
+        assertEquals(ask0, book.asks().update(1));
+    }
+
+    @Test
+    public void testBumpsVersionOnlyWhenLevelsChange() {
+        var book = new MktDataBook(CcyPair.NUMER_2_DENOM_2);
+        var now = LocalDateTime.now();
+        var bid = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(1700.0d), new OrderQty(0.1d)), now, now);
+        var ask = new SidePxQtyUpdate(new SidePxQty(Side.SELL, new Price(1700.2d), new OrderQty(0.1d)), now, now);
+        book.updateBook(Arrays.asList(bid), Arrays.asList(ask));
+        var version = book.version();
+
+        var later = now.plusSeconds(1L);
+        var sameBid = new SidePxQtyUpdate(bid.level(), later, later);
+        var sameAsk = new SidePxQtyUpdate(ask.level(), later, later);
+        book.updateBook(Arrays.asList(sameBid), Arrays.asList(sameAsk));
+        assertEquals(version, book.version());
+
+        book.applyIncrement(incRefresh(later,
+                    new MDIncEntry(MDUpdateAction.CHANGE, MDEntryType.BID, new MDEntryPx(1700.0d), new MDEntrySize(0.1d)),
+                    new MDIncEntry(MDUpdateAction.DELETE, MDEntryType.OFFER, new MDEntryPx(1700.3d), new MDEntrySize(0.0d))
+                ));
+        assertEquals(version, book.version());
+
+        book.applyIncrement(incRefresh(later,
+                    new MDIncEntry(MDUpdateAction.CHANGE, MDEntryType.BID, new MDEntryPx(1700.0d), new MDEntrySize(0.2d))
+                ));
+        assertEquals(version + 1, book.version());
+    }
+
+    @Test
+    public void testFixedPointBookMatchesPxsEqualAsDecimals() {
+        var book = new MktDataBook(CcyPair.NUMER_2_DENOM_2, Opt.of(FixedPoint.MKT_DATA_DECIMAL_PTS));
+        var now = LocalDateTime.now();
+        var bid = new SidePxQtyUpdate(new SidePxQty(Side.BUY, new Price(0.1d + 0.2d), new OrderQty(0.1d)), now, now);
+        book.updateBook(Arrays.asList(bid), Arrays.asList());
+        assertEquals(0.3d, book.bids().px(0));
+
+        book.applyIncrement(incRefresh(now,
+                    new MDIncEntry(MDUpdateAction.CHANGE, MDEntryType.BID, new MDEntryPx(0.3d), new MDEntrySize(0.2d))
+                ));
+        assertEquals(1, book.bids().size());
+        assertEquals(0.2d, book.bids().qty(0));
+    }
+
+    private static ParsedFixMsg incRefresh(LocalDateTime now, MDIncEntry... entries) {
+        var map = new EnumMap<FixField, FixFieldVal>(FixField.class);
+        map.put(FixField.MSG_TYPE, MsgType.MARKET_DATA_INCREMENTAL_REFRESH);
+        map.put(FixField.SENDING_TIME, new SendingTime(now));
+        map.put(FixField.SYMBOL, CcyPair.NUMER_2_DENOM_2);
+        map.put(FixField.MD_INC_ENTRIES, new MDIncEntries(List.of(entries)));
+        return new ParsedFixMsg(map, now);
+    }
+}
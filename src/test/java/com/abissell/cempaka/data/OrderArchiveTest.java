@@ -0,0 +1,107 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OrderArchiveTest {
+    @Test
+    public void testReadsBackAppendedOrders(@TempDir Path dir) throws IOException {
+        var now = LocalDateTime.now();
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var filled = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(2.5d),
+                new Price(1.25d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var canceled = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.SELL, new OrderQty(2.5d),
+                new Price(1.25d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        try (var archive = new OrderArchive(dir)) {
+            archive.append(filled, OrdStatus.FILLED, true, 2.5d, 1.2d, now.plusSeconds(1L));
+            archive.append(canceled, OrdStatus.CANCELED, false, 0.0d, 0.0d, now.plusSeconds(2L));
+            assertEquals(2L, archive.count());
+        }
+
+        try (var reader = OrderArchive.Reader.open(dir, now.toLocalDate())) {
+            assertEquals(now.toLocalDate(), reader.day());
+            assertEquals(2, reader.count());
+            var first = reader.get(0);
+            assertEquals(filled.id(), first.id());
+            assertEquals(pair.symbol(), first.symbol());
+            assertEquals(pair.ccy1.fieldVal(), first.base());
+            assertEquals(Side.BUY, first.side());
+            assertEquals(2.5d, first.qty());
+            assertEquals(1.25d, first.px());
+            assertEquals(TimeInForce.IMMEDIATE_OR_CANCEL, first.timeInForce());
+            assertEquals(now, first.sentTime());
+            assertEquals(OrdStatus.FILLED, first.status());
+            assertTrue(first.filled());
+            assertEquals(1.2d, first.avgPx());
+            assertEquals(now.plusSeconds(1L), first.terminalTime());
+
+            var second = reader.find((ClOrdrID) canceled.id());
+            assertFalse(second.isNone());
+            assertEquals(OrdStatus.CANCELED, second.get().status());
+            assertFalse(second.get().filled());
+            assertTrue(reader.find(ClOrdrID.next()).isNone());
+        }
+    }
+
+    @Test
+    public void testAppendsAcrossRestartsAndDays(@TempDir Path dir) throws IOException {
+        var now = LocalDateTime.now();
+        var pair = CcyPair.NUMER_1_DENOM_1;
+        var rejected = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(0.1d),
+                new Price(1.05d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        try (var archive = new OrderArchive(dir)) {
+            archive.append(rejected, OrdStatus.REJECTED, false, 0.0d, 0.0d, now);
+        }
+        var nextDay = now.plusDays(1L);
+        var buy = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.BUY, new OrderQty(0.2d),
+                new Price(1.05d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(now));
+        var sell = new Order(ClOrdrID.next(), pair, pair.ccy1, Side.SELL, new OrderQty(0.2d),
+                new Price(1.06d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(nextDay));
+        try (var archive = new OrderArchive(dir)) {
+            archive.append(buy, OrdStatus.FILLED, true, 0.2d, 1.05d, now);
+            assertEquals(2L, archive.count());
+            archive.append(sell, OrdStatus.FILLED, true, 0.2d, 1.06d, nextDay);
+            assertEquals(1L, archive.count());
+        }
+
+        assertTrue(Files.exists(OrderArchive.fileFor(dir, nextDay.toLocalDate())));
+        try (var reader = OrderArchive.Reader.open(dir, now.toLocalDate())) {
+            assertEquals(2, reader.count());
+            assertEquals(OrdStatus.REJECTED, reader.get(0).status());
+        }
+    }
+}
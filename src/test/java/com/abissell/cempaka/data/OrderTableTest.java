@@ -0,0 +1,117 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.cempaka.orderid.OrdrIDGenerator;
+import com.abissell.fixbridge.OrdStatus;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+import org.junit.jupiter.api.Test;
+
+public class OrderTableTest {
+    private static final CcyPair PAIR = CcyPair.NUMER_2_DENOM_2;
+
+    // Consecutive IDs from a fresh generator, so each test knows which slots they take
+    private final OrdrIDGenerator ids = new OrdrIDGenerator(LocalDateTime.now());
+
+    private Order nextOrder() {
+        return new Order(new ClOrdrID(ids.next()), PAIR, PAIR.ccy1, Side.BUY, new OrderQty(1.0d),
+                new Price(1.0d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(LocalDateTime.now()));
+    }
+
+    private static ClOrdrID id(Order order) {
+        return (ClOrdrID) order.id();
+    }
+
+    @Test
+    public void testReusesSlotsOfTerminalOrders() {
+        var table = new OrderTable(4);
+        var first = nextOrder();
+        int firstSlot = table.add(id(first), first);
+        assertEquals(firstSlot, table.find(id(first)));
+        assertEquals(OrdStatus.PENDING_NEW, table.status(firstSlot));
+        assertEquals(1, table.openCount());
+
+        table.setFill(firstSlot, OrdStatus.FILLED, 1.0d, 1.5d);
+        assertEquals(0, table.openCount());
+        assertEquals(1.5d, table.avgPx(firstSlot));
+        for (int i = 0; i < 3; i++) {
+            var order = nextOrder();
+            table.setStatus(table.add(id(order), order), OrdStatus.CANCELED);
+        }
+
+        // The counter has come round to the first order's slot
+        var reusing = nextOrder();
+        assertEquals(firstSlot, table.add(id(reusing), reusing));
+        assertEquals(OrderTable.NO_SLOT, table.find(id(first)));
+        assertEquals(reusing, table.order(table.find(id(reusing))));
+        assertFalse(table.hasFill(firstSlot));
+        assertEquals(4, table.capacity());
+    }
+
+    @Test
+    public void testGrowsRatherThanEvictingOpenOrders() {
+        var table = new OrderTable(4);
+        var open = nextOrder();
+        table.add(id(open), open);
+        for (int i = 0; i < 3; i++) {
+            var order = nextOrder();
+            table.setStatus(table.add(id(order), order), OrdStatus.REJECTED);
+        }
+        var next = nextOrder();
+        table.add(id(next), next);
+
+        assertEquals(8, table.capacity());
+        assertNotEquals(table.find(id(open)), table.find(id(next)));
+        assertTrue(table.isOpen(table.find(id(open))));
+        assertEquals(OrdStatus.REJECTED, table.status(table.find(id(next)) - 1));
+        assertEquals(2, table.openCount());
+        assertThrows(IllegalArgumentException.class, () -> table.add(id(open), open));
+    }
+
+    @Test
+    public void testCountsReopenedOrdersAsOpen() {
+        var table = new OrderTable(4);
+        var order = nextOrder();
+        int slot = table.add(id(order), order);
+        // Force canceled, then reported NEW and filled by the venue after all
+        table.setStatus(slot, OrdStatus.CANCELED);
+        assertEquals(0, table.openCount());
+        table.setStatus(slot, OrdStatus.NEW);
+        assertEquals(1, table.openCount());
+        table.setStatus(slot, OrdStatus.NEW);
+        assertEquals(1, table.openCount());
+        table.setFill(slot, OrdStatus.FILLED, 1.0d, 1.0d);
+        assertEquals(0, table.openCount());
+        table.setStatus(slot, OrdStatus.CANCELED);
+        assertEquals(0, table.openCount());
+    }
+}
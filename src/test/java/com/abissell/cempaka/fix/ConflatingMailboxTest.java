@@ -0,0 +1,50 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ConflatingMailboxTest {
+    @Test
+    public void testKeepsLatestValuePerSlot() {
+        var mailbox = new ConflatingMailbox<String>(6);
+        mailbox.put(4, "a0");
+        mailbox.put(1, "b0");
+        mailbox.put(4, "a1");
+        mailbox.put(4, "a2");
+        assertEquals(2, mailbox.pending());
+        assertEquals(2L, mailbox.conflatedCount());
+
+        var drained = new ArrayList<String>();
+        assertEquals(2, mailbox.drainTo(drained));
+        assertEquals(List.of("b0", "a2"), drained);
+        assertEquals(0, mailbox.pending());
+
+        drained.clear();
+        assertEquals(0, mailbox.drainTo(drained));
+        mailbox.put(4, "a3");
+        assertEquals(1, mailbox.drainTo(drained));
+        assertEquals(List.of("a3"), drained);
+        assertEquals(2L, mailbox.conflatedCount());
+    }
+}
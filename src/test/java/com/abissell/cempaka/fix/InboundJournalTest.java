@@ -0,0 +1,82 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InboundJournalTest {
+    // Room for three of the messages below after the header
+    private static final int SEGMENT_SIZE = InboundJournal.HEADER_SIZE + 3 * (InboundJournal.FRAME_HEADER_SIZE + 20);
+
+    @TempDir
+    Path dir;
+
+    private static String msg(int i) {
+        return "8=FIX.4.2\u00019=5\u000135=8\u0001" + i;
+    }
+
+    @Test
+    public void testReplaysAcrossSegmentsAndRestarts() throws IOException {
+        var now = LocalDateTime.now();
+        try (var journal = new InboundJournal(dir, "exec", SEGMENT_SIZE)) {
+            for (int i = 0; i < 4; i++) {
+                journal.append(msg(i), now.plusNanos(i));
+            }
+        }
+        try (var journal = new InboundJournal(dir, "exec", SEGMENT_SIZE)) {
+            journal.append(msg(4), now.plusNanos(4));
+        }
+        assertTrue(Files.exists(InboundJournal.segmentFile(dir, "exec", now.toLocalDate(), 2)));
+
+        var raws = new ArrayList<String>();
+        var times = new ArrayList<LocalDateTime>();
+        int count = InboundJournal.replay(dir, "exec", now.toLocalDate(), (raw, recvdTime) -> {
+            raws.add(raw);
+            times.add(recvdTime);
+        });
+        assertEquals(5, count);
+        assertEquals(List.of(msg(0), msg(1), msg(2), msg(3), msg(4)), raws);
+        assertEquals(now.plusNanos(3), times.get(3));
+    }
+
+    @Test
+    public void testKeepsDaysAndJournalsApart() throws IOException {
+        var now = LocalDateTime.now();
+        try (var journal = new InboundJournal(dir, "mktdata", SEGMENT_SIZE)) {
+            journal.append(msg(0), now);
+            journal.append(msg(1), now.plusDays(1L));
+            assertThrows(IllegalArgumentException.class, () -> journal.append("x".repeat(SEGMENT_SIZE), now));
+        }
+        var raws = new ArrayList<String>();
+        InboundJournal.replay(dir, "mktdata", now.toLocalDate(), (raw, recvdTime) -> raws.add(raw));
+        assertEquals(List.of(msg(0)), raws);
+        assertEquals(0, InboundJournal.replay(dir, "exec", now.toLocalDate(), (raw, recvdTime) -> { }));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JournalDumpTest {
+    @TempDir
+    Path dir;
+
+    private static String msg(String symbol) {
+        return "8=FIX.4.2\u00019=20\u000135=W\u000155=" + symbol + "\u000110=000\u0001";
+    }
+
+    @Test
+    public void testPrintsMessagesForSymbol() throws IOException {
+        var now = LocalDateTime.now();
+        try (var journal = new InboundJournal(dir, "mktdata")) {
+            journal.append(msg("EUR/USD"), now);
+            journal.append(msg("USD/JPY"), now.plusNanos(1L));
+        }
+        var bytes = new ByteArrayOutputStream();
+        var out = new PrintStream(bytes, true, StandardCharsets.US_ASCII);
+        int count = JournalDump.dump(dir, "mktdata", now.toLocalDate(), "USD/JPY", out);
+
+        assertEquals(1, count);
+        assertEquals(now.plusNanos(1L) + " 8=FIX.4.2|9=20|35=W|55=USD/JPY|10=000|\n",
+                bytes.toString(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import quickfix.SessionID;
+
+public class MappedStoreTest {
+    // Room for two of the messages below after the header
+    private static final int SEGMENT_SIZE = MappedStore.SEGMENT_HEADER_SIZE + 2 * (8 + 20);
+
+    @TempDir
+    Path dir;
+
+    private static String msg(int sequence) {
+        return "8=FIX.4.2\u00019=5\u000134=" + sequence + "\u0001";
+    }
+
+    @Test
+    public void testServesResendsAcrossSegmentsAndRestarts() throws IOException {
+        try (var store = new MappedStore(dir, SEGMENT_SIZE)) {
+            for (int sequence = 1; sequence <= 5; sequence++) {
+                store.set(sequence, msg(sequence));
+                store.incrNextSenderMsgSeqNum();
+            }
+            store.setNextTargetMsgSeqNum(42);
+        }
+        assertTrue(Files.exists(MappedStore.segmentFile(dir, 2)));
+
+        try (var store = new MappedStore(dir, SEGMENT_SIZE)) {
+            assertEquals(6, store.getNextSenderMsgSeqNum());
+            assertEquals(42, store.getNextTargetMsgSeqNum());
+            store.set(6, msg(6));
+
+            var messages = new ArrayList<String>();
+            store.get(2, Integer.MAX_VALUE, messages);
+            assertEquals(List.of(msg(2), msg(3), msg(4), msg(5), msg(6)), messages);
+        }
+    }
+
+    @Test
+    public void testResetClearsMessagesAndSeqNums() throws IOException {
+        try (var store = new MappedStore(dir, SEGMENT_SIZE)) {
+            for (int sequence = 1; sequence <= 3; sequence++) {
+                store.set(sequence, msg(sequence));
+            }
+            store.setNextSenderMsgSeqNum(4);
+            store.reset();
+            assertEquals(1, store.getNextSenderMsgSeqNum());
+            assertFalse(Files.exists(MappedStore.segmentFile(dir, 1)));
+
+            var messages = new ArrayList<String>();
+            store.get(1, 3, messages);
+            assertTrue(messages.isEmpty());
+        }
+    }
+
+    @Test
+    public void testNamesDirectoriesBySession() {
+        var sessionID = new SessionID("FIX.4.2", "SENDER", "TARGET");
+        assertEquals("FIX.4.2-SENDER-TARGET", MappedStoreFactory.dirName(sessionID));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.cempaka.orderid.ClOrdrID;
+import com.abissell.fixbridge.HandlInst;
+import com.abissell.fixbridge.OrdType;
+import com.abissell.fixbridge.Order;
+import com.abissell.fixbridge.OrderQty;
+import com.abissell.fixbridge.Price;
+import com.abissell.fixbridge.Side;
+import com.abissell.fixbridge.TimeInForce;
+import com.abissell.fixbridge.TransactTime;
+
+public class NewOrderTemplateTest {
+    private static final CcyPair PAIR = CcyPair.NUMER_2_DENOM_2;
+
+    private static NewOrderTemplate template(Side side) {
+        return new NewOrderTemplate(PAIR, side,
+                new quickfix.field.Symbol(PAIR.symbol()),
+                new quickfix.field.Side(side.fixChar),
+                new quickfix.field.HandlInst(HandlInst.AUTOMATED_EXECUTION_ORDER_PRIVATE_NO_BROKER_INTERVENTION.fixChar),
+                new quickfix.field.OrdType(OrdType.LIMIT.fixChar));
+    }
+
+    private static Order order(Side side, LocalDateTime now, double qty, double px, TimeInForce tif) {
+        return new Order(ClOrdrID.from(now), PAIR, PAIR.ccy1, side,
+                new OrderQty(qty), new Price(px), tif, new TransactTime(now));
+    }
+
+    @Test
+    public void testOverwritesPerOrderFieldsInPlace() throws Exception {
+        var template = template(Side.BUY);
+        var now = LocalDateTime.of(2023, 4, 12, 14, 3, 21, 123_000_000);
+        var first = order(Side.BUY, now, 0.5d, 1700.1d, TimeInForce.IMMEDIATE_OR_CANCEL);
+        var msg = template.fill(first);
+        assertEquals(first.idStr(), msg.getClOrdID().getValue());
+        assertEquals(0.5d, msg.getOrderQty().getValue());
+        assertEquals(1700.1d, msg.getPrice().getValue());
+        assertEquals(now, msg.getTransactTime().getValue());
+        assertEquals(TimeInForce.IMMEDIATE_OR_CANCEL.fixChar, msg.getTimeInForce().getValue());
+        assertEquals(PAIR.symbol(), msg.getSymbol().getValue());
+
+        var later = now.plusNanos(1_000_000L);
+        var second = order(Side.BUY, later, 0.25d, 1699.9d, TimeInForce.IMMEDIATE_OR_CANCEL);
+        assertSame(msg, template.fill(second));
+        assertEquals(second.idStr(), msg.getClOrdID().getValue());
+        assertEquals(0.25d, msg.getOrderQty().getValue());
+        assertEquals(1699.9d, msg.getPrice().getValue());
+        assertEquals(later, msg.getTransactTime().getValue());
+    }
+
+    @Test
+    public void testRejectsMismatchedOrders() {
+        var template = template(Side.BUY);
+        var now = LocalDateTime.now();
+        assertThrows(IllegalArgumentException.class,
+                () -> template.fill(order(Side.SELL, now, 0.5d, 1700.1d, TimeInForce.IMMEDIATE_OR_CANCEL)));
+        assertThrows(IllegalArgumentException.class, () -> NewOrderTemplate.index(PAIR, Side.BUY_MINUS));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.abissell.javautil.rusty.Opt;
+import com.abissell.javautil.rusty.Result;
+import com.abissell.cempaka.data.QFJRes;
+import com.abissell.cempaka.util.IdleStrategy;
+import org.junit.jupiter.api.Test;
+
+import quickfix.Message;
+
+public class OutboundWriterTest {
+    private static List<SendResult> awaitResults(MsgQueue<SendResult> results, int count) throws InterruptedException {
+        var drained = new ArrayList<SendResult>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (drained.size() < count && System.nanoTime() < deadline) {
+            results.drainTo(drained);
+            Thread.sleep(1L);
+        }
+        return drained;
+    }
+
+    @Test
+    public void testSendsInOrderOffCallerThreadAndReportsFailures() throws InterruptedException {
+        var results = new MsgQueue<SendResult>(8);
+        var writer = new OutboundWriter(8, results, IdleStrategy.from("spin-yield"), Opt.none());
+        var sent = new ArrayList<Message>();
+        var senderThreads = new ArrayList<String>();
+        writer.start(msg -> {
+            sent.add(msg);
+            senderThreads.add(Thread.currentThread().getName());
+            return Result.of(new QFJRes(sent.size() != 2));
+        });
+
+        var first = new Message();
+        var second = new Message();
+        assertTrue(writer.publish(first, List.of()));
+        assertTrue(writer.publish(second, List.of()));
+        var drained = awaitResults(results, 1);
+        writer.stop();
+
+        assertEquals(List.of(first, second), sent);
+        assertEquals(List.of(OutboundWriter.THREAD_NAME, OutboundWriter.THREAD_NAME), senderThreads);
+        // Only the failed send comes back
+        assertEquals(1, drained.size());
+        assertFalse(drained.get(0).succeeded());
+    }
+
+    @Test
+    public void testFailsWhatWasNotSentOnStop() throws InterruptedException {
+        var results = new MsgQueue<SendResult>(8);
+        var writer = new OutboundWriter(8, results, IdleStrategy.from("spin-yield"), Opt.none());
+        assertFalse(writer.publish(new Message(), List.of()));
+
+        var sending = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        writer.start(msg -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Result.of(new QFJRes(true));
+        });
+        assertTrue(writer.publish(new Message(), List.of()));
+        assertTrue(sending.await(5L, TimeUnit.SECONDS));
+        // The writer is blocked in a send, as on a slow socket, while this thread carries on
+        assertTrue(writer.publish(new Message(), List.of()));
+        assertEquals(1, writer.pending());
+
+        var stopper = new Thread(writer::stop);
+        stopper.start();
+        // Once stop() is joining the writer, the queued message can no longer be sent
+        while (stopper.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        stopper.join(5_000L);
+
+        var drained = awaitResults(results, 1);
+        assertEquals(1, drained.size());
+        // An Err result, rather than a send that returned false
+        assertTrue(drained.get(0).result().map(QFJRes::success).isNone());
+        assertFalse(writer.publish(new Message(), List.of()));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.fixbridge.FixField;
+import com.abissell.fixbridge.FixFieldVal;
+import com.abissell.fixbridge.ParsedFixMsg;
+
+import quickfix.fix42.MarketDataIncrementalRefresh;
+
+public class QFJMktDataSessionTest {
+    private static MarketDataIncrementalRefresh.NoMDEntries entry(CcyPair ccyPair, boolean withUpdateAction) {
+        var group = new MarketDataIncrementalRefresh.NoMDEntries();
+        group.set(new quickfix.field.Symbol(ccyPair.symbol()));
+        if (withUpdateAction) {
+            group.set(new quickfix.field.MDUpdateAction(quickfix.field.MDUpdateAction.NEW));
+        }
+        group.set(new quickfix.field.MDEntryType(quickfix.field.MDEntryType.BID));
+        group.set(new quickfix.field.MDEntryPx(1700.1d));
+        group.set(new quickfix.field.MDEntrySize(0.5d));
+        return group;
+    }
+
+    private static List<ParsedFixMsg> readEntries(MarketDataIncrementalRefresh incRefresh) {
+        return QFJMktDataSession.readEntries(incRefresh, new EnumMap<FixField, FixFieldVal>(FixField.class),
+                LocalDateTime.now(), "test");
+    }
+
+    @Test
+    public void testReadsEntries() {
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var incRefresh = new MarketDataIncrementalRefresh();
+        incRefresh.addGroup(entry(pair, true));
+        incRefresh.addGroup(entry(pair, true));
+        var msgs = readEntries(incRefresh);
+        assertEquals(1, msgs.size());
+        assertFalse(QFJMktDataSession.isFailedIncrement(msgs.get(0)));
+        assertEquals(CcyPair.from(pair.symbol()), msgs.get(0).get(FixField.SYMBOL));
+    }
+
+    @Test
+    public void testFailsOnlyTheSymbolWhoseEntryIsBad() {
+        // The Symbol parses, but the MDUpdateAction after it is missing
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var incRefresh = new MarketDataIncrementalRefresh();
+        incRefresh.addGroup(entry(pair, false));
+        var msgs = readEntries(incRefresh);
+        assertEquals(1, msgs.size());
+        assertTrue(QFJMktDataSession.isFailedIncrement(msgs.get(0)));
+        assertEquals(CcyPair.from(pair.symbol()), msgs.get(0).get(FixField.SYMBOL));
+    }
+
+    @Test
+    public void testDropsEntriesParsedBeforeABadOne() {
+        var pair = CcyPair.NUMER_2_DENOM_2;
+        var incRefresh = new MarketDataIncrementalRefresh();
+        incRefresh.addGroup(entry(pair, true));
+        incRefresh.addGroup(entry(pair, false));
+        var msgs = readEntries(incRefresh);
+        assertEquals(1, msgs.size());
+        assertTrue(QFJMktDataSession.isFailedIncrement(msgs.get(0)));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.fix;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SpscRingTest {
+    @Test
+    public void testEnforcesExactCapacity() {
+        var ring = new SpscRing<Integer>(5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(5));
+        assertEquals(5, ring.size());
+        assertEquals(0, ring.remainingCapacity());
+
+        var drained = new ArrayList<Integer>();
+        assertEquals(5, ring.drainTo(drained));
+        assertEquals(List.of(0, 1, 2, 3, 4), drained);
+        assertEquals(0, ring.size());
+        assertTrue(ring.offer(5));
+    }
+
+    @Test
+    public void testPreservesOrderAcrossWraparound() {
+        var ring = new SpscRing<Integer>(3);
+        var drained = new ArrayList<Integer>();
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            assertTrue(ring.offer(next++));
+            assertTrue(ring.offer(next++));
+            ring.drainTo(drained);
+        }
+        assertEquals(20, drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertEquals(i, drained.get(i));
+        }
+    }
+
+    @Test
+    public void testHandsOffBetweenThreadsInOrder() throws InterruptedException {
+        final int count = 100_000;
+        var ring = new SpscRing<Integer>(64);
+        var producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        var drained = new ArrayList<Integer>(count);
+        while (drained.size() < count) {
+            if (ring.drainTo(drained) == 0) {
+                Thread.yield();
+            }
+        }
+        producer.join();
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, drained.get(i));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.orderid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+public class OrdrIDGeneratorTest {
+    private static final LocalDateTime SESSION_START = LocalDateTime.of(2023, 4, 12, 23, 59, 59);
+
+    @Test
+    public void testPackedRoundTrips() {
+        for (long packed : new long[] { 0L, 1L, 61L, 62L, 123_456_789_012L, OrdrID.NUM_PACKED - 1L }) {
+            var id = OrdrID.fromPacked(packed);
+            assertEquals(packed, id.packed());
+            assertEquals(id, OrdrID.from(id.asStr()));
+        }
+        assertEquals("00000000", OrdrID.fromPacked(0L).asStr());
+        assertEquals("ZZZZZZZZ", OrdrID.fromPacked(OrdrID.NUM_PACKED - 1L).asStr());
+        assertEquals(OrdrID.from("abcABC12").packed(), OrdrID.fromPacked(OrdrID.from("abcABC12").packed()).packed());
+        assertThrows(IllegalArgumentException.class, () -> OrdrID.fromPacked(OrdrID.NUM_PACKED));
+        assertThrows(IllegalArgumentException.class, () -> OrdrID.fromPacked(-1L));
+    }
+
+    @Test
+    public void testPacksSessionEpochAboveCounter() {
+        var generator = new OrdrIDGenerator(SESSION_START);
+        long epochBits = (long) SESSION_START.toLocalTime().toSecondOfDay() << OrdrIDGenerator.COUNTER_BITS;
+        assertEquals(epochBits, generator.nextPacked());
+        assertEquals(epochBits + 1L, generator.next().packed());
+        // The latest possible session start still leaves room for every count
+        assertTrue(epochBits + OrdrIDGenerator.MAX_COUNT - 1L < OrdrID.NUM_PACKED);
+        assertTrue(new OrdrIDGenerator(SESSION_START.minusSeconds(1L)).nextPacked() < epochBits);
+    }
+
+    @Test
+    public void testAdvancesPastEarlierSessionInSameSecond() {
+        var earlier = new OrdrIDGenerator(SESSION_START.minusDays(1L));
+        earlier.next();
+        var lastSent = earlier.next();
+        var otherSecond = new OrdrIDGenerator(SESSION_START.minusSeconds(1L)).next();
+
+        var generator = new OrdrIDGenerator(SESSION_START);
+        generator.advancePast(lastSent.packed());
+        generator.advancePast(otherSecond.packed());
+        generator.advancePast(OrdrID.fromPacked(lastSent.packed() - 1L).packed());
+        assertEquals(lastSent.packed() + 1L, generator.nextPacked());
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        var generator = new OrdrIDGenerator(SESSION_START);
+        var ids = ConcurrentHashMap.<OrdrID>newKeySet();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var thread = new Thread(() -> {
+                var local = new HashSet<OrdrID>();
+                for (int i = 0; i < 250_000; i++) {
+                    local.add(generator.next());
+                }
+                ids.addAll(local);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(1_000_000, ids.size());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+public class FixedPointTest {
+    @Test
+    public void testRoundsToTicks() {
+        assertEquals(10813L, FixedPoint.toScaled(1.0813d, 4, RoundingMode.DOWN));
+        assertEquals(10813L, FixedPoint.toScaled(1.0813d, 4, RoundingMode.UP));
+        assertEquals(10812L, FixedPoint.toScaled(1.08125d, 4, RoundingMode.DOWN));
+        assertEquals(10813L, FixedPoint.toScaled(1.08125d, 4, RoundingMode.UP));
+        assertEquals(-10812L, FixedPoint.toScaled(-1.08125d, 4, RoundingMode.DOWN));
+        assertEquals(-10813L, FixedPoint.toScaled(-1.08125d, 4, RoundingMode.FLOOR));
+        assertEquals(1.0813d, FixedPoint.round(1.08129d, 4, RoundingMode.UP));
+        assertEquals(0.3d, FixedPoint.round(0.1d + 0.2d, 2, RoundingMode.DOWN));
+        assertEquals(1700.12d, FixedPoint.toDouble(170012L, 2));
+    }
+
+    @Test
+    public void testRejectsUnscalableVals() {
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.toScaled(Double.NaN, 4, RoundingMode.DOWN));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.toScaled(1e12d, 8, RoundingMode.DOWN));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.toScaled(1.0d, 16, RoundingMode.DOWN));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.toScaled(1.08125d, 4, RoundingMode.UNNECESSARY));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.cempaka.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class IdleStrategyTest {
+    @Test
+    public void testParsesSpecs() {
+        assertTrue(IdleStrategy.from("busy-spin") instanceof IdleStrategy.BusySpin);
+        assertEquals("spin-yield:100", IdleStrategy.from("spin-yield").toString());
+        assertEquals("spin-yield:5", IdleStrategy.from("spin-yield:5").toString());
+        assertEquals("spin-yield-park:100:10:1000:1000000", IdleStrategy.from("spin-yield-park").toString());
+        assertEquals("spin-yield-park:1:2:50:400", IdleStrategy.from(" spin-yield-park:1:2:50:400 ").toString());
+    }
+
+    @Test
+    public void testRejectsBadSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> IdleStrategy.from("sleep"));
+        assertThrows(IllegalArgumentException.class, () -> IdleStrategy.from("busy-spin:3"));
+        assertThrows(IllegalArgumentException.class, () -> IdleStrategy.from("spin-yield-park:1:2"));
+        assertThrows(IllegalArgumentException.class, () -> IdleStrategy.from("spin-yield-park:1:2:500:100"));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.fixbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Function;
+
+import com.abissell.cempaka.data.Ccy;
+import com.abissell.cempaka.data.CcyPair;
+import com.abissell.cempaka.util.UtcNanos;
+import org.junit.jupiter.api.Test;
+
+public class FixDecoderTest {
+    private static FixDecoder decoder() {
+        var readers = new EnumMap<FixField, Function<String, ? extends FixFieldVal>>(FixField.class);
+        readers.put(FixField.SENDER_COMP_ID, SendrID::new);
+        readers.put(FixField.TARGET_COMP_ID, TargtID::new);
+        readers.put(FixField.SYMBOL, CcyPair::from);
+        readers.put(FixField.CURRENCY, Ccy::fromFixStr);
+        readers.put(FixField.CL_ORD_ID, StrClOrdID::new);
+        readers.put(FixField.ORIG_CL_ORD_ID, StrOrigClOrdID::new);
+        return new FixDecoder(readers);
+    }
+
+    private static String raw(String... fields) {
+        var sb = new StringBuilder();
+        for (var field : fields) {
+            sb.append(field).append(FixDecoder.SOH);
+        }
+        return sb.toString();
+    }
+
+    private static final String SNAPSHOT = raw(
+            "8=FIX.4.2", "9=180", "35=W", "34=12", "49=VENUE", "56=US", "43=Y",
+            "52=20230412-14:03:21.123", "262=req1", "55=AAA/BBB", "268=3",
+            "269=0", "270=1.08125", "271=1000000",
+            "269=1", "270=1.08131", "271=2500000.5",
+            "269=1", "270=1.0814", "271=0.1", "10=071");
+
+    private static final String EXEC_REPORT = raw(
+            "8=FIX.4.2", "9=250", "35=8", "34=7", "49=VENUE", "56=US",
+            "52=20230412-14:03:21.123456", "37=o1", "11=c1", "17=e1", "1=acct",
+            "20=0", "150=2", "39=2", "55=AAA/BBB", "15=AAA", "31=1.0813",
+            "32=500000", "54=1", "38=500000", "44=1.0813", "40=2", "59=3",
+            "60=20230412-14:03:21", "64=20230414", "151=0", "14=500000",
+            "6=1.0813", "10=200");
+
+    @Test
+    public void testDecodesSnapshot() {
+        var fields = decoder().decode(SNAPSHOT);
+        assertEquals(MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH, fields.get(FixField.MSG_TYPE));
+        assertEquals(new MsgSeqNum(12), fields.get(FixField.MSG_SEQ_NUM));
+        assertEquals(new SendrID("VENUE"), fields.get(FixField.SENDER_COMP_ID));
+        assertEquals(PossDupFlag.POSS_DUP, fields.get(FixField.POSS_DUP_FLAG));
+        assertEquals(new SendingTime(LocalDateTime.of(2023, 4, 12, 14, 3, 21, 123_000_000)),
+                fields.get(FixField.SENDING_TIME));
+        assertEquals(new MDReqID("req1"), fields.get(FixField.MD_REQ_ID));
+        assertEquals(new NoMDEntries(3), fields.get(FixField.NO_MD_ENTRIES));
+        assertEquals(new MDEntries(List.of(
+                        new MDEntry(MDEntryType.BID, new MDEntryPx(1.08125d), new MDEntrySize(1_000_000d)),
+                        new MDEntry(MDEntryType.OFFER, new MDEntryPx(1.08131d), new MDEntrySize(2_500_000.5d)),
+                        new MDEntry(MDEntryType.OFFER, new MDEntryPx(1.0814d), new MDEntrySize(0.1d)))),
+                fields.get(FixField.MD_ENTRIES));
+        assertEquals(new CheckSum(71), fields.get(FixField.CHECK_SUM));
+        assertEquals(MsgType.MARKET_DATA_SNAPSHOT_FULL_REFRESH, FixDecoder.msgType(SNAPSHOT));
+    }
+
+    @Test
+    public void testDecodesExecutionReport() {
+        var fields = decoder().decode(EXEC_REPORT);
+        assertEquals(MsgType.EXECUTION_REPORT, fields.get(FixField.MSG_TYPE));
+        assertEquals(new SendingTime(LocalDateTime.of(2023, 4, 12, 14, 3, 21, 123_456_000)),
+                fields.get(FixField.SENDING_TIME));
+        assertEquals(new StrClOrdID("c1"), fields.get(FixField.CL_ORD_ID));
+        assertFalse(fields.containsKey(FixField.ORIG_CL_ORD_ID));
+        assertEquals(ExecType.fromFixChar('2'), fields.get(FixField.EXEC_TYPE));
+        assertEquals(Side.fromFixChar('1'), fields.get(FixField.SIDE));
+        assertEquals(new LastShares(500_000d), fields.get(FixField.LAST_SHARES));
+        assertEquals(new Price(1.0813d), fields.get(FixField.PRICE));
+        assertEquals(new TransactTime(LocalDateTime.of(2023, 4, 12, 14, 3, 21)), fields.get(FixField.TRANSACT_TIME));
+        assertEquals(new SettlDate(new StrDate("20230414")), fields.get(FixField.SETTL_DATE));
+        assertEquals(new CumQty(500_000d), fields.get(FixField.CUM_QTY));
+    }
+
+    @Test
+    public void testParsesDoublesLikeParseDouble() {
+        for (var s : List.of("0", "1", "-2.5", "1.08125", "0.000001", "123456789.123456",
+                    "99999999999999999999", "0.1234567890123456789", "1e-3")) {
+            assertEquals(Double.parseDouble(s), FixDecoder.parseDouble(s, 0, s.length()), s);
+        }
+    }
+
+    @Test
+    public void testRejectsMissingRequiredFields() {
+        var noSymbol = SNAPSHOT.replace("55=AAA/BBB" + FixDecoder.SOH, "");
+        assertThrows(IllegalArgumentException.class, () -> decoder().decode(noSymbol));
+        var shortEntries = SNAPSHOT.replace("268=3", "268=4");
+        assertThrows(IllegalArgumentException.class, () -> decoder().decode(shortEntries));
+        var logon = raw("8=FIX.4.2", "9=10", "35=A", "10=000");
+        assertThrows(IllegalArgumentException.class, () -> decoder().decode(logon));
+    }
+
+    @Test
+    public void testDecodesSnapshotIntoReusedView() {
+        var decoder = decoder();
+        var recvdTime = LocalDateTime.of(2023, 4, 12, 14, 3, 22);
+        var view = new MdSnapshotView();
+        decoder.decode(SNAPSHOT, recvdTime, view);
+        assertEquals(recvdTime, view.recvdTime());
+        assertTrue(view.isPossDup());
+        assertEquals(UtcNanos.from(LocalDateTime.of(2023, 4, 12, 14, 3, 21, 123_000_000)),
+                view.sendingTime());
+        assertEquals(3, view.numEntries());
+        assertEquals(MDEntryType.OFFER, view.entryType(1));
+        assertEquals(2_500_000.5d, view.entrySize(1));
+        assertEquals(1.0814d, view.entryPx(2));
+        assertTrue(view.has(FixField.CHECK_SUM));
+
+        var oneEntry = raw("8=FIX.4.2", "9=100", "35=W", "34=13", "49=VENUE", "56=US",
+                "52=20230412-14:03:22", "262=req2", "55=AAA/BBB", "268=1",
+                "269=0", "270=1.0812", "271=1000000", "10=001");
+        decoder.decode(oneEntry, recvdTime, view);
+        assertFalse(view.has(FixField.POSS_DUP_FLAG));
+        assertEquals("req2", view.mdReqID());
+        assertEquals(1, view.numEntries());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.entryPx(1));
+
+        var loaded = new MdSnapshotView().load(decoder.decode(SNAPSHOT), recvdTime);
+        decoder.decode(SNAPSHOT, recvdTime, view);
+        assertEquals(loaded.present(), view.present());
+        assertEquals(loaded.toString(), view.toString());
+    }
+
+    @Test
+    public void testDecodesExecutionReportIntoView() {
+        var decoder = decoder();
+        var recvdTime = LocalDateTime.of(2023, 4, 12, 14, 3, 22);
+        var view = decoder.decode(EXEC_REPORT, recvdTime, new ExecReportView());
+        assertEquals(new StrClOrdID("c1"), view.clOrdID());
+        assertFalse(view.has(FixField.ORIG_CL_ORD_ID));
+        assertEquals(ExecType.fromFixChar('2'), view.execType());
+        assertEquals(Side.fromFixChar('1'), view.side());
+        assertEquals(500_000d, view.lastShares());
+        assertEquals(1.0813d, view.avgPx());
+        assertEquals(UtcNanos.from(LocalDateTime.of(2023, 4, 12, 14, 3, 21)), view.transactTime());
+        assertEquals("20230414", view.settlDate());
+
+        var loaded = new ExecReportView().load(decoder.decode(EXEC_REPORT), recvdTime);
+        assertEquals(loaded.present(), view.present());
+        assertEquals(loaded.toString(), view.toString());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode(SNAPSHOT, recvdTime, new ExecReportView()));
+    }
+
+    @Test
+    public void testDecodesMultilegLegReport() {
+        var decoder = decoder();
+        var recvdTime = LocalDateTime.of(2023, 4, 12, 14, 3, 22);
+        var legReport = EXEC_REPORT.replace("54=1" + FixDecoder.SOH, "54=2" + FixDecoder.SOH + "442=2" + FixDecoder.SOH);
+        var view = decoder.decode(legReport, recvdTime, new ExecReportView());
+        assertEquals(MultiLegReportingType.INDIVIDUAL_LEG_OF_MULTI_LEG_SECURITY, view.multiLegReportingType());
+        assertEquals(Side.SELL, view.side());
+        assertEquals(MultiLegReportingType.INDIVIDUAL_LEG_OF_MULTI_LEG_SECURITY,
+                decoder.decode(legReport).get(FixField.MULTI_LEG_REPORTING_TYPE));
+        assertFalse(decoder.decode(EXEC_REPORT, recvdTime, view).has(FixField.MULTI_LEG_REPORTING_TYPE));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * cempaka, an algorithmic trading platform written in Java
+ * Copyright (C) 2023 Andrew Bissell
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.abissell.fixbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import com.abissell.cempaka.data.CcyPair;
+import org.junit.jupiter.api.Test;
+
+public class FixEncoderTest {
+    private static final CcyPair PAIR = CcyPair.NUMER_2_DENOM_2;
+    // Fixed for the timestamps checked below, whose millis are truncated rather than rounded
+    private static final LocalDateTime SENT_TIME = LocalDateTime.of(2023, 12, 31, 23, 59, 58, 999_999_999);
+
+    private static FixEncoder encoder() {
+        return new FixEncoder("US", "VENUE", HandlInst.AUTOMATED_EXECUTION_ORDER_PRIVATE_NO_BROKER_INTERVENTION);
+    }
+
+    private static Order order(double qty, double px) {
+        return new Order(new StrClOrdID("c1"), PAIR, PAIR.ccy1, Side.BUY, new OrderQty(qty),
+                new Price(px), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(SENT_TIME));
+    }
+
+    private static String str(java.nio.ByteBuffer buf) {
+        var bytes = new byte[buf.remaining()];
+        buf.get(buf.position(), bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // Parses with body length and checksum validation
+    private static quickfix.Message parse(String s) throws Exception {
+        var msg = new quickfix.Message();
+        msg.fromString(s, null, true);
+        return msg;
+    }
+
+    @Test
+    public void testEncodesNewOrderSingle() throws Exception {
+        var s = str(encoder().encodeNewOrderSingle(order(0.5d, 1700.1d), 42, SENT_TIME));
+        var msg = parse(s);
+        assertEquals("D", msg.getHeader().getString(35));
+        assertEquals(42, msg.getHeader().getInt(34));
+        assertEquals("20231231-23:59:58.999", msg.getHeader().getString(52));
+        assertEquals("c1", msg.getString(11));
+        assertEquals(PAIR.symbol(), msg.getString(55));
+        assertEquals(PAIR.ccy1.fieldVal(), msg.getString(15));
+        assertEquals("0.5", msg.getString(38));
+        assertEquals("1700.1", msg.getString(44));
+        assertEquals("20231231-23:59:58.999", msg.getString(60));
+        // QFJ orders the fields differently, but the length and checksum must agree
+        var reencoded = msg.toString();
+        assertEquals(reencoded.length(), s.length());
+        assertEquals(reencoded.substring(reencoded.lastIndexOf("10=")), s.substring(s.lastIndexOf("10=")));
+    }
+
+    @Test
+    public void testEncodesOrderCancelRequest() throws Exception {
+        var encoder = encoder();
+        var cxlReq = new OrdrCxlReq(new StrClOrdID("c2"), order(1_000_000d, 1.0813d), new TransactTime(SENT_TIME.plusMinutes(1L)));
+        encoder.encodeNewOrderSingle(order(1_000_000d, 1.0813d), 1, SENT_TIME);
+        var msg = parse(str(encoder.encodeOrderCancelRequest(cxlReq, 2, SENT_TIME.plusMinutes(1L))));
+        assertEquals("F", msg.getHeader().getString(35));
+        assertEquals("c1", msg.getString(41));
+        assertEquals("c2", msg.getString(11));
+        assertEquals("1000000", msg.getString(38));
+        assertEquals("20240101-00:00:58.999", msg.getHeader().getString(52));
+    }
+
+    @Test
+    public void testEncodesOrderPairBackToBack() throws Exception {
+        var sell = new Order(new StrClOrdID("c2"), PAIR, PAIR.ccy1, Side.SELL, new OrderQty(0.5d),
+                new Price(1700.3d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(SENT_TIME));
+        var s = str(encoder().encodeNewOrderSingles(order(0.5d, 1700.1d), 7, sell, 8, SENT_TIME));
+        var secondStart = s.indexOf("8=FIX.4.2", 1);
+        var first = parse(s.substring(0, secondStart));
+        var second = parse(s.substring(secondStart));
+        assertEquals(7, first.getHeader().getInt(34));
+        assertEquals("c1", first.getString(11));
+        assertEquals(8, second.getHeader().getInt(34));
+        assertEquals("c2", second.getString(11));
+        assertEquals("2", second.getString(54));
+        assertEquals("1700.3", second.getString(44));
+    }
+
+    @Test
+    public void testEncodesMultilegWithBothLegs() throws Exception {
+        var sell = new Order(new StrClOrdID("c2"), PAIR, PAIR.ccy1, Side.SELL, new OrderQty(0.4d),
+                new Price(1700.3d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(SENT_TIME));
+        var s = str(encoder().encodeNewOrderMultileg(order(0.5d, 1700.1d), sell, 9, SENT_TIME));
+        var msg = parse(s);
+        assertEquals("AB", msg.getHeader().getString(35));
+        assertEquals("c1", msg.getString(11));
+        assertEquals("B", msg.getString(54));
+        assertEquals("2", msg.getString(555));
+        // Without a dictionary QFJ keeps only the last of each repeated tag, so check the legs as written
+        var soh = FixDecoder.SOH;
+        assertTrue(s.contains("600=" + PAIR.symbol() + soh + "624=1" + soh + "687=0.5" + soh
+                    + "654=c1" + soh + "566=1700.1" + soh + "600=" + PAIR.symbol() + soh + "624=2" + soh
+                    + "687=0.4" + soh + "654=c2" + soh + "566=1700.3" + soh + "10="));
+
+        var other = CcyPair.NUMER_1_DENOM_1;
+        var otherSell = new Order(new StrClOrdID("c3"), other, other.ccy1, Side.SELL, new OrderQty(0.4d),
+                new Price(1.0d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(SENT_TIME));
+        assertThrows(IllegalArgumentException.class,
+                () -> encoder().encodeNewOrderMultileg(order(0.5d, 1700.1d), otherSell, 10, SENT_TIME));
+    }
+
+    @Test
+    public void testRejectsUnencodableVals() {
+        assertThrows(IllegalArgumentException.class,
+                () -> encoder().encodeNewOrderSingle(order(0.5d, Double.NaN), 1, SENT_TIME));
+        var badID = new Order(new StrClOrdID("c" + FixDecoder.SOH), PAIR, PAIR.ccy1, Side.BUY, new OrderQty(0.5d),
+                new Price(1.0d), TimeInForce.IMMEDIATE_OR_CANCEL, new TransactTime(SENT_TIME));
+        assertThrows(IllegalArgumentException.class, () -> encoder().encodeNewOrderSingle(badID, 1, SENT_TIME));
+    }
+}
@@ -21,6 +21,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 
 import com.abissell.cempaka.orderid.OrdrID;
@@ -34,6 +36,16 @@ public class OrdrIDTest {
         assertEquals(id.asStr(), idStr);
     }
 
+    @Test
+    public void testPutAsciiMatchesAsStr() {
+        var id = OrdrID.from("abcABC12");
+        var buf = ByteBuffer.allocate(9);
+        buf.put((byte) '=');
+        id.putAscii(buf);
+        assertEquals(9, buf.position());
+        assertEquals("=" + id.asStr(), new String(buf.array(), StandardCharsets.US_ASCII));
+    }
+
     @Test
     public void testFromLocalDateTimesAndStrings() {
         var dateTime = LocalDateTime.now();